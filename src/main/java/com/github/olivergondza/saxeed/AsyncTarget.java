@@ -0,0 +1,329 @@
+package com.github.olivergondza.saxeed;
+
+import com.github.olivergondza.saxeed.ex.FailedWriting;
+
+import javax.xml.stream.XMLStreamWriter;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Target writing the content in a background thread, so a slow output does not hold back the transformation.
+ *
+ * The content is serialized into pooled buffers, that are passed to the writing thread through a bounded queue. The
+ * buffers and the writing threads are kept by the target, and reused by the following transformations using it. Once
+ * the queue is full, the transformation waits for the writing thread to catch up. Failures of the writing thread are
+ * reported as {@link FailedWriting} by the transformation, at the latest once it completes.
+ */
+public class AsyncTarget extends Target {
+
+    private static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+    private static final int DEFAULT_QUEUE_SIZE = 16;
+
+    /**
+     * Markers requesting the writing thread to flush the output, or to finish.
+     */
+    private static final ByteBuffer FLUSH = ByteBuffer.allocate(0);
+    private static final ByteBuffer EOF = ByteBuffer.allocate(0);
+
+    private final String name;
+    private final Path path;
+    private final OutputStream os;
+
+    private int bufferSize = DEFAULT_BUFFER_SIZE;
+    private int queueSize = DEFAULT_QUEUE_SIZE;
+
+    /**
+     * Buffers not used by any transformation at the moment.
+     */
+    private final Queue<ByteBuffer> spare = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Writing threads, terminated once idle for a while.
+     */
+    private final ExecutorService writers = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "saxeed write-behind " + getName());
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Write to a file, that is closed once the transformation is completed.
+     */
+    public AsyncTarget(Path path) {
+        this.path = Objects.requireNonNull(path);
+        this.os = null;
+        this.name = path.toAbsolutePath().toString();
+    }
+
+    /**
+     * Write to OutputStream.
+     *
+     * The stream is NOT closed.
+     */
+    public AsyncTarget(OutputStream os) {
+        this.path = null;
+        this.os = Objects.requireNonNull(os);
+        this.name = "explicit OutputStream " + os.getClass().getName() + "@" + Integer.toHexString(os.hashCode());
+    }
+
+    /**
+     * Set the size of the buffers passed to the writing thread. 64 KiB by default.
+     */
+    public AsyncTarget setBufferSize(int bufferSize) {
+        if (bufferSize <= 0) throw new IllegalArgumentException("Buffer size must be positive: " + bufferSize);
+
+        this.bufferSize = bufferSize;
+        spare.clear();
+        return this;
+    }
+
+    /**
+     * Set the number of buffers waiting to be written, before the transformation waits. 16 by default.
+     */
+    public AsyncTarget setQueueSize(int queueSize) {
+        if (queueSize <= 0) throw new IllegalArgumentException("Queue size must be positive: " + queueSize);
+
+        this.queueSize = queueSize;
+        return this;
+    }
+
+    @Override
+    public String getName() {
+        return "async " + name;
+    }
+
+    @Override
+    public XMLStreamWriter getWriter(Saxeed saxeed) {
+        OutputStream sink;
+        if (path != null) {
+            try {
+                sink = new BufferedOutputStream(Files.newOutputStream(path));
+            } catch (IOException e) {
+                throw new FailedWriting("Cannot create/open file: " + name, e);
+            }
+        } else {
+            sink = os;
+        }
+
+        WriteBehindStream stream = new WriteBehindStream(sink, path != null);
+        registerClosable(stream);
+        return createXmlStreamWriter(stream);
+    }
+
+    private final class WriteBehindStream extends OutputStream {
+
+        private final OutputStream sink;
+        private final boolean closeSink;
+
+        private final BlockingQueue<ByteBuffer> written;
+        /**
+         * Buffers written already. There is always one available once the writing thread takes one from the queue.
+         */
+        private final BlockingQueue<ByteBuffer> free;
+        private final Future<?> writing;
+
+        private ByteBuffer current;
+
+        private volatile IOException failure;
+        private boolean closed = false;
+
+        private WriteBehindStream(OutputStream sink, boolean closeSink) {
+            this.sink = sink;
+            this.closeSink = closeSink;
+            this.written = new ArrayBlockingQueue<>(queueSize);
+            this.free = new ArrayBlockingQueue<>(queueSize + 1);
+            for (int i = 0; i < queueSize + 1; i++) {
+                ByteBuffer buffer = spare.poll();
+                free.add(buffer != null && buffer.capacity() == bufferSize ? buffer : ByteBuffer.allocate(bufferSize));
+            }
+            this.current = free.remove();
+
+            this.writing = writers.submit(this::writeBehind);
+        }
+
+        private void writeBehind() {
+            try {
+                while (true) {
+                    ByteBuffer buffer = written.take();
+                    if (buffer == EOF) break;
+
+                    try {
+                        if (failure != null) continue; // Discard so the transformation is not blocked
+
+                        if (buffer == FLUSH) {
+                            sink.flush();
+                        } else {
+                            sink.write(buffer.array(), 0, buffer.position());
+                        }
+                    } catch (IOException e) {
+                        failure = e;
+                    } catch (Throwable e) {
+                        // Keep draining, so the transformation fails rather than waits for the buffers forever
+                        failure = new IOException(e);
+                    } finally {
+                        if (buffer != FLUSH) {
+                            buffer.clear();
+                            free.add(buffer);
+                        }
+                    }
+                }
+
+                if (failure == null) {
+                    sink.flush();
+                }
+            } catch (IOException e) {
+                failure = e;
+            } catch (InterruptedException e) {
+                failure = new InterruptedIOException("Writing interrupted");
+            } catch (Throwable e) {
+                failure = new IOException(e);
+            } finally {
+                if (closeSink) {
+                    try {
+                        sink.close();
+                    } catch (IOException e) {
+                        if (failure == null) {
+                            failure = e;
+                        }
+                    } catch (Throwable e) {
+                        if (failure == null) {
+                            failure = new IOException(e);
+                        }
+                    }
+                }
+            }
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            checkFailure();
+            if (!current.hasRemaining()) {
+                handOver();
+            }
+            current.put((byte) b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            Objects.checkFromIndexSize(off, len, b.length);
+            checkFailure();
+            while (len > 0) {
+                if (!current.hasRemaining()) {
+                    handOver();
+                }
+                int chunk = Math.min(len, current.remaining());
+                current.put(b, off, chunk);
+                off += chunk;
+                len -= chunk;
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            checkFailure();
+            if (current.position() > 0) {
+                handOver();
+            }
+            enqueue(FLUSH);
+        }
+
+        private void handOver() throws IOException {
+            enqueue(current);
+            try {
+                current = free.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted waiting for buffer");
+            }
+        }
+
+        private void enqueue(ByteBuffer buffer) throws IOException {
+            try {
+                written.put(buffer);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted waiting for the output");
+            }
+        }
+
+        private void checkFailure() throws IOException {
+            if (failure != null) throw new IOException("Failed writing to " + name, failure);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) return;
+            closed = true;
+
+            try {
+                if (current.position() > 0) {
+                    handOver();
+                }
+            } finally {
+                finish();
+            }
+            checkFailure();
+        }
+
+        /**
+         * Wait for the writing thread to complete.
+         */
+        private void finish() throws IOException {
+            try {
+                written.put(EOF);
+                writing.get();
+            } catch (InterruptedException e) {
+                abandon();
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted waiting for the output to complete");
+            } catch (ExecutionException e) {
+                throw new IOException("Failed writing to " + name, e.getCause());
+            }
+
+            // All the buffers are back
+            current.clear();
+            spare.add(current);
+            spare.addAll(free);
+        }
+
+        /**
+         * Make the writing thread discard the queued buffers and end, so it does not write to the sink once closed.
+         */
+        private void abandon() {
+            if (failure == null) {
+                failure = new InterruptedIOException("Writing abandoned");
+            }
+            written.clear();
+            written.offer(EOF);
+
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    writing.get();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    break;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
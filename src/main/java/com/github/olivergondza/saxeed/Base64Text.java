@@ -0,0 +1,270 @@
+package com.github.olivergondza.saxeed;
+
+import com.github.olivergondza.saxeed.ex.FailedTransforming;
+import com.github.olivergondza.saxeed.ex.FailedWriting;
+import com.github.olivergondza.saxeed.internal.CharChunk;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+/**
+ * Move base64 encoded binary data between text nodes and separate streams, without holding them in memory.
+ *
+ * Decoding extracts the binary content of the visited tags, removing the text from the output. Streams of the tags not
+ * completed when the transformation fails are closed as well:
+ *
+ * <pre>
+ *     new TransformationBuilder().add("attachment", Base64Text.decodeTo(tag -&gt; Files.newOutputStream(...)));
+ * </pre>
+ *
+ * Encoding inlines the binary data as the text of a tag:
+ *
+ * <pre>
+ *     tag.addText(Base64Text.encode(Files.newInputStream(...)));
+ * </pre>
+ *
+ * To use a {@link java.nio.channels.FileChannel}, wrap it in {@link java.nio.channels.Channels#newOutputStream}
+ * or {@link java.nio.channels.Channels#newInputStream}.
+ */
+public final class Base64Text {
+
+    private Base64Text() {
+    }
+
+    /**
+     * Create reader of base64 encoded data.
+     *
+     * The data are encoded one bounded chunk at a time. Closing the reader closes the stream.
+     */
+    public static Reader encode(InputStream data) {
+        return new EncodingReader(Objects.requireNonNull(data));
+    }
+
+    /**
+     * Create visitor decoding the text of visited tags into streams.
+     *
+     * The decoded text is removed from the output. The text is decoded as it arrives, so any {@link TextMode} works.
+     * Whitespace in the text is ignored.
+     *
+     * @param outputs Stream to write the data of the tag to, closed after the end of the tag. Null to keep the tag intact.
+     */
+    public static Supplier<UpdatingVisitor> decodeTo(Destination outputs) {
+        Objects.requireNonNull(outputs);
+        return () -> new Decoding(outputs);
+    }
+
+    /**
+     * Stream to decode the data of a tag into.
+     */
+    @FunctionalInterface
+    public interface Destination {
+        /**
+         * Open stream for the data of the tag.
+         *
+         * @return The stream, or null to keep the tag intact.
+         */
+        OutputStream open(Tag.Start tag) throws IOException;
+    }
+
+    private static final class EncodingReader extends Reader {
+        /**
+         * Whole base64 quanta, so only the last chunk is padded.
+         */
+        private static final int CHUNK_BYTES = 3 * 1024;
+
+        private final InputStream data;
+        private final Base64.Encoder encoder = Base64.getEncoder();
+
+        private byte[] encoded = new byte[0];
+        private int position = 0;
+        private boolean eof = false;
+
+        private EncodingReader(InputStream data) {
+            this.data = data;
+        }
+
+        @Override
+        public int read(char[] cbuf, int off, int len) throws IOException {
+            Objects.checkFromIndexSize(off, len, cbuf.length);
+            if (len == 0) return 0;
+
+            if (position == encoded.length) {
+                if (eof) return -1;
+
+                byte[] chunk = data.readNBytes(CHUNK_BYTES);
+                if (chunk.length < CHUNK_BYTES) {
+                    eof = true;
+                }
+                encoded = encoder.encode(chunk);
+                position = 0;
+                if (encoded.length == 0) return -1;
+            }
+
+            int read = Math.min(len, encoded.length - position);
+            for (int i = 0; i < read; i++) {
+                // Base64 alphabet is ASCII
+                cbuf[off + i] = (char) encoded[position++];
+            }
+            return read;
+        }
+
+        @Override
+        public void close() throws IOException {
+            data.close();
+        }
+    }
+
+    private static final class Decoding implements UpdatingVisitor, AutoCloseable {
+        private static final byte[] SEXTETS = new byte[128];
+        static {
+            Arrays.fill(SEXTETS, (byte) -1);
+            byte[] alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".getBytes(StandardCharsets.US_ASCII);
+            for (int i = 0; i < alphabet.length; i++) {
+                SEXTETS[alphabet[i]] = (byte) i;
+            }
+        }
+
+        private final Destination outputs;
+
+        private Tag decoded;
+        private OutputStream out;
+
+        /**
+         * Sextets accumulated towards the next 3 bytes.
+         */
+        private int bits;
+        private int sextets;
+        private boolean padded;
+
+        private final byte[] buffer = new byte[8192];
+        private int buffered;
+
+        private Decoding(Destination outputs) {
+            this.outputs = outputs;
+        }
+
+        @Override
+        public void startTag(Tag.Start tag) throws FailedTransforming {
+            if (out != null) throw new FailedTransforming(
+                    "Cannot decode " + tag + " nested in " + decoded + " decoded already"
+            );
+
+            try {
+                out = outputs.open(tag);
+            } catch (IOException e) {
+                throw new FailedWriting("Cannot open stream for data of " + tag, e);
+            }
+            if (out != null) {
+                decoded = tag;
+            }
+        }
+
+        @Override
+        public void chars(Tag.Chars tag, CharChunk chars) {
+            if (out == null || tag != decoded) return;
+
+            for (int i = 0, length = chars.length(); i < length; i++) {
+                decode(chars.charAt(i));
+            }
+            chars.clear();
+        }
+
+        private void decode(char c) {
+            if (Character.isWhitespace(c)) return;
+
+            if (c == '=') {
+                if (sextets < 2) throw invalid("misplaced padding");
+                padded = true;
+                return;
+            }
+
+            int sextet = c < SEXTETS.length ? SEXTETS[c] : -1;
+            if (sextet < 0) throw invalid("illegal character '" + c + "'");
+            if (padded) throw invalid("data after padding");
+
+            bits = (bits << 6) | sextet;
+            if (++sextets == 4) {
+                write((byte) (bits >> 16));
+                write((byte) (bits >> 8));
+                write((byte) bits);
+                bits = 0;
+                sextets = 0;
+            }
+        }
+
+        @Override
+        public void endTag(Tag.End tag) throws FailedTransforming {
+            if (out == null || tag != decoded) return;
+
+            // Trailing partial quantum, padded or not
+            switch (sextets) {
+                case 0: break;
+                case 1: throw invalid("truncated data");
+                case 2:
+                    write((byte) (bits >> 4));
+                    break;
+                case 3:
+                    write((byte) (bits >> 10));
+                    write((byte) (bits >> 2));
+                    break;
+                default: throw new AssertionError(sextets);
+            }
+
+            try (OutputStream closing = out) {
+                closing.write(buffer, 0, buffered);
+            } catch (IOException e) {
+                throw new FailedWriting("Failed writing data of " + decoded, e);
+            } finally {
+                clear();
+            }
+        }
+
+        /**
+         * Close the stream of the tag not completed, discarding the data not written yet.
+         */
+        @Override
+        public void close() throws FailedWriting {
+            if (out == null) return;
+
+            try {
+                out.close();
+            } catch (IOException e) {
+                throw new FailedWriting("Failed closing data of " + decoded, e);
+            } finally {
+                clear();
+            }
+        }
+
+        private void clear() {
+            out = null;
+            decoded = null;
+            bits = 0;
+            sextets = 0;
+            padded = false;
+            buffered = 0;
+        }
+
+        private void write(byte b) {
+            if (buffered == buffer.length) {
+                try {
+                    out.write(buffer, 0, buffered);
+                } catch (IOException e) {
+                    throw new FailedWriting("Failed writing data of " + decoded, e);
+                }
+                buffered = 0;
+            }
+            buffer[buffered++] = b;
+        }
+
+        private FailedTransforming invalid(String reason) {
+            return new FailedTransforming("Invalid base64 content of " + decoded + ": " + reason);
+        }
+    }
+}
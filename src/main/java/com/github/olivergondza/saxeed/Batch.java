@@ -0,0 +1,356 @@
+package com.github.olivergondza.saxeed;
+
+import com.github.olivergondza.saxeed.ex.FailedReading;
+import com.github.olivergondza.saxeed.ex.FailedWriting;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+/**
+ * Apply a transformation to a number of files in parallel.
+ *
+ * <pre>
+ *     Batch.Result result = new Batch(compiledTransformation)
+ *         .setParallelism(8)
+ *         .transform(inputs, in -&gt; outDir.resolve(in.getFileName()));
+ * </pre>
+ *
+ * The largest files are started first, to minimize the time of the batch. Failure to transform a file does not
+ * affect the others, it is reported in the result and its partial output is deleted. An {@link Error} aborts the batch.
+ */
+public final class Batch {
+
+    private static final Method NEW_VIRTUAL_THREAD_EXECUTOR = virtualThreadExecutorFactory();
+
+    private final TransformationEngine engine;
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+    private long memoryBudget = Runtime.getRuntime().maxMemory() / 4;
+    private boolean virtualThreads = false;
+
+    public Batch(CompiledTransformation transformation) {
+        this.engine = new TransformationEngine(transformation);
+    }
+
+    /**
+     * Number of files transformed at the same time.
+     *
+     * Ignored when running on virtual threads.
+     */
+    public Batch setParallelism(int parallelism) {
+        if (parallelism < 1) throw new IllegalArgumentException("Parallelism must be positive: " + parallelism);
+
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    /**
+     * Limit the total size of files transformed at the same time.
+     *
+     * The size of the file is used as an upper estimate of the memory its transformation can take. A file bigger than
+     * the budget is transformed when no other files are.
+     */
+    public Batch setMemoryBudget(long bytes) {
+        if (bytes < 1) throw new IllegalArgumentException("Memory budget must be positive: " + bytes);
+
+        this.memoryBudget = bytes;
+        return this;
+    }
+
+    /**
+     * Transform every file on its own virtual thread.
+     *
+     * @throws UnsupportedOperationException When not running on Java 21+.
+     */
+    public Batch setVirtualThreads(boolean virtualThreads) throws UnsupportedOperationException {
+        if (virtualThreads && NEW_VIRTUAL_THREAD_EXECUTOR == null) {
+            throw new UnsupportedOperationException("Virtual threads require Java 21+, running " + Runtime.version());
+        }
+
+        this.virtualThreads = virtualThreads;
+        return this;
+    }
+
+    /**
+     * Transform the files.
+     *
+     * The output directories are created when needed. The method returns when all files are processed. Files that
+     * cannot be accessed, or that are their own output, are reported as failed.
+     *
+     * @param inputs Files to transform.
+     * @param output Mapping of the input file to its output file.
+     * @throws Error When transforming some of the files throws it. The files not started yet are not transformed.
+     */
+    public Result transform(Collection<Path> inputs, Function<Path, Path> output) {
+        Result result = new Result();
+        long startNanos = System.nanoTime();
+
+        List<Job> jobs = new ArrayList<>(inputs.size());
+        for (Path input : inputs) {
+            long size;
+            try {
+                size = Files.size(input);
+            } catch (IOException e) {
+                result.failed(input, new FailedReading("Unable to read input file " + input, e));
+                continue;
+            }
+
+            Path out = output.apply(input);
+            if (isSameFile(input, out)) {
+                // Writing the output would truncate the input
+                result.failed(input, new FailedWriting("Output file is the input file: " + input));
+                continue;
+            }
+            jobs.add(new Job(input, out, size));
+        }
+        jobs.sort(Comparator.comparingLong((Job job) -> job.size).reversed());
+
+        AtomicReference<Error> fatal = new AtomicReference<>();
+        ExecutorService executor = createExecutor();
+        try {
+            Budget budget = new Budget(memoryBudget);
+            for (Job job : jobs) {
+                long reserved = budget.acquire(job.size);
+                if (fatal.get() != null) {
+                    budget.release(reserved);
+                    break;
+                }
+                executor.execute(() -> {
+                    try {
+                        if (fatal.get() == null) {
+                            job.run(result);
+                        }
+                    } catch (Error e) {
+                        fatal.compareAndSet(null, e);
+                    } finally {
+                        budget.release(reserved);
+                    }
+                });
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for files to be transformed", e);
+        } finally {
+            executor.shutdown();
+            awaitTermination(executor);
+            engine.close();
+        }
+        if (fatal.get() != null) throw fatal.get();
+
+        result.duration = Duration.ofNanos(System.nanoTime() - startNanos);
+        return result;
+    }
+
+    private static boolean isSameFile(Path input, Path output) {
+        if (input.toAbsolutePath().normalize().equals(output.toAbsolutePath().normalize())) return true;
+
+        try {
+            return Files.exists(output) && Files.isSameFile(input, output);
+        } catch (IOException e) {
+            // Cannot tell, writing the output fails the same way
+            return false;
+        }
+    }
+
+    private ExecutorService createExecutor() {
+        if (!virtualThreads) return new ForkJoinPool(parallelism);
+
+        try {
+            return (ExecutorService) NEW_VIRTUAL_THREAD_EXECUTOR.invoke(null);
+        } catch (IllegalAccessException | InvocationTargetException e) {
+            throw new AssertionError("Unable to create virtual thread executor", e);
+        }
+    }
+
+    private static void awaitTermination(ExecutorService executor) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                if (executor.awaitTermination(1, TimeUnit.MINUTES)) break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static Method virtualThreadExecutorFactory() {
+        try {
+            return java.util.concurrent.Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    private final class Job {
+        private final Path input;
+        private final Path output;
+        private final long size;
+
+        private Job(Path input, Path output, long size) {
+            this.input = input;
+            this.output = output;
+            this.size = size;
+        }
+
+        private void run(Result result) {
+            try {
+                Path dir = output.toAbsolutePath().getParent();
+                if (dir != null) {
+                    Files.createDirectories(dir);
+                }
+
+                try (
+                        InputStream is = Files.newInputStream(input);
+                        OutputStream os = new BufferedOutputStream(Files.newOutputStream(output))
+                ) {
+                    engine.transform(is, os);
+                }
+                result.succeeded(input, size);
+            } catch (RuntimeException e) {
+                failed(result, e);
+            } catch (IOException e) {
+                failed(result, new FailedWriting("Failed transforming " + input + " to " + output, e));
+            }
+        }
+
+        private void failed(Result result, Exception cause) {
+            try {
+                Files.deleteIfExists(output);
+            } catch (IOException ex) {
+                cause.addSuppressed(ex);
+            }
+            result.failed(input, cause);
+        }
+    }
+
+    /**
+     * Memory reserved by the files in progress.
+     */
+    private static final class Budget {
+        private final int unit;
+        private final int permits;
+        private final Semaphore semaphore;
+
+        private Budget(long bytes) {
+            // Semaphore counts in ints, so count in kilobytes for large budgets
+            unit = bytes > Integer.MAX_VALUE ? 1024 : 1;
+            permits = (int) Math.min(Integer.MAX_VALUE, bytes / unit);
+            semaphore = new Semaphore(permits);
+        }
+
+        private long acquire(long bytes) throws InterruptedException {
+            int reserve = (int) Math.max(1, Math.min(permits, bytes / unit));
+            semaphore.acquire(reserve);
+            return reserve;
+        }
+
+        private void release(long reserved) {
+            semaphore.release((int) reserved);
+        }
+    }
+
+    /**
+     * Outcome of the batch transformation.
+     */
+    public static final class Result {
+        private final List<Path> succeeded = Collections.synchronizedList(new ArrayList<>());
+        private final Map<Path, Exception> failed = Collections.synchronizedMap(new LinkedHashMap<>());
+        private final AtomicLong bytesRead = new AtomicLong();
+        private Duration duration;
+
+        private Result() {
+        }
+
+        private void succeeded(Path input, long size) {
+            succeeded.add(input);
+            bytesRead.addAndGet(size);
+        }
+
+        private void failed(Path input, Exception cause) {
+            failed.put(input, cause);
+        }
+
+        /**
+         * Determine if all files were transformed.
+         */
+        public boolean isSuccessful() {
+            return failed.isEmpty();
+        }
+
+        /**
+         * Input files transformed, in order of completion.
+         */
+        public List<Path> getSucceeded() {
+            return List.copyOf(succeeded);
+        }
+
+        /**
+         * Input files that failed, with the cause of failure.
+         */
+        public Map<Path, Exception> getFailed() {
+            synchronized (failed) {
+                return Collections.unmodifiableMap(new LinkedHashMap<>(failed));
+            }
+        }
+
+        /**
+         * Total size of input files transformed successfully.
+         */
+        public long getBytesRead() {
+            return bytesRead.get();
+        }
+
+        /**
+         * Wall-clock time of the batch.
+         */
+        public Duration getDuration() {
+            return duration;
+        }
+
+        public double getFilesPerSecond() {
+            return perSecond(succeeded.size());
+        }
+
+        public double getBytesPerSecond() {
+            return perSecond(bytesRead.get());
+        }
+
+        private double perSecond(long amount) {
+            long nanos = Math.max(1, duration.toNanos());
+            return amount * 1e9 / nanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(
+                    "Transformed %d files (%d failed), %d bytes in %s: %.1f files/s, %.1f MB/s",
+                    succeeded.size(), failed.size(), bytesRead.get(), duration,
+                    getFilesPerSecond(), getBytesPerSecond() / (1024 * 1024)
+            );
+        }
+    }
+}
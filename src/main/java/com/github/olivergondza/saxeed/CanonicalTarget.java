@@ -0,0 +1,83 @@
+package com.github.olivergondza.saxeed;
+
+import com.github.olivergondza.saxeed.ex.FailedWriting;
+import com.github.olivergondza.saxeed.internal.CanonicalXmlStreamWriter;
+
+import javax.xml.stream.XMLStreamWriter;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Objects;
+
+/**
+ * Target writing the document in its canonical form, to be signed or compared byte by byte.
+ *
+ * Canonical XML 1.1, or Exclusive XML Canonicalization when requested, both without comments, is applied as the
+ * document is written, in UTF-8. Only the namespaces in scope and the names of the open elements are kept in memory.
+ *
+ * <pre>
+ *     new Saxeed().setInput(in).addTransformation(tb, new CanonicalTarget(out).setExclusive(true));
+ * </pre>
+ */
+public class CanonicalTarget extends Target {
+
+    private final Path path;
+    private final OutputStream os;
+    private final String name;
+
+    private boolean exclusive = false;
+
+    /**
+     * Write to a file, that is closed once the transformation is completed.
+     */
+    public CanonicalTarget(Path path) {
+        this.path = Objects.requireNonNull(path);
+        this.os = null;
+        this.name = path.toAbsolutePath().toString();
+    }
+
+    /**
+     * Write to OutputStream.
+     *
+     * The stream is NOT closed.
+     */
+    public CanonicalTarget(OutputStream os) {
+        this.path = null;
+        this.os = Objects.requireNonNull(os);
+        this.name = "explicit OutputStream " + os.getClass().getName() + "@" + Integer.toHexString(os.hashCode());
+    }
+
+    /**
+     * Apply Exclusive XML Canonicalization, declaring the namespaces only on the elements using them. Not by default.
+     */
+    public CanonicalTarget setExclusive(boolean exclusive) {
+        this.exclusive = exclusive;
+        return this;
+    }
+
+    @Override
+    public String getName() {
+        return "canonical " + name;
+    }
+
+    @Override
+    public XMLStreamWriter getWriter(Saxeed saxeed) {
+        Writer out;
+        if (path == null) {
+            out = new BufferedWriter(new OutputStreamWriter(os, StandardCharsets.UTF_8));
+        } else {
+            try {
+                out = Files.newBufferedWriter(path, StandardCharsets.UTF_8);
+            } catch (IOException e) {
+                throw new FailedWriting("Cannot create/open file: " + name, e);
+            }
+            registerClosable(out);
+        }
+        return new CanonicalXmlStreamWriter(out, exclusive);
+    }
+}
@@ -0,0 +1,189 @@
+package com.github.olivergondza.saxeed;
+
+import com.github.olivergondza.saxeed.ex.FailedWriting;
+
+import javax.xml.stream.XMLStreamWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+
+/**
+ * Target writing a file through a FileChannel.
+ *
+ * The content is collected in a large direct buffer, reused for all the transformations using the target, and written
+ * to the channel once full or flushed. The file is truncated when opened, so using the same target repeatedly overwrites its content.
+ *
+ * <pre>
+ *     new Saxeed().setInput(in).addTransformation(tb, new ChannelTarget(out).setFsync(Fsync.ON_CLOSE));
+ * </pre>
+ */
+public class ChannelTarget extends Target {
+
+    private static final int DEFAULT_BUFFER_SIZE = 1024 * 1024;
+
+    private final Path path;
+    private int bufferSize = DEFAULT_BUFFER_SIZE;
+    private Fsync fsync = Fsync.NEVER;
+
+    private ByteBuffer buffer;
+
+    public ChannelTarget(Path path) {
+        this.path = Objects.requireNonNull(path);
+    }
+
+    /**
+     * Set the size of the buffer. 1 MiB by default.
+     */
+    public ChannelTarget setBufferSize(int bufferSize) {
+        if (bufferSize <= 0) throw new IllegalArgumentException("Buffer size must be positive: " + bufferSize);
+
+        this.bufferSize = bufferSize;
+        this.buffer = null;
+        return this;
+    }
+
+    /**
+     * Decide when the content is forced to the storage device. {@link Fsync#NEVER} by default.
+     */
+    public ChannelTarget setFsync(Fsync fsync) {
+        this.fsync = Objects.requireNonNull(fsync);
+        return this;
+    }
+
+    @Override
+    public String getName() {
+        return path.toAbsolutePath().toString();
+    }
+
+    @Override
+    public XMLStreamWriter getWriter(Saxeed saxeed) {
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(
+                    path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING
+            );
+        } catch (IOException e) {
+            throw new FailedWriting("Cannot create/open file: " + getName(), e);
+        }
+
+        if (buffer == null) {
+            buffer = ByteBuffer.allocateDirect(bufferSize);
+        }
+        buffer.clear();
+
+        ChannelOutputStream os = new ChannelOutputStream(channel, buffer);
+        registerClosable(os);
+        return createXmlStreamWriter(os);
+    }
+
+    /**
+     * When to force the content written to the storage device.
+     */
+    public static final class Fsync {
+        /**
+         * Leave it to the operating system.
+         */
+        public static final Fsync NEVER = new Fsync(-1);
+
+        /**
+         * Once the transformation is completed.
+         */
+        public static final Fsync ON_CLOSE = new Fsync(Long.MAX_VALUE);
+
+        private final long bytes;
+
+        private Fsync(long bytes) {
+            this.bytes = bytes;
+        }
+
+        /**
+         * Every time at least the number of bytes was written since the last time, and once completed.
+         *
+         * It is checked as the buffer is written to the channel, once full or flushed. So without the flushes, the interval
+         * is rounded up to the buffer size.
+         */
+        public static Fsync every(long bytes) {
+            if (bytes <= 0) throw new IllegalArgumentException("Bytes must be positive: " + bytes);
+
+            return new Fsync(bytes);
+        }
+
+        @Override
+        public String toString() {
+            if (bytes < 0) return "Fsync.NEVER";
+            if (bytes == Long.MAX_VALUE) return "Fsync.ON_CLOSE";
+            return "Fsync.every(" + bytes + ")";
+        }
+    }
+
+    private final class ChannelOutputStream extends OutputStream {
+        private final FileChannel channel;
+        private final ByteBuffer buffer;
+        private long unsynced = 0;
+
+        private ChannelOutputStream(FileChannel channel, ByteBuffer buffer) {
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (!buffer.hasRemaining()) {
+                drain();
+            }
+            buffer.put((byte) b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            Objects.checkFromIndexSize(off, len, b.length);
+            while (len > 0) {
+                if (!buffer.hasRemaining()) {
+                    drain();
+                }
+                int chunk = Math.min(len, buffer.remaining());
+                buffer.put(b, off, chunk);
+                off += chunk;
+                len -= chunk;
+            }
+        }
+
+        /**
+         * Write the buffer content to the channel.
+         */
+        private void drain() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                unsynced += channel.write(buffer);
+            }
+            buffer.clear();
+
+            if (fsync.bytes > 0 && unsynced >= fsync.bytes) {
+                channel.force(false);
+                unsynced = 0;
+            }
+        }
+
+        /**
+         * The writer only flushes when asked to, like by the {@link FlushPolicy}.
+         */
+        @Override
+        public void flush() throws IOException {
+            drain();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try (FileChannel closing = channel) {
+                drain();
+                if (fsync.bytes > 0) {
+                    closing.force(true);
+                }
+            }
+        }
+    }
+}
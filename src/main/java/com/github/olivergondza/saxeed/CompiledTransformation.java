@@ -0,0 +1,84 @@
+package com.github.olivergondza.saxeed;
+
+import com.github.olivergondza.saxeed.internal.DispatchTable;
+import com.github.olivergondza.saxeed.internal.ProjectionHandler;
+import com.github.olivergondza.saxeed.internal.RecordLimits;
+import com.github.olivergondza.saxeed.internal.TransformationHandler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Immutable transformation, that can be used for any number of documents, concurrently.
+ *
+ * Created by {@link TransformationBuilder#compile()}. Visitors are instantiated from their factories for every
+ * document, while the subscriptions are resolved only once per tag name and shared between all the runs.
+ *
+ * <pre>
+ *     CompiledTransformation ct = new TransformationBuilder().add("entry", EntryVisitor::new).compile();
+ *     // In any thread
+ *     new Saxeed().setInput(input).addTransformation(ct, output).transform();
+ * </pre>
+ */
+public final class CompiledTransformation {
+
+    private final List<Supplier<? extends UpdatingVisitor>> factories;
+    private final DispatchTable dispatch;
+    private final FinishPolicy finishPolicy;
+    private final RecordLimits limits;
+    private final TextMode textMode;
+    private final NamespaceDeclarations namespaceDeclarations;
+    private final FlushPolicy flushPolicy;
+
+    /*package*/ CompiledTransformation(
+            List<Subscribed> subscriptions, List<Supplier<? extends UpdatingVisitor>> factories,
+            FinishPolicy finishPolicy, RecordLimits limits, TextMode textMode,
+            NamespaceDeclarations namespaceDeclarations, FlushPolicy flushPolicy
+    ) {
+        assert subscriptions.size() == factories.size();
+
+        this.factories = List.copyOf(factories);
+        this.dispatch = new DispatchTable(subscriptions);
+        this.finishPolicy = finishPolicy;
+        this.limits = limits;
+        this.textMode = textMode;
+        this.namespaceDeclarations = namespaceDeclarations;
+        this.flushPolicy = flushPolicy;
+    }
+
+    /**
+     * Create handler with fresh visitor instances.
+     */
+    public TransformationHandler build(Saxeed saxeed, Target target) {
+        return new TransformationHandler(
+                saxeed, target, createVisitors(), dispatch, finishPolicy, limits, textMode, namespaceDeclarations,
+                flushPolicy
+        );
+    }
+
+    /**
+     * Create handler with fresh visitor instances, not writing anything.
+     */
+    public ProjectionHandler project() {
+        if (limits.isLimited()) throw new IllegalStateException("Head and sample are not supported by projections");
+
+        return new ProjectionHandler(createVisitors(), dispatch, textMode);
+    }
+
+    /*package*/ boolean isRecordLimited() {
+        return limits.isLimited();
+    }
+
+    /*package*/ List<UpdatingVisitor> createVisitors() {
+        List<UpdatingVisitor> visitors = new ArrayList<>(factories.size());
+        for (Supplier<? extends UpdatingVisitor> factory : factories) {
+            UpdatingVisitor visitor = factory.get();
+            if (visitor == null) {
+                throw new IllegalStateException("Visitor factory returned null: " + factory);
+            }
+            visitors.add(visitor);
+        }
+        return visitors;
+    }
+}
@@ -0,0 +1,495 @@
+package com.github.olivergondza.saxeed;
+
+import com.github.olivergondza.saxeed.ex.FailedWriting;
+import com.github.olivergondza.saxeed.internal.DelegatingXmlStreamWriter;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.IntFunction;
+
+/**
+ * Target extracting a row of fields from every record into a CSV or TSV file.
+ *
+ * The columns are paths relative to the record, matching the local names of the elements:
+ * <ul>
+ *     <li>{@code name} - text of the {@code name} child.</li>
+ *     <li>{@code price/amount} - text of the {@code amount} child of the {@code price} child.</li>
+ *     <li>{@code @id} - attribute {@code id} of the record.</li>
+ *     <li>{@code price/@currency} - attribute {@code currency} of the {@code price} child.</li>
+ * </ul>
+ * The text includes the text of the descendants. Only the first matching element is used, and the fields with no match
+ * are empty. The content outside the records is not written.
+ *
+ * <pre>
+ *     new DelimitedTarget(TagName.noNs("item"), out).setColumns("@id", "name", "price", "price/@currency").setHeader(true);
+ * </pre>
+ */
+public class DelimitedTarget extends Target {
+
+    /**
+     * How the fields are delimited and escaped.
+     */
+    public enum Format {
+        /**
+         * Comma separated, with the fields containing commas, quotes, or line breaks quoted, and the rows ended by CRLF
+         * (RFC 4180).
+         */
+        CSV,
+
+        /**
+         * Tab separated, with tabs, line breaks, and backslashes escaped by backslash, and the rows ended by LF.
+         */
+        TSV
+    }
+
+    private final TagName record;
+    private final Path path;
+    private final IntFunction<Path> parts;
+    private final OutputStream os;
+    private final String name;
+
+    private String[] columns = new String[0];
+    private Format format = Format.CSV;
+    private boolean header = false;
+    private long maxRows = Long.MAX_VALUE;
+
+    private final List<Path> written = new ArrayList<>();
+
+    /**
+     * Write to a file, that is closed once the transformation is completed.
+     */
+    public DelimitedTarget(TagName record, Path path) {
+        this(record, path, null, null, path.toAbsolutePath().toString());
+    }
+
+    /**
+     * Write to OutputStream.
+     *
+     * The stream is NOT closed.
+     */
+    public DelimitedTarget(TagName record, OutputStream os) {
+        this(record, null, null, os, "explicit OutputStream " + os.getClass().getName() + "@" + Integer.toHexString(os.hashCode()));
+    }
+
+    /**
+     * Write to files, starting a new one after {@link #setMaxRows(long)} rows.
+     *
+     * @param parts Path of the part by its zero-based index.
+     */
+    public DelimitedTarget(TagName record, IntFunction<Path> parts) {
+        this(record, null, parts, null, parts.apply(0).toAbsolutePath().toString());
+    }
+
+    private DelimitedTarget(TagName record, Path path, IntFunction<Path> parts, OutputStream os, String name) {
+        this.record = Objects.requireNonNull(record);
+        this.path = path;
+        this.parts = parts;
+        this.os = os;
+        this.name = name;
+    }
+
+    /**
+     * Set the paths of the columns to extract.
+     */
+    public DelimitedTarget setColumns(String... columns) {
+        for (String column : columns) {
+            new Column(column); // Validate
+        }
+        this.columns = columns.clone();
+        return this;
+    }
+
+    /**
+     * Set the format of the output. {@link Format#CSV} by default.
+     */
+    public DelimitedTarget setFormat(Format format) {
+        this.format = Objects.requireNonNull(format);
+        return this;
+    }
+
+    /**
+     * Start every file with a row of the column paths. Not by default.
+     */
+    public DelimitedTarget setHeader(boolean header) {
+        this.header = header;
+        return this;
+    }
+
+    /**
+     * Start a new part after the number of rows, when writing to parts.
+     */
+    public DelimitedTarget setMaxRows(long maxRows) {
+        if (maxRows <= 0) throw new IllegalArgumentException("Max rows must be positive: " + maxRows);
+        if (parts == null) throw new IllegalStateException("Splitting rows is only supported when writing to parts: " + getName());
+
+        this.maxRows = maxRows;
+        return this;
+    }
+
+    /**
+     * Get the files written by the last transformation.
+     */
+    public List<Path> getParts() {
+        return List.copyOf(written);
+    }
+
+    @Override
+    public String getName() {
+        return format.name().toLowerCase() + " " + name;
+    }
+
+    @Override
+    public XMLStreamWriter getWriter(Saxeed saxeed) {
+        if (columns.length == 0) throw new IllegalStateException("No columns to extract: " + getName());
+
+        written.clear();
+        RowWriter writer = new RowWriter();
+        registerClosable(writer::closePart);
+        return writer;
+    }
+
+    /**
+     * Column path, with the buffer of its field.
+     */
+    private static final class Column {
+        private final String path;
+        private final String[] elements;
+        private final String attribute;
+
+        private final StringBuilder value = new StringBuilder();
+        /**
+         * Number of path elements matching the elements open.
+         */
+        private int matched;
+        private boolean done;
+
+        private Column(String path) {
+            this.path = path;
+
+            String[] segments = path.split("/", -1);
+            String last = segments[segments.length - 1];
+            if (last.startsWith("@")) {
+                attribute = last.substring(1);
+                elements = new String[segments.length - 1];
+                System.arraycopy(segments, 0, elements, 0, elements.length);
+                if (attribute.isEmpty()) throw new IllegalArgumentException("Invalid column path: " + path);
+            } else {
+                attribute = null;
+                elements = segments;
+                if (elements.length == 0) throw new IllegalArgumentException("Invalid column path: " + path);
+            }
+            for (String element : elements) {
+                if (element.isEmpty() || element.startsWith("@")) throw new IllegalArgumentException("Invalid column path: " + path);
+            }
+        }
+
+        private void reset() {
+            value.setLength(0);
+            matched = 0;
+            done = false;
+        }
+
+        private boolean isComplete() {
+            return !done && matched == elements.length;
+        }
+    }
+
+    private final class RowWriter extends DelegatingXmlStreamWriter {
+
+        private final Column[] fields;
+        private final char delimiter;
+        private final String lineEnd;
+
+        private Writer out;
+        private long rows = 0;
+
+        /**
+         * Number of elements open in the record, 0 outside of records.
+         */
+        private int open = 0;
+        private int depth = 0;
+
+        private RowWriter() {
+            // Keeps track of the namespaces for the visitors
+            super(createXmlStreamWriter(OutputStream.nullOutputStream()));
+
+            fields = new Column[columns.length];
+            for (int i = 0; i < columns.length; i++) {
+                fields[i] = new Column(columns[i]);
+            }
+            delimiter = format == Format.CSV ? ',' : '\t';
+            lineEnd = format == Format.CSV ? "\r\n" : "\n";
+
+            openPart();
+        }
+
+        private void openPart() {
+            OutputStream stream;
+            if (os != null) {
+                stream = os;
+            } else {
+                Path part = parts != null ? parts.apply(written.size()) : path;
+                try {
+                    stream = Files.newOutputStream(part);
+                } catch (IOException e) {
+                    throw new FailedWriting("Cannot create/open file: " + part.toAbsolutePath(), e);
+                }
+                written.add(part);
+            }
+            out = new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8));
+
+            if (header) {
+                try {
+                    for (int i = 0; i < fields.length; i++) {
+                        if (i > 0) out.write(delimiter);
+                        writeField(fields[i].path);
+                    }
+                    out.write(lineEnd);
+                } catch (IOException e) {
+                    throw new FailedWriting("Failed writing header to " + getName(), e);
+                }
+            }
+        }
+
+        private void closePart() throws IOException {
+            if (os != null) {
+                out.flush();
+            } else {
+                out.close();
+            }
+        }
+
+        private void start(String uri, String localName) {
+            depth++;
+            if (open == 0) {
+                if (!record.getLocal().equals(localName) || !record.getNsUri().equals(uri)) return;
+
+                for (Column field : fields) {
+                    field.reset();
+                }
+            } else {
+                for (Column field : fields) {
+                    if (!field.done && field.matched == open - 1 && field.matched < field.elements.length && field.elements[field.matched].equals(localName)) {
+                        field.matched = open;
+                    }
+                }
+            }
+            open++;
+        }
+
+        private void end() throws XMLStreamException {
+            depth--;
+            if (open == 0) return;
+
+            open--;
+            if (open == 0) {
+                writeRow();
+                return;
+            }
+
+            for (Column field : fields) {
+                if (field.matched == open && !field.done) {
+                    // Only the first matching element is used
+                    if (field.matched == field.elements.length) {
+                        field.done = true;
+                    }
+                    field.matched--;
+                }
+            }
+        }
+
+        private void text(String text) {
+            if (open == 0) return;
+
+            for (Column field : fields) {
+                if (field.attribute == null && field.isComplete()) {
+                    field.value.append(text);
+                }
+            }
+        }
+
+        private void text(char[] text, int start, int len) {
+            if (open == 0) return;
+
+            for (Column field : fields) {
+                if (field.attribute == null && field.isComplete()) {
+                    field.value.append(text, start, len);
+                }
+            }
+        }
+
+        private void attribute(String localName, String value) {
+            if (open == 0) return;
+
+            for (Column field : fields) {
+                // Attributes are written right after their element is started
+                if (field.attribute != null && field.matched == open - 1 && field.isComplete() && field.attribute.equals(localName)) {
+                    field.value.append(value);
+                    field.done = true;
+                }
+            }
+        }
+
+        private void writeRow() throws XMLStreamException {
+            try {
+                if (rows == maxRows) {
+                    closePart();
+                    openPart();
+                    rows = 0;
+                }
+
+                for (int i = 0; i < fields.length; i++) {
+                    if (i > 0) out.write(delimiter);
+                    writeField(fields[i].value);
+                }
+                out.write(lineEnd);
+                rows++;
+            } catch (IOException e) {
+                throw new XMLStreamException("Failed writing row to " + getName(), e);
+            }
+        }
+
+        private void writeField(CharSequence value) throws IOException {
+            int length = value.length();
+            if (format == Format.TSV) {
+                for (int i = 0; i < length; i++) {
+                    char c = value.charAt(i);
+                    switch (c) {
+                        case '\t': out.write("\\t"); break;
+                        case '\n': out.write("\\n"); break;
+                        case '\r': out.write("\\r"); break;
+                        case '\\': out.write("\\\\"); break;
+                        default: out.write(c);
+                    }
+                }
+                return;
+            }
+
+            boolean quote = false;
+            for (int i = 0; i < length && !quote; i++) {
+                char c = value.charAt(i);
+                quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+            }
+            if (!quote) {
+                for (int i = 0; i < length; i++) {
+                    out.write(value.charAt(i));
+                }
+                return;
+            }
+
+            out.write('"');
+            for (int i = 0; i < length; i++) {
+                char c = value.charAt(i);
+                if (c == '"') out.write('"');
+                out.write(c);
+            }
+            out.write('"');
+        }
+
+        @Override
+        public void writeStartElement(String localName) throws XMLStreamException {
+            delegate.writeStartElement(localName);
+            start("", localName);
+        }
+
+        @Override
+        public void writeStartElement(String namespaceURI, String localName) throws XMLStreamException {
+            delegate.writeStartElement(namespaceURI, localName);
+            start(namespaceURI, localName);
+        }
+
+        @Override
+        public void writeStartElement(String prefix, String localName, String namespaceURI) throws XMLStreamException {
+            delegate.writeStartElement(prefix, localName, namespaceURI);
+            start(namespaceURI, localName);
+        }
+
+        @Override
+        public void writeEmptyElement(String localName) throws XMLStreamException {
+            delegate.writeEmptyElement(localName);
+            start("", localName);
+            end();
+        }
+
+        @Override
+        public void writeEmptyElement(String namespaceURI, String localName) throws XMLStreamException {
+            delegate.writeEmptyElement(namespaceURI, localName);
+            start(namespaceURI, localName);
+            end();
+        }
+
+        @Override
+        public void writeEmptyElement(String prefix, String localName, String namespaceURI) throws XMLStreamException {
+            delegate.writeEmptyElement(prefix, localName, namespaceURI);
+            start(namespaceURI, localName);
+            end();
+        }
+
+        @Override
+        public void writeEndElement() throws XMLStreamException {
+            delegate.writeEndElement();
+            end();
+        }
+
+        @Override
+        public void writeEndDocument() throws XMLStreamException {
+            delegate.writeEndDocument();
+            while (depth > 0) {
+                end();
+            }
+        }
+
+        @Override
+        public void writeAttribute(String localName, String value) throws XMLStreamException {
+            delegate.writeAttribute(localName, value);
+            attribute(localName, value);
+        }
+
+        @Override
+        public void writeAttribute(String prefix, String namespaceURI, String localName, String value) throws XMLStreamException {
+            delegate.writeAttribute(prefix, namespaceURI, localName, value);
+            attribute(localName, value);
+        }
+
+        @Override
+        public void writeAttribute(String namespaceURI, String localName, String value) throws XMLStreamException {
+            delegate.writeAttribute(namespaceURI, localName, value);
+            attribute(localName, value);
+        }
+
+        @Override
+        public void writeCharacters(String text) {
+            text(text);
+        }
+
+        @Override
+        public void writeCharacters(char[] text, int start, int len) {
+            text(text, start, len);
+        }
+
+        @Override
+        public void writeCData(String data) {
+            text(data);
+        }
+
+        @Override
+        public void flush() throws XMLStreamException {
+            try {
+                out.flush();
+            } catch (IOException e) {
+                throw new XMLStreamException("Failed flushing " + getName(), e);
+            }
+        }
+    }
+}
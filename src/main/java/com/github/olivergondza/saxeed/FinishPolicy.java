@@ -0,0 +1,21 @@
+package com.github.olivergondza.saxeed;
+
+/**
+ * What to do with the rest of the document, once all visitors of a transformation are done.
+ *
+ * @see UpdatingVisitor#isDone()
+ * @see TransformationBuilder#setFinishPolicy(FinishPolicy)
+ */
+public enum FinishPolicy {
+    /**
+     * Write the rest of the document without visiting it.
+     */
+    PASSTHROUGH,
+
+    /**
+     * Close all open tags, and ignore the rest of the document.
+     *
+     * The resulting document is well-formed, but it is missing the content after the point the visitors were done.
+     */
+    CLOSE
+}
@@ -0,0 +1,115 @@
+package com.github.olivergondza.saxeed;
+
+import java.time.Duration;
+import java.util.Objects;
+
+/**
+ * When to flush the target, so the consumers reading it as it is written do not need to wait for the buffers to fill.
+ *
+ * Flushing often lowers the latency of the individual records, at the expense of throughput.
+ *
+ * <pre>
+ *     new TransformationBuilder().setFlushPolicy(FlushPolicy.afterRecord(TagName.noNs("order")).or(FlushPolicy.every(Duration.ofMillis(100))));
+ * </pre>
+ *
+ * @see TransformationBuilder#setFlushPolicy(FlushPolicy)
+ */
+public final class FlushPolicy {
+
+    /**
+     * Flush only once the transformation is completed.
+     */
+    public static final FlushPolicy ON_CLOSE = new FlushPolicy(null, 0, 0);
+
+    private final TagName record;
+    private final long intervalNanos;
+    private final long chars;
+
+    private FlushPolicy(TagName record, long intervalNanos, long chars) {
+        this.record = record;
+        this.intervalNanos = intervalNanos;
+        this.chars = chars;
+    }
+
+    /**
+     * After every record is written.
+     */
+    public static FlushPolicy afterRecord(TagName record) {
+        return new FlushPolicy(Objects.requireNonNull(record), 0, 0);
+    }
+
+    /**
+     * Once the time elapsed since the last flush.
+     *
+     * It is only checked as the content is written, so nothing is flushed while the input is not coming.
+     */
+    public static FlushPolicy every(Duration interval) {
+        if (interval.isNegative() || interval.isZero()) throw new IllegalArgumentException("Interval must be positive: " + interval);
+
+        return new FlushPolicy(null, interval.toNanos(), 0);
+    }
+
+    /**
+     * Once the number of characters written since the last flush, counting the names, the attribute values, and the text.
+     *
+     * The characters are counted before they are encoded, so this is about the number of bytes for the ASCII content.
+     */
+    public static FlushPolicy everyChars(long chars) {
+        if (chars <= 0) throw new IllegalArgumentException("Chars must be positive: " + chars);
+
+        return new FlushPolicy(null, 0, chars);
+    }
+
+    /**
+     * Flush whenever this or the other policy would.
+     */
+    public FlushPolicy or(FlushPolicy other) {
+        if (record != null && other.record != null && !record.equals(other.record)) throw new IllegalArgumentException(
+                "Flushing after more than one record is not supported: " + record + ", " + other.record
+        );
+
+        return new FlushPolicy(
+                record != null ? record : other.record,
+                min(intervalNanos, other.intervalNanos),
+                min(chars, other.chars)
+        );
+    }
+
+    // 0 means unlimited
+    private static long min(long a, long b) {
+        if (a == 0) return b;
+        if (b == 0) return a;
+        return Math.min(a, b);
+    }
+
+    public boolean isOnClose() {
+        return record == null && intervalNanos == 0 && chars == 0;
+    }
+
+    /**
+     * @return Record to flush after, or null.
+     */
+    public TagName getRecord() {
+        return record;
+    }
+
+    /**
+     * @return Nanoseconds to flush after, or 0.
+     */
+    public long getIntervalNanos() {
+        return intervalNanos;
+    }
+
+    /**
+     * @return Characters to flush after, or 0.
+     */
+    public long getChars() {
+        return chars;
+    }
+
+    @Override
+    public String toString() {
+        if (isOnClose()) return "FlushPolicy.ON_CLOSE";
+        return String.format("FlushPolicy{record=%s, intervalNanos=%d, chars=%d}", record, intervalNanos, chars);
+    }
+}
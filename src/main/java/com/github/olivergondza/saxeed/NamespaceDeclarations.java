@@ -0,0 +1,20 @@
+package com.github.olivergondza.saxeed;
+
+/**
+ * How the namespace declarations are written.
+ *
+ * @see TransformationBuilder#setNamespaceDeclarations(NamespaceDeclarations)
+ */
+public enum NamespaceDeclarations {
+    /**
+     * Write every declaration of the input, and all the ones added by the visitors.
+     */
+    PRESERVE,
+
+    /**
+     * Omit the declarations binding a prefix to the namespace it is already bound to in the output.
+     *
+     * Useful for inputs repeating the same declarations on many sibling elements.
+     */
+    MINIMIZE
+}
@@ -0,0 +1,448 @@
+package com.github.olivergondza.saxeed;
+
+import com.github.olivergondza.saxeed.ex.FailedWriting;
+import com.github.olivergondza.saxeed.internal.DelegatingXmlStreamWriter;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Target writing every record as a JSON object on its own line (NDJSON), converted as it is written.
+ *
+ * The content outside the records is not written. Inside the records:
+ * <ul>
+ *     <li>Child elements are members named by their local names.</li>
+ *     <li>Attributes are members prefixed with {@code @} (see {@link #setAttributePrefix(String)}).</li>
+ *     <li>Elements with only text are strings. The text of the other elements is a member named {@code #text}
+ *     (see {@link #setTextKey(String)}), unless it is only whitespace.</li>
+ *     <li>Consecutive elements of the same name are an array. Elements named by {@link #setArrays(String...)} are always
+ *     arrays, even if there is only one of them.</li>
+ * </ul>
+ *
+ * All values are strings. The JSON is encoded to UTF-8 directly, through a buffer reused for all the records.
+ *
+ * <pre>
+ *     new Saxeed().setInput(feed).addTransformation(cleanup, new NdjsonTarget(TagName.noNs("item"), out).setArrays("tag"));
+ * </pre>
+ */
+public class NdjsonTarget extends Target {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final TagName record;
+    private final Path path;
+    private final OutputStream os;
+    private final String name;
+
+    private String attributePrefix = "@";
+    private String textKey = "#text";
+    private final Set<String> arrays = new HashSet<>();
+
+    /**
+     * Write to a file, that is closed once the transformation is completed.
+     */
+    public NdjsonTarget(TagName record, Path path) {
+        this.record = Objects.requireNonNull(record);
+        this.path = Objects.requireNonNull(path);
+        this.os = null;
+        this.name = path.toAbsolutePath().toString();
+    }
+
+    /**
+     * Write to OutputStream.
+     *
+     * The stream is NOT closed.
+     */
+    public NdjsonTarget(TagName record, OutputStream os) {
+        this.record = Objects.requireNonNull(record);
+        this.path = null;
+        this.os = Objects.requireNonNull(os);
+        this.name = "explicit OutputStream " + os.getClass().getName() + "@" + Integer.toHexString(os.hashCode());
+    }
+
+    /**
+     * Set the prefix of the members converted from attributes. {@code @} by default.
+     */
+    public NdjsonTarget setAttributePrefix(String attributePrefix) {
+        this.attributePrefix = Objects.requireNonNull(attributePrefix);
+        return this;
+    }
+
+    /**
+     * Set the name of the member with the text of the elements that are objects. {@code #text} by default.
+     */
+    public NdjsonTarget setTextKey(String textKey) {
+        this.textKey = Objects.requireNonNull(textKey);
+        return this;
+    }
+
+    /**
+     * Convert the elements of the local names to arrays, even if there is only one of them.
+     */
+    public NdjsonTarget setArrays(String... names) {
+        arrays.clear();
+        arrays.addAll(Arrays.asList(names));
+        return this;
+    }
+
+    @Override
+    public String getName() {
+        return "ndjson " + name;
+    }
+
+    @Override
+    public XMLStreamWriter getWriter(Saxeed saxeed) {
+        if (path == null) {
+            return new JsonWriter(os);
+        }
+
+        OutputStream out;
+        try {
+            out = new BufferedOutputStream(Files.newOutputStream(path));
+        } catch (IOException e) {
+            throw new FailedWriting("Cannot create/open file: " + name, e);
+        }
+        registerClosable(out);
+        return new JsonWriter(out);
+    }
+
+    /**
+     * Element of the record being converted.
+     */
+    private static final class Frame {
+        private boolean object;
+        private boolean empty;
+        private final StringBuilder text = new StringBuilder();
+
+        /**
+         * Name of the last member, to put the following members of the same name into an array.
+         */
+        private String lastKey;
+        private int lastValueStart;
+        private boolean inArray;
+
+        private void reset(boolean object) {
+            this.object = object;
+            this.empty = true;
+            this.text.setLength(0);
+            this.lastKey = null;
+            this.lastValueStart = 0;
+            this.inArray = false;
+        }
+    }
+
+    private final class JsonWriter extends DelegatingXmlStreamWriter {
+
+        private final OutputStream out;
+
+        /**
+         * Record being converted, in UTF-8.
+         */
+        private byte[] buffer = new byte[8192];
+        private int position = 0;
+
+        private final List<Frame> frames = new ArrayList<>();
+        /**
+         * Number of elements open in the record, 0 outside of records.
+         */
+        private int open = 0;
+        private int depth = 0;
+
+        private JsonWriter(OutputStream out) {
+            // Keeps track of the namespaces for the visitors
+            super(createXmlStreamWriter(OutputStream.nullOutputStream()));
+            this.out = out;
+        }
+
+        private void start(String uri, String localName) throws XMLStreamException {
+            depth++;
+            if (open == 0) {
+                if (!record.getLocal().equals(localName) || !record.getNsUri().equals(uri)) return;
+
+                position = 0;
+                // Records are always objects
+                push().reset(true);
+                write('{');
+            } else {
+                member(frames.get(open - 1), localName);
+                push().reset(false);
+            }
+        }
+
+        private Frame push() {
+            if (frames.size() == open) {
+                frames.add(new Frame());
+            }
+            return frames.get(open++);
+        }
+
+        private void end() throws XMLStreamException {
+            depth--;
+            if (open == 0) return;
+
+            Frame frame = frames.get(--open);
+            if (frame.object) {
+                if (!isBlank(frame.text)) {
+                    member(frame, textKey);
+                    writeString(frame.text);
+                }
+                if (frame.inArray) {
+                    write(']');
+                }
+                write('}');
+            } else {
+                writeString(frame.text);
+            }
+
+            if (open == 0) {
+                write('\n');
+                try {
+                    out.write(buffer, 0, position);
+                } catch (IOException e) {
+                    throw new XMLStreamException("Failed writing record to " + name, e);
+                }
+            }
+        }
+
+        /**
+         * Start the member of the object, leaving it to the caller to write its value.
+         */
+        private void member(Frame parent, String key) {
+            if (!parent.object) {
+                parent.object = true;
+                write('{');
+            }
+
+            if (key.equals(parent.lastKey)) {
+                if (!parent.inArray) {
+                    insert(parent.lastValueStart, (byte) '[');
+                    parent.inArray = true;
+                }
+                write(',');
+            } else {
+                if (parent.inArray) {
+                    write(']');
+                    parent.inArray = false;
+                }
+                if (!parent.empty) {
+                    write(',');
+                }
+                writeString(key);
+                write(':');
+                parent.lastValueStart = position;
+                if (arrays.contains(key)) {
+                    write('[');
+                    parent.inArray = true;
+                }
+            }
+            parent.lastKey = key;
+            parent.empty = false;
+        }
+
+        private void text(String text) {
+            if (open > 0) {
+                frames.get(open - 1).text.append(text);
+            }
+        }
+
+        private void text(char[] text, int start, int len) {
+            if (open > 0) {
+                frames.get(open - 1).text.append(text, start, len);
+            }
+        }
+
+        private void attribute(String localName, String value) {
+            if (open > 0) {
+                member(frames.get(open - 1), attributePrefix + localName);
+                writeString(value);
+            }
+        }
+
+        private void write(char c) {
+            ensure(1);
+            buffer[position++] = (byte) c;
+        }
+
+        private void insert(int offset, byte b) {
+            ensure(1);
+            System.arraycopy(buffer, offset, buffer, offset + 1, position - offset);
+            buffer[offset] = b;
+            position++;
+        }
+
+        private void ensure(int bytes) {
+            if (position + bytes > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, position + bytes));
+            }
+        }
+
+        private void writeString(CharSequence s) {
+            int length = s.length();
+            // Worst case of escaping the control characters
+            ensure(length * 6 + 2);
+            byte[] b = buffer;
+            int p = position;
+            b[p++] = '"';
+            for (int i = 0; i < length; i++) {
+                char c = s.charAt(i);
+                if (c == '"' || c == '\\') {
+                    b[p++] = '\\';
+                    b[p++] = (byte) c;
+                } else if (c < 0x20) {
+                    b[p++] = '\\';
+                    switch (c) {
+                        case '\n': b[p++] = 'n'; break;
+                        case '\r': b[p++] = 'r'; break;
+                        case '\t': b[p++] = 't'; break;
+                        case '\b': b[p++] = 'b'; break;
+                        case '\f': b[p++] = 'f'; break;
+                        default:
+                            b[p++] = 'u';
+                            b[p++] = '0';
+                            b[p++] = '0';
+                            b[p++] = (byte) HEX[c >> 4];
+                            b[p++] = (byte) HEX[c & 0xF];
+                    }
+                } else if (c < 0x80) {
+                    b[p++] = (byte) c;
+                } else if (c < 0x800) {
+                    b[p++] = (byte) (0xC0 | c >> 6);
+                    b[p++] = (byte) (0x80 | c & 0x3F);
+                } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(s.charAt(i + 1))) {
+                    int cp = Character.toCodePoint(c, s.charAt(++i));
+                    b[p++] = (byte) (0xF0 | cp >> 18);
+                    b[p++] = (byte) (0x80 | cp >> 12 & 0x3F);
+                    b[p++] = (byte) (0x80 | cp >> 6 & 0x3F);
+                    b[p++] = (byte) (0x80 | cp & 0x3F);
+                } else if (Character.isSurrogate(c)) {
+                    // Not representable in UTF-8
+                    b[p++] = '\\';
+                    b[p++] = 'u';
+                    b[p++] = (byte) HEX[c >> 12];
+                    b[p++] = (byte) HEX[c >> 8 & 0xF];
+                    b[p++] = (byte) HEX[c >> 4 & 0xF];
+                    b[p++] = (byte) HEX[c & 0xF];
+                } else {
+                    b[p++] = (byte) (0xE0 | c >> 12);
+                    b[p++] = (byte) (0x80 | c >> 6 & 0x3F);
+                    b[p++] = (byte) (0x80 | c & 0x3F);
+                }
+            }
+            b[p++] = '"';
+            position = p;
+        }
+
+        private boolean isBlank(CharSequence text) {
+            for (int i = 0; i < text.length(); i++) {
+                if (!Character.isWhitespace(text.charAt(i))) return false;
+            }
+            return true;
+        }
+
+        @Override
+        public void writeStartElement(String localName) throws XMLStreamException {
+            delegate.writeStartElement(localName);
+            start("", localName);
+        }
+
+        @Override
+        public void writeStartElement(String namespaceURI, String localName) throws XMLStreamException {
+            delegate.writeStartElement(namespaceURI, localName);
+            start(namespaceURI, localName);
+        }
+
+        @Override
+        public void writeStartElement(String prefix, String localName, String namespaceURI) throws XMLStreamException {
+            delegate.writeStartElement(prefix, localName, namespaceURI);
+            start(namespaceURI, localName);
+        }
+
+        @Override
+        public void writeEmptyElement(String localName) throws XMLStreamException {
+            delegate.writeEmptyElement(localName);
+            start("", localName);
+            end();
+        }
+
+        @Override
+        public void writeEmptyElement(String namespaceURI, String localName) throws XMLStreamException {
+            delegate.writeEmptyElement(namespaceURI, localName);
+            start(namespaceURI, localName);
+            end();
+        }
+
+        @Override
+        public void writeEmptyElement(String prefix, String localName, String namespaceURI) throws XMLStreamException {
+            delegate.writeEmptyElement(prefix, localName, namespaceURI);
+            start(namespaceURI, localName);
+            end();
+        }
+
+        @Override
+        public void writeEndElement() throws XMLStreamException {
+            delegate.writeEndElement();
+            end();
+        }
+
+        @Override
+        public void writeEndDocument() throws XMLStreamException {
+            delegate.writeEndDocument();
+            while (depth > 0) {
+                end();
+            }
+        }
+
+        @Override
+        public void writeAttribute(String localName, String value) throws XMLStreamException {
+            delegate.writeAttribute(localName, value);
+            attribute(localName, value);
+        }
+
+        @Override
+        public void writeAttribute(String prefix, String namespaceURI, String localName, String value) throws XMLStreamException {
+            delegate.writeAttribute(prefix, namespaceURI, localName, value);
+            attribute(localName, value);
+        }
+
+        @Override
+        public void writeAttribute(String namespaceURI, String localName, String value) throws XMLStreamException {
+            delegate.writeAttribute(namespaceURI, localName, value);
+            attribute(localName, value);
+        }
+
+        @Override
+        public void writeCharacters(String text) {
+            text(text);
+        }
+
+        @Override
+        public void writeCharacters(char[] text, int start, int len) {
+            text(text, start, len);
+        }
+
+        @Override
+        public void writeCData(String data) {
+            text(data);
+        }
+
+        @Override
+        public void flush() throws XMLStreamException {
+            try {
+                out.flush();
+            } catch (IOException e) {
+                throw new XMLStreamException("Failed flushing " + name, e);
+            }
+        }
+    }
+}
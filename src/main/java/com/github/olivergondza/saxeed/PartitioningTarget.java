@@ -0,0 +1,466 @@
+package com.github.olivergondza.saxeed;
+
+import com.github.olivergondza.saxeed.ex.FailedTransforming;
+import com.github.olivergondza.saxeed.ex.FailedWriting;
+import com.github.olivergondza.saxeed.internal.CapturedElement;
+import com.github.olivergondza.saxeed.internal.DelegatingXmlStreamWriter;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.BufferedOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Target routing the records into files by a key, such as per-customer or per-day outputs.
+ *
+ * The key of every record is chosen by a visitor subscribed to the records, see {@link #keyBy(Function)} and
+ * {@link #route(Tag.Start, String)}. Every partition is a well-formed document, with the elements enclosing its records opened
+ * again, with their attributes and namespace declarations. The content outside the records is not written.
+ *
+ * Only a limited number of partitions are kept open. Once the limit is reached, the least recently used one is suspended,
+ * and it is appended to once it receives another record. So a single pass can produce thousands of partitions.
+ *
+ * <pre>
+ *     PartitioningTarget target = new PartitioningTarget(TagName.noNs("order"), key -&gt; dir.resolve(key + ".xml"));
+ *     TransformationBuilder tb = new TransformationBuilder()
+ *             .add("order", target.keyBy(tag -&gt; tag.getAttribute("customer")));
+ * </pre>
+ */
+public class PartitioningTarget extends Target {
+
+    private static final int DEFAULT_MAX_OPEN = 64;
+
+    private final TagName record;
+    private final Function<String, Path> partitions;
+
+    private int maxOpen = DEFAULT_MAX_OPEN;
+
+    private final Map<String, Path> written = new LinkedHashMap<>();
+
+    private PartitioningWriter active;
+
+    /**
+     * @param record Records to route.
+     * @param partitions Path of the partition by its key.
+     */
+    public PartitioningTarget(TagName record, Function<String, Path> partitions) {
+        this.record = Objects.requireNonNull(record);
+        this.partitions = Objects.requireNonNull(partitions);
+    }
+
+    /**
+     * Set the number of partitions kept open at a time. 64 by default.
+     */
+    public PartitioningTarget setMaxOpen(int maxOpen) {
+        if (maxOpen <= 0) throw new IllegalArgumentException("Max open partitions must be positive: " + maxOpen);
+
+        this.maxOpen = maxOpen;
+        return this;
+    }
+
+    /**
+     * Get the partitions written by the last transformation, by their keys.
+     */
+    public Map<String, Path> getPartitions() {
+        return Collections.unmodifiableMap(new LinkedHashMap<>(written));
+    }
+
+    /**
+     * Route the record about to be written into a partition.
+     *
+     * To be called from {@link UpdatingVisitor#startTag(Tag.Start)} of the record. When the record is removed after all,
+     * the key is not used for the records that follow.
+     */
+    public void route(Tag.Start tag, String key) {
+        Objects.requireNonNull(key, "Partition key");
+        if (!tag.isNamed(record)) throw new IllegalArgumentException("Not a record to route: " + tag);
+        if (active == null) throw new IllegalStateException("No transformation is writing to " + getName());
+
+        active.routed = tag;
+        active.key = key;
+    }
+
+    /**
+     * Create visitors routing the records by the key extracted from their start tag.
+     *
+     * To be added to the {@link TransformationBuilder}, subscribed to (at least) the records.
+     */
+    public Supplier<UpdatingVisitor> keyBy(Function<Tag.Start, String> key) {
+        Objects.requireNonNull(key);
+        return () -> new UpdatingVisitor() {
+            @Override
+            public void startTag(Tag.Start tag) throws FailedTransforming {
+                if (!tag.isNamed(record)) return;
+
+                String partition = key.apply(tag);
+                if (partition == null) throw new FailedTransforming("No partition key for record " + tag);
+                route(tag, partition);
+            }
+        };
+    }
+
+    @Override
+    public String getName() {
+        return "partitioning " + record.getQualifiedName();
+    }
+
+    @Override
+    public XMLStreamWriter getWriter(Saxeed saxeed) {
+        written.clear();
+        PartitioningWriter writer = new PartitioningWriter();
+        active = writer;
+        registerClosable(writer::closeAll);
+        return writer;
+    }
+
+    private static final class Partition {
+        private final Path path;
+
+        private MutableStream stream;
+        private XMLStreamWriter writer;
+
+        /**
+         * Elements enclosing the records, open in the partition.
+         */
+        private final List<CapturedElement> open = new ArrayList<>();
+
+        private Partition(Path path) {
+            this.path = path;
+        }
+    }
+
+    private final class PartitioningWriter extends DelegatingXmlStreamWriter {
+
+        /**
+         * Receives the content outside the records.
+         */
+        private final XMLStreamWriter discarding = createXmlStreamWriter(OutputStream.nullOutputStream());
+
+        private final Map<String, Partition> all = new LinkedHashMap<>();
+        /**
+         * Open partitions, from the least recently used.
+         */
+        private final LinkedHashMap<String, Partition> opened = new LinkedHashMap<>(16, 0.75f, true);
+
+        /**
+         * Elements enclosing the records, to open in the partitions. Captured as written.
+         */
+        private final Deque<CapturedElement> enclosing = new ArrayDeque<>();
+        private CapturedElement capturing;
+
+        private int depth = 0;
+
+        /**
+         * Depth of the record being written, or -1 outside of records.
+         */
+        private int recordDepth = -1;
+
+        /**
+         * Partition of the next record, and the record it was chosen for.
+         */
+        private String key;
+        private Tag.Start routed;
+
+        private PartitioningWriter() {
+            super(null);
+            delegate = discarding;
+        }
+
+        private Partition partition(String key) throws XMLStreamException {
+            Partition partition = opened.get(key);
+            if (partition != null) return partition;
+
+            partition = all.get(key);
+            if (partition == null) {
+                Path path = partitions.apply(key);
+                partition = new Partition(path);
+                all.put(key, partition);
+                written.put(key, path);
+                partition.stream = open(path);
+                partition.writer = createXmlStreamWriter(partition.stream);
+            } else {
+                resume(partition);
+            }
+
+            opened.put(key, partition);
+            if (opened.size() > maxOpen) {
+                Iterator<Partition> eldest = opened.values().iterator();
+                suspend(eldest.next());
+                eldest.remove();
+            }
+            return partition;
+        }
+
+        private MutableStream open(Path path, StandardOpenOption... options) {
+            try {
+                return new MutableStream(new BufferedOutputStream(Files.newOutputStream(path, options)));
+            } catch (IOException e) {
+                throw new FailedWriting("Cannot create/open file: " + path.toAbsolutePath(), e);
+            }
+        }
+
+        private void suspend(Partition partition) throws XMLStreamException {
+            partition.writer.flush();
+            try {
+                partition.stream.close();
+            } catch (IOException e) {
+                throw new XMLStreamException("Failed suspending partition " + partition.path, e);
+            }
+            partition.stream = null;
+            partition.writer = null;
+        }
+
+        /**
+         * Append to the suspended partition with a new writer, that needs to know about the elements open already.
+         */
+        private void resume(Partition partition) throws XMLStreamException {
+            partition.stream = open(partition.path, StandardOpenOption.APPEND);
+            partition.writer = createXmlStreamWriter(partition.stream);
+
+            partition.stream.muted = true;
+            for (CapturedElement element : partition.open) {
+                element.replay(partition.writer);
+            }
+            // Complete the last start tag while muted
+            partition.writer.writeCharacters("");
+            partition.writer.flush();
+            partition.stream.muted = false;
+        }
+
+        /**
+         * Bring the elements open in the partition in line with the ones enclosing the record.
+         */
+        private void align(Partition partition) throws XMLStreamException {
+            int common = 0;
+            Iterator<CapturedElement> current = enclosing.iterator();
+            while (common < partition.open.size() && current.hasNext() && partition.open.get(common) == current.next()) {
+                common++;
+            }
+
+            while (partition.open.size() > common) {
+                partition.writer.writeEndElement();
+                partition.open.remove(partition.open.size() - 1);
+            }
+
+            int index = 0;
+            for (CapturedElement element : enclosing) {
+                if (index++ < common) continue;
+
+                element.replay(partition.writer);
+                partition.open.add(element);
+            }
+        }
+
+        private void start(String uri, String localName) throws XMLStreamException {
+            capturing = null;
+            if (recordDepth < 0) {
+                if (record.getLocal().equals(localName) && record.getNsUri().equals(uri)) {
+                    // The record routed last was not written, so the key is not for this one
+                    if (key != null && routed.isOmitted()) {
+                        key = null;
+                    }
+                    if (key == null) throw new FailedTransforming("No partition chosen for record " + record.getQualifiedName());
+
+                    Partition partition = partition(key);
+                    key = null;
+                    routed = null;
+                    align(partition);
+                    delegate = partition.writer;
+                    recordDepth = depth;
+                } else {
+                    capturing = new CapturedElement();
+                    enclosing.addLast(capturing);
+                }
+            }
+            depth++;
+        }
+
+        private void end() throws XMLStreamException {
+            capturing = null;
+            depth--;
+            if (recordDepth < 0) {
+                enclosing.removeLast();
+                if (depth == 0) {
+                    finish();
+                }
+            } else if (depth == recordDepth) {
+                recordDepth = -1;
+                delegate = discarding;
+            }
+        }
+
+        private void capture(CapturedElement.Op op) {
+            if (capturing != null) {
+                capturing.add(op);
+            }
+        }
+
+        /**
+         * Complete all the partitions, resuming the suspended ones one by one, once the root element is closed.
+         */
+        private void finish() throws XMLStreamException {
+            for (Partition partition : all.values()) {
+                if (partition.writer == null) {
+                    resume(partition);
+                }
+                // Closes all the enclosing elements
+                partition.writer.writeEndDocument();
+                suspend(partition);
+                partition.open.clear();
+            }
+            all.clear();
+            opened.clear();
+        }
+
+        private void closeAll() throws IOException {
+            active = null;
+            IOException failure = null;
+            for (Partition partition : opened.values()) {
+                try {
+                    partition.writer.flush();
+                    partition.stream.close();
+                } catch (IOException | XMLStreamException e) {
+                    if (failure == null) {
+                        failure = new IOException("Failed closing partition " + partition.path, e);
+                    } else {
+                        failure.addSuppressed(e);
+                    }
+                }
+            }
+            opened.clear();
+            if (failure != null) throw failure;
+        }
+
+        @Override
+        public void writeStartElement(String localName) throws XMLStreamException {
+            start("", localName);
+            delegate.writeStartElement(localName);
+            capture(w -> w.writeStartElement(localName));
+        }
+
+        @Override
+        public void writeStartElement(String namespaceURI, String localName) throws XMLStreamException {
+            start(namespaceURI, localName);
+            delegate.writeStartElement(namespaceURI, localName);
+            capture(w -> w.writeStartElement(namespaceURI, localName));
+        }
+
+        @Override
+        public void writeStartElement(String prefix, String localName, String namespaceURI) throws XMLStreamException {
+            start(namespaceURI, localName);
+            delegate.writeStartElement(prefix, localName, namespaceURI);
+            capture(w -> w.writeStartElement(prefix, localName, namespaceURI));
+        }
+
+        @Override
+        public void writeEmptyElement(String localName) throws XMLStreamException {
+            start("", localName);
+            delegate.writeEmptyElement(localName);
+            end();
+        }
+
+        @Override
+        public void writeEmptyElement(String namespaceURI, String localName) throws XMLStreamException {
+            start(namespaceURI, localName);
+            delegate.writeEmptyElement(namespaceURI, localName);
+            end();
+        }
+
+        @Override
+        public void writeEmptyElement(String prefix, String localName, String namespaceURI) throws XMLStreamException {
+            start(namespaceURI, localName);
+            delegate.writeEmptyElement(prefix, localName, namespaceURI);
+            end();
+        }
+
+        @Override
+        public void writeEndElement() throws XMLStreamException {
+            delegate.writeEndElement();
+            end();
+        }
+
+        @Override
+        public void writeEndDocument() throws XMLStreamException {
+            delegate = discarding;
+            discarding.writeEndDocument();
+            finish();
+            enclosing.clear();
+            capturing = null;
+            depth = 0;
+            recordDepth = -1;
+            key = null;
+            routed = null;
+        }
+
+        @Override
+        public void writeAttribute(String localName, String value) throws XMLStreamException {
+            delegate.writeAttribute(localName, value);
+            capture(w -> w.writeAttribute(localName, value));
+        }
+
+        @Override
+        public void writeAttribute(String prefix, String namespaceURI, String localName, String value) throws XMLStreamException {
+            delegate.writeAttribute(prefix, namespaceURI, localName, value);
+            capture(w -> w.writeAttribute(prefix, namespaceURI, localName, value));
+        }
+
+        @Override
+        public void writeAttribute(String namespaceURI, String localName, String value) throws XMLStreamException {
+            delegate.writeAttribute(namespaceURI, localName, value);
+            capture(w -> w.writeAttribute(namespaceURI, localName, value));
+        }
+
+        @Override
+        public void writeNamespace(String prefix, String namespaceURI) throws XMLStreamException {
+            delegate.writeNamespace(prefix, namespaceURI);
+            capture(w -> w.writeNamespace(prefix, namespaceURI));
+        }
+
+        @Override
+        public void writeDefaultNamespace(String namespaceURI) throws XMLStreamException {
+            delegate.writeDefaultNamespace(namespaceURI);
+            capture(w -> w.writeDefaultNamespace(namespaceURI));
+        }
+    }
+
+    /**
+     * Stream that can stop passing the content through, while the writer of a resumed partition catches up.
+     */
+    private static final class MutableStream extends FilterOutputStream {
+        private boolean muted = false;
+
+        private MutableStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (!muted) {
+                out.write(b);
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (!muted) {
+                out.write(b, off, len);
+            }
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.github.olivergondza.saxeed;
+
+import com.github.olivergondza.saxeed.ex.FailedReading;
+import com.github.olivergondza.saxeed.ex.FailedTransforming;
+import com.github.olivergondza.saxeed.ex.FailedWriting;
+import com.github.olivergondza.saxeed.internal.RecordSplitter;
+import org.xml.sax.InputSource;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Transform a single document, processing its records in parallel.
+ *
+ * Records are the tags that can be transformed independently of one another, typically a long sequence of sibling
+ * elements under the root. The parser thread cuts the records out of the document, and transforms the content around
+ * them. The records are transformed in a thread pool, and the results are written to the target in the original order.
+ *
+ * <pre>
+ *     new RecordParallel(compiledTransformation, TagName.noNs("record"))
+ *         .setParallelism(8)
+ *         .transform(input, output);
+ * </pre>
+ *
+ * Each worker thread has its own visitor instances, so the visitors of a record observe only a fraction of the records,
+ * in no particular order. Record ancestors are available to the record visitors, but are not visited by them.
+ * Bookmarks are not supported inside records.
+ */
+public final class RecordParallel {
+
+    private final CompiledTransformation transformation;
+    private final Subscribed records;
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+    private int maxInFlight = 1024;
+
+    public RecordParallel(CompiledTransformation transformation, TagName record) {
+        this(transformation, record::equals);
+    }
+
+    public RecordParallel(CompiledTransformation transformation, Subscribed records) {
+        if (transformation.isRecordLimited()) throw new IllegalArgumentException(
+                "Head and sample are not supported when transforming records in parallel"
+        );
+
+        this.transformation = transformation;
+        this.records = records;
+    }
+
+    /**
+     * Number of threads transforming the records.
+     */
+    public RecordParallel setParallelism(int parallelism) {
+        if (parallelism < 1) throw new IllegalArgumentException("Parallelism must be positive: " + parallelism);
+
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    /**
+     * Maximal number of records read, but not yet written.
+     *
+     * The parser waits for the records to be written once reached. This bounds the memory needed.
+     */
+    public RecordParallel setMaxInFlight(int maxInFlight) {
+        if (maxInFlight < 1) throw new IllegalArgumentException("Max in-flight records must be positive: " + maxInFlight);
+
+        this.maxInFlight = maxInFlight;
+        return this;
+    }
+
+    public void transform(Path input, Path output) throws FailedReading, FailedTransforming, FailedWriting {
+        transform(new InputSource(input.toFile().toURI().toASCIIString()), new Target.FileTarget(output));
+    }
+
+    /**
+     * Transform from InputStream to OutputStream.
+     *
+     * The streams are NOT closed.
+     */
+    public void transform(InputStream input, OutputStream output) throws FailedReading, FailedTransforming, FailedWriting {
+        transform(new InputSource(input), new Target.OutputStreamTarget(output));
+    }
+
+    private void transform(InputSource input, Target target) throws FailedReading, FailedTransforming, FailedWriting {
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism, new WorkerThreadFactory());
+        try {
+            XMLStreamWriter writer = target.getWriter(null);
+            try (RecordSplitter splitter = new RecordSplitter(
+                    records, writer, w -> transformation.build(null, new Target.XmlStreamWriterTarget(w)), executor, maxInFlight
+            )) {
+                Saxeed.parse(Saxeed.newSaxParser(), input, splitter);
+            }
+
+            writer.flush();
+        } catch (XMLStreamException e) {
+            throw new FailedWriting("Failed closing stream", e);
+        } finally {
+            executor.shutdownNow();
+            target.close();
+        }
+    }
+
+    private static final class WorkerThreadFactory implements ThreadFactory {
+        private static final AtomicInteger POOL_COUNT = new AtomicInteger();
+
+        private final int pool = POOL_COUNT.incrementAndGet();
+        private final AtomicInteger threadCount = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "saxeed-records-" + pool + "-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,322 @@
+package com.github.olivergondza.saxeed;
+
+import com.github.olivergondza.saxeed.ex.FailedWriting;
+import com.github.olivergondza.saxeed.internal.CapturedElement;
+import com.github.olivergondza.saxeed.internal.DelegatingXmlStreamWriter;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.BufferedOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.IntFunction;
+
+/**
+ * Target splitting the document into multiple files, once they reach the number of records or bytes.
+ *
+ * Every part is a well-formed document: the elements enclosing the records are closed at the end of a part, and they are
+ * opened again, with their attributes and namespace declarations, at the start of the next one. The document is only split
+ * between the records, so the parts can be somewhat larger than the limit.
+ *
+ * <pre>
+ *     new RollingTarget(TagName.noNs("record"), i -&gt; dir.resolve("part-" + i + ".xml")).setMaxRecords(100_000);
+ * </pre>
+ */
+public class RollingTarget extends Target {
+
+    private final TagName record;
+    private final IntFunction<Path> parts;
+
+    private long maxRecords = Long.MAX_VALUE;
+    private long maxBytes = Long.MAX_VALUE;
+
+    private final List<Path> written = new ArrayList<>();
+
+    /**
+     * @param record Records not to be split.
+     * @param parts Path of the part by its zero-based index.
+     */
+    public RollingTarget(TagName record, IntFunction<Path> parts) {
+        this.record = Objects.requireNonNull(record);
+        this.parts = Objects.requireNonNull(parts);
+    }
+
+    /**
+     * Start a new part after the number of records.
+     */
+    public RollingTarget setMaxRecords(long maxRecords) {
+        if (maxRecords <= 0) throw new IllegalArgumentException("Max records must be positive: " + maxRecords);
+
+        this.maxRecords = maxRecords;
+        return this;
+    }
+
+    /**
+     * Start a new part after the record that reaches the number of bytes.
+     */
+    public RollingTarget setMaxBytes(long maxBytes) {
+        if (maxBytes <= 0) throw new IllegalArgumentException("Max bytes must be positive: " + maxBytes);
+
+        this.maxBytes = maxBytes;
+        return this;
+    }
+
+    /**
+     * Get the parts written by the last transformation.
+     */
+    public List<Path> getParts() {
+        return List.copyOf(written);
+    }
+
+    @Override
+    public String getName() {
+        return "rolling " + parts.apply(0).toAbsolutePath();
+    }
+
+    @Override
+    public XMLStreamWriter getWriter(Saxeed saxeed) {
+        if (maxRecords == Long.MAX_VALUE && maxBytes == Long.MAX_VALUE) {
+            throw new IllegalStateException("No limit to start a new part at: " + getName());
+        }
+
+        written.clear();
+        RollingWriter writer = new RollingWriter();
+        registerClosable(writer::closePart);
+        return writer;
+    }
+
+    private final class RollingWriter extends DelegatingXmlStreamWriter {
+
+        private CountingStream part;
+
+        /**
+         * Elements enclosing the records, to open in every part. Captured as written.
+         */
+        private final Deque<CapturedElement> enclosing = new ArrayDeque<>();
+        private CapturedElement capturing;
+
+        private int depth = 0;
+
+        /**
+         * Depth of the record being written, or -1 outside of records.
+         */
+        private int recordDepth = -1;
+        private long records = 0;
+        private boolean rollPending = false;
+
+        private RollingWriter() {
+            super(null);
+            openPart();
+        }
+
+        private void openPart() {
+            Path path = parts.apply(written.size());
+            try {
+                part = new CountingStream(new BufferedOutputStream(Files.newOutputStream(path)));
+            } catch (IOException e) {
+                throw new FailedWriting("Cannot create/open file: " + path.toAbsolutePath(), e);
+            }
+            written.add(path);
+            delegate = createXmlStreamWriter(part);
+        }
+
+        private void closePart() throws XMLStreamException, IOException {
+            delegate.flush();
+            part.close();
+        }
+
+        private void roll() throws XMLStreamException {
+            // Closes all the enclosing elements
+            delegate.writeEndDocument();
+            try {
+                closePart();
+            } catch (IOException e) {
+                throw new XMLStreamException("Failed closing part " + written.get(written.size() - 1), e);
+            }
+
+            openPart();
+            for (CapturedElement element : enclosing) {
+                element.replay(delegate);
+            }
+            records = 0;
+        }
+
+        private void start(String uri, String localName) throws XMLStreamException {
+            if (rollPending) {
+                rollPending = false;
+                roll();
+            }
+
+            capturing = null;
+            if (recordDepth < 0) {
+                if (record.getLocal().equals(localName) && record.getNsUri().equals(uri)) {
+                    recordDepth = depth;
+                } else {
+                    capturing = new CapturedElement();
+                    enclosing.addLast(capturing);
+                }
+            }
+            depth++;
+        }
+
+        private void end() throws XMLStreamException {
+            capturing = null;
+            depth--;
+            if (recordDepth < 0) {
+                enclosing.removeLast();
+            } else if (depth == recordDepth) {
+                recordDepth = -1;
+                records++;
+                if (records >= maxRecords) {
+                    rollPending = true;
+                } else if (maxBytes != Long.MAX_VALUE) {
+                    // Count what the writer buffers
+                    part.counting = true;
+                    try {
+                        delegate.flush();
+                    } finally {
+                        part.counting = false;
+                    }
+                    rollPending = part.count >= maxBytes;
+                }
+            }
+        }
+
+        private void capture(CapturedElement.Op op) {
+            if (capturing != null) {
+                capturing.add(op);
+            }
+        }
+
+        @Override
+        public void writeStartElement(String localName) throws XMLStreamException {
+            start("", localName);
+            delegate.writeStartElement(localName);
+            capture(w -> w.writeStartElement(localName));
+        }
+
+        @Override
+        public void writeStartElement(String namespaceURI, String localName) throws XMLStreamException {
+            start(namespaceURI, localName);
+            delegate.writeStartElement(namespaceURI, localName);
+            capture(w -> w.writeStartElement(namespaceURI, localName));
+        }
+
+        @Override
+        public void writeStartElement(String prefix, String localName, String namespaceURI) throws XMLStreamException {
+            start(namespaceURI, localName);
+            delegate.writeStartElement(prefix, localName, namespaceURI);
+            capture(w -> w.writeStartElement(prefix, localName, namespaceURI));
+        }
+
+        @Override
+        public void writeEmptyElement(String localName) throws XMLStreamException {
+            start("", localName);
+            delegate.writeEmptyElement(localName);
+            end();
+        }
+
+        @Override
+        public void writeEmptyElement(String namespaceURI, String localName) throws XMLStreamException {
+            start(namespaceURI, localName);
+            delegate.writeEmptyElement(namespaceURI, localName);
+            end();
+        }
+
+        @Override
+        public void writeEmptyElement(String prefix, String localName, String namespaceURI) throws XMLStreamException {
+            start(namespaceURI, localName);
+            delegate.writeEmptyElement(prefix, localName, namespaceURI);
+            end();
+        }
+
+        @Override
+        public void writeEndElement() throws XMLStreamException {
+            delegate.writeEndElement();
+            end();
+        }
+
+        @Override
+        public void writeEndDocument() throws XMLStreamException {
+            delegate.writeEndDocument();
+            enclosing.clear();
+            capturing = null;
+            depth = 0;
+            recordDepth = -1;
+            rollPending = false;
+        }
+
+        @Override
+        public void writeAttribute(String localName, String value) throws XMLStreamException {
+            delegate.writeAttribute(localName, value);
+            capture(w -> w.writeAttribute(localName, value));
+        }
+
+        @Override
+        public void writeAttribute(String prefix, String namespaceURI, String localName, String value) throws XMLStreamException {
+            delegate.writeAttribute(prefix, namespaceURI, localName, value);
+            capture(w -> w.writeAttribute(prefix, namespaceURI, localName, value));
+        }
+
+        @Override
+        public void writeAttribute(String namespaceURI, String localName, String value) throws XMLStreamException {
+            delegate.writeAttribute(namespaceURI, localName, value);
+            capture(w -> w.writeAttribute(namespaceURI, localName, value));
+        }
+
+        @Override
+        public void writeNamespace(String prefix, String namespaceURI) throws XMLStreamException {
+            delegate.writeNamespace(prefix, namespaceURI);
+            capture(w -> w.writeNamespace(prefix, namespaceURI));
+        }
+
+        @Override
+        public void writeDefaultNamespace(String namespaceURI) throws XMLStreamException {
+            delegate.writeDefaultNamespace(namespaceURI);
+            capture(w -> w.writeDefaultNamespace(namespaceURI));
+        }
+    }
+
+    /**
+     * Count the bytes written.
+     */
+    private static final class CountingStream extends FilterOutputStream {
+        private long count = 0;
+
+        /**
+         * The writer flushes for the count to be accurate, that does not need to reach the file.
+         */
+        private boolean counting = false;
+
+        private CountingStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (!counting) {
+                out.flush();
+            }
+        }
+    }
+}
@@ -4,10 +4,12 @@ import com.github.olivergondza.saxeed.ex.FailedReading;
 import com.github.olivergondza.saxeed.ex.FailedTransforming;
 import com.github.olivergondza.saxeed.ex.FailedWriting;
 import com.github.olivergondza.saxeed.internal.MultiplexingHandler;
-import com.github.olivergondza.saxeed.internal.TransformationHandler;
+import com.github.olivergondza.saxeed.internal.ParsingFinished;
+import com.github.olivergondza.saxeed.internal.VisitingHandler;
 import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 import org.xml.sax.SAXParseException;
+import org.xml.sax.helpers.DefaultHandler;
 
 import javax.xml.XMLConstants;
 import javax.xml.parsers.ParserConfigurationException;
@@ -18,20 +20,28 @@ import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamWriter;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.StringReader;
 import java.nio.file.Path;
 import java.util.ArrayList;
-import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.function.Supplier;
 
 public class Saxeed {
 
+    private static final SAXParserFactory SAX_PARSER_FACTORY = createSaxParserFactory();
+
     private SAXParser saxParser;
     private InputSource input;
-    private final Map<TransformationBuilder, Target> transformations = new LinkedHashMap<>();
+    /**
+     * Transformations with their targets. The same transformation can write to more targets.
+     *
+     * Builders are compiled once transforming, so they can still be configured after added.
+     */
+    private final List<Map.Entry<Supplier<CompiledTransformation>, Target>> transformations = new ArrayList<>();
+    private final List<Supplier<CompiledTransformation>> projections = new ArrayList<>();
 
     public Saxeed() {
 
@@ -53,6 +63,17 @@ public class Saxeed {
         return this;
     }
 
+    /**
+     * Read input from InputStream.
+     *
+     * The stream is NOT closed.
+     */
+    public Saxeed setInput(InputStream is) {
+        input = new InputSource(is);
+        input.setSystemId("In-memory stream");
+        return this;
+    }
+
     public Saxeed setInputUri(String uri) {
         input = new InputSource(uri);
         return this;
@@ -64,8 +85,23 @@ public class Saxeed {
         return this;
     }
 
-    Saxeed addTransformation(TransformationBuilder transformation, Target target) {
-        transformations.put(transformation, target);
+    /**
+     * Transform to custom Target.
+     *
+     * The target is closed once the transformation is completed.
+     */
+    public Saxeed addTransformation(TransformationBuilder transformation, Target target) {
+        transformations.add(Map.entry(transformation::snapshot, target));
+        return this;
+    }
+
+    /**
+     * Transform to custom Target.
+     *
+     * The target is closed once the transformation is completed.
+     */
+    public Saxeed addTransformation(CompiledTransformation transformation, Target target) {
+        transformations.add(Map.entry(() -> transformation, target));
         return this;
     }
 
@@ -104,6 +140,67 @@ public class Saxeed {
         return addTransformation(transformation, new Target.DevNullTarget());
     }
 
+    public Saxeed addTransformation(CompiledTransformation transformation, Path path) {
+        return addTransformation(transformation, new Target.FileTarget(path));
+    }
+
+    public Saxeed addTransformation(CompiledTransformation transformation, File file) {
+        return addTransformation(transformation, new Target.FileTarget(file));
+    }
+
+    /**
+     * Transform to OutputStream.
+     *
+     * The stream is NOT closed.
+     */
+    public Saxeed addTransformation(CompiledTransformation transformation, OutputStream os) {
+        return addTransformation(transformation, new Target.OutputStreamTarget(os));
+    }
+
+    /**
+     * Transform to XMLStreamWriter.
+     *
+     * The stream is NOT closed.
+     */
+    public Saxeed addTransformation(CompiledTransformation transformation, XMLStreamWriter writer) {
+        return addTransformation(transformation, new Target.XmlStreamWriterTarget(writer));
+    }
+
+    /**
+     * Transform discording all output.
+     *
+     * This is to visit and collect data from the stream, but not to perform any meaningful transformation.
+     */
+    public Saxeed addTransformation(CompiledTransformation transformation) {
+        return addTransformation(transformation, new Target.DevNullTarget());
+    }
+
+    /**
+     * Visit the document without writing anything.
+     *
+     * Unlike transforming with no target, the tags are created only for the elements subscribed by the visitors, and
+     * those are read-only. Parent of such tag is the closest ancestor subscribed by some visitor, if any. The visitors
+     * can signal they are done through {@link UpdatingVisitor#isDone()}, parsing stops once all the visitors are done.
+     *
+     * <pre>
+     *     new Saxeed().setInput(input).addProjection(new TransformationBuilder().add("title", new TitleCollector())).transform();
+     * </pre>
+     */
+    public Saxeed addProjection(TransformationBuilder projection) {
+        projections.add(projection::snapshot);
+        return this;
+    }
+
+    /**
+     * Visit the document without writing anything.
+     *
+     * @see #addProjection(TransformationBuilder)
+     */
+    public Saxeed addProjection(CompiledTransformation projection) {
+        projections.add(() -> projection);
+        return this;
+    }
+
     /**
      * Perform the configured transformation.
      *
@@ -116,7 +213,20 @@ public class Saxeed {
 
         // Stream process the file to a temp destination
         try (MultiplexingHandler handler = getSaxHandler()) {
-            getSaxParser().parse(input, handler);
+            parse(getSaxParser(), input, handler);
+        }
+    }
+
+    /**
+     * Parse the input translating the failures.
+     */
+    /*package*/ static void parse(
+            SAXParser parser, InputSource input, DefaultHandler handler
+    ) throws FailedReading, FailedTransforming, FailedWriting {
+        try {
+            parser.parse(input, handler);
+        } catch (ParsingFinished ex) {
+            // The rest of the document is not needed
         } catch (IOException ex) {
             throw new FailedWriting("Failed reading input file", ex);
         } catch (SAXParseException ex) {
@@ -132,12 +242,30 @@ public class Saxeed {
 
     private void validateConfig() throws IllegalStateException {
         if (input == null) throw new IllegalStateException("No input data configured");
-        if (transformations.isEmpty()) throw new IllegalStateException("No transformations configured");
+        if (transformations.isEmpty() && projections.isEmpty()) throw new IllegalStateException("No transformations configured");
     }
 
     private SAXParser getSaxParser() {
         if (saxParser != null) return saxParser;
 
+        return newSaxParser();
+    }
+
+    /**
+     * Create new parser with secure defaults.
+     */
+    /*package*/ static SAXParser newSaxParser() {
+        // The factory is not guaranteed to be thread-safe
+        synchronized (SAX_PARSER_FACTORY) {
+            try {
+                return SAX_PARSER_FACTORY.newSAXParser();
+            } catch (ParserConfigurationException | SAXException e) {
+                throw new AssertionError("SAX or its essential features are not supported", e);
+            }
+        }
+    }
+
+    private static SAXParserFactory createSaxParserFactory() {
         // We can add schema validation here for extra defensiveness.
         try {
             SAXParserFactory factory = SAXParserFactory.newInstance();
@@ -147,19 +275,23 @@ public class Saxeed {
             factory.setFeature("http://xml.org/sax/features/external-parameter-entities", false);
             factory.setFeature("http://apache.org/xml/features/nonvalidating/load-external-dtd", false);
             factory.setNamespaceAware(true);
-            return factory.newSAXParser();
+            return factory;
         } catch (ParserConfigurationException | SAXException e) {
             throw new AssertionError("SAX or its essential features are not supported", e);
         }
     }
 
     private MultiplexingHandler getSaxHandler() {
-        List<TransformationHandler> handlers = transformations.entrySet().stream().map(trans -> {
+        List<VisitingHandler> handlers = new ArrayList<>();
+        for (Map.Entry<Supplier<CompiledTransformation>, Target> trans : transformations) {
             Target target = trans.getValue();
-            TransformationBuilder builder = trans.getKey();
+            CompiledTransformation transformation = trans.getKey().get();
 
-            return builder.build(this, target);
-        }).collect(Collectors.toList());
+            handlers.add(transformation.build(this, target));
+        }
+        for (Supplier<CompiledTransformation> projection : projections) {
+            handlers.add(projection.get().project());
+        }
         return new MultiplexingHandler(handlers);
     }
 }
@@ -0,0 +1,170 @@
+package com.github.olivergondza.saxeed;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Byte range of a file to be transformed independently of the rest.
+ *
+ * The range consists of complete records. To form a well-formed document, it is enclosed in the start tags of the
+ * record ancestors (prefix), and their end tags (suffix). The first shard starts at the beginning of the file, so it
+ * has no prefix, and the last shard ends at the end of the file, so it has no suffix.
+ *
+ * The descriptor can be passed to a different process as {@link Properties}.
+ *
+ * @see ShardSplitter
+ */
+public final class Shard {
+
+    private final int index;
+    private final long start;
+    private final long end;
+    private final String prefix;
+    private final String suffix;
+    private final int depth;
+
+    /*package*/ Shard(int index, long start, long end, String prefix, String suffix, int depth) {
+        this.index = index;
+        this.start = start;
+        this.end = end;
+        this.prefix = prefix;
+        this.suffix = suffix;
+        this.depth = depth;
+    }
+
+    /**
+     * Position of the shard among other shards of the file.
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * Offset of the first byte of the shard.
+     */
+    public long getStart() {
+        return start;
+    }
+
+    /**
+     * Offset after the last byte of the shard.
+     */
+    public long getEnd() {
+        return end;
+    }
+
+    /**
+     * Start tags of the record ancestors, with their attributes and namespace declarations.
+     */
+    public String getPrefix() {
+        return prefix;
+    }
+
+    /**
+     * End tags of the record ancestors.
+     */
+    public String getSuffix() {
+        return suffix;
+    }
+
+    /**
+     * Number of record ancestors.
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * Open well-formed document of the shard's content.
+     *
+     * The content is read from the file as is, so it is expected to be UTF-8 encoded.
+     */
+    public InputStream openStream(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        channel.position(start);
+        InputStream content = new RangeInputStream(channel, end - start);
+        return new SequenceInputStream(Collections.enumeration(List.of(
+                new ByteArrayInputStream(prefix.getBytes(StandardCharsets.UTF_8)),
+                content,
+                new ByteArrayInputStream(suffix.getBytes(StandardCharsets.UTF_8))
+        )));
+    }
+
+    public Properties toProperties() {
+        Properties props = new Properties();
+        props.setProperty("index", String.valueOf(index));
+        props.setProperty("start", String.valueOf(start));
+        props.setProperty("end", String.valueOf(end));
+        props.setProperty("prefix", prefix);
+        props.setProperty("suffix", suffix);
+        props.setProperty("depth", String.valueOf(depth));
+        return props;
+    }
+
+    public static Shard fromProperties(Properties props) {
+        return new Shard(
+                Integer.parseInt(required(props, "index")),
+                Long.parseLong(required(props, "start")),
+                Long.parseLong(required(props, "end")),
+                required(props, "prefix"),
+                required(props, "suffix"),
+                Integer.parseInt(required(props, "depth"))
+        );
+    }
+
+    private static String required(Properties props, String key) {
+        String value = props.getProperty(key);
+        if (value == null) throw new IllegalArgumentException("Shard descriptor property missing: " + key);
+        return value;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Shard{index=%d, start=%d, end=%d}", index, start, end);
+    }
+
+    /**
+     * Read limited number of bytes from the channel, closing it.
+     */
+    private static final class RangeInputStream extends InputStream {
+        private final FileChannel channel;
+        private long remaining;
+
+        private RangeInputStream(FileChannel channel, long length) {
+            this.channel = channel;
+            this.remaining = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) == -1 ? -1 : b[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (remaining <= 0) return -1;
+
+            int read = channel.read(ByteBuffer.wrap(b, off, (int) Math.min(len, remaining)));
+            if (read > 0) {
+                remaining -= read;
+            }
+            return read;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,413 @@
+package com.github.olivergondza.saxeed;
+
+import com.github.olivergondza.saxeed.ex.FailedReading;
+import com.github.olivergondza.saxeed.ex.FailedWriting;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Split a large file into shards to be transformed in separate processes.
+ *
+ * The file is cut at record start tags found by scanning the bytes forward from evenly spaced offsets. A candidate tag
+ * is rejected when it turns out to be inside a comment, CDATA section, or processing instruction. The records are
+ * expected to share the same ancestors, and not to nest.
+ *
+ * <pre>
+ *     List&lt;Shard&gt; shards = new ShardSplitter(TagName.noNs("record")).split(file, 8);
+ *     // In a worker process, for each shard
+ *     new Saxeed().setInput(shard.openStream(file)).addTransformation(tb, shardOutput).transform();
+ *     // Once all are done
+ *     ShardSplitter.concatenate(shardOutputs, shards.get(0).getDepth(), output);
+ * </pre>
+ *
+ * The visitors of record ancestors are invoked for every shard, so changes to the ancestors should not add content.
+ * The file is expected to be UTF-8 encoded.
+ */
+public final class ShardSplitter {
+
+    private final byte[] recordStart;
+    private final TagName record;
+    private int lookahead = 1 << 20;
+
+    public ShardSplitter(TagName record) {
+        this.record = record;
+        this.recordStart = ("<" + record.getQualifiedName()).getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Number of bytes to scan for the record start, and to verify it is not part of a comment or CDATA.
+     */
+    public ShardSplitter setLookahead(int bytes) {
+        if (bytes < 1024) throw new IllegalArgumentException("Lookahead is too small: " + bytes);
+
+        this.lookahead = bytes;
+        return this;
+    }
+
+    /**
+     * Split the file to at most `count` shards.
+     *
+     * Fewer shards are produced when there are not enough records.
+     */
+    public List<Shard> split(Path file, int count) throws FailedReading {
+        if (count < 1) throw new IllegalArgumentException("Shard count must be positive: " + count);
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long first = findRecord(channel, 0);
+            if (first < 0) throw new FailedReading("No record " + record + " found in " + file);
+
+            Context context = readContext(file);
+
+            List<Long> boundaries = new ArrayList<>();
+            boundaries.add(0L);
+            long previous = first;
+            for (int i = 1; i < count; i++) {
+                long candidate = findRecord(channel, Math.max(size * i / count, previous + 1));
+                if (candidate < 0) break;
+                if (candidate == previous) continue;
+
+                boundaries.add(candidate);
+                previous = candidate;
+            }
+            boundaries.add(size);
+
+            List<Shard> shards = new ArrayList<>(boundaries.size() - 1);
+            int last = boundaries.size() - 2;
+            for (int i = 0; i <= last; i++) {
+                shards.add(new Shard(
+                        i, boundaries.get(i), boundaries.get(i + 1),
+                        i == 0 ? "" : context.prefix,
+                        i == last ? "" : context.suffix,
+                        context.depth
+                ));
+            }
+            return shards;
+        } catch (IOException e) {
+            throw new FailedReading("Failed reading " + file, e);
+        }
+    }
+
+    /**
+     * Find first valid record start at or after the offset.
+     *
+     * @return Offset found, or -1.
+     */
+    private long findRecord(FileChannel channel, long offset) throws IOException {
+        long size = channel.size();
+        byte[] buf = new byte[(int) Math.min(2L * lookahead, Math.max(0, size - offset))];
+        while (offset < size) {
+            int length = read(channel, offset, buf);
+            boolean lastWindow = offset + length >= size;
+            // Leave enough of the window to verify the candidate, unless it is the end of the file
+            int searchLimit = lastWindow ? length : length - lookahead;
+            for (int i = 0; i < searchLimit; i++) {
+                if (isRecordStart(buf, i, length) && isMarkup(buf, i, Math.min(length, i + lookahead))) {
+                    return offset + i;
+                }
+            }
+
+            if (lastWindow) break;
+            offset += searchLimit;
+        }
+        return -1;
+    }
+
+    private static int read(FileChannel channel, long offset, byte[] buf) throws IOException {
+        ByteBuffer bb = ByteBuffer.wrap(buf);
+        while (bb.hasRemaining()) {
+            int read = channel.read(bb, offset + bb.position());
+            if (read < 0) break;
+        }
+        return bb.position();
+    }
+
+    private boolean isRecordStart(byte[] buf, int i, int length) {
+        int after = i + recordStart.length;
+        if (after >= length || !startsWith(buf, i, length, recordStart)) return false;
+
+        byte next = buf[after];
+        return next == '>' || next == '/' || next == ' ' || next == '\t' || next == '\n' || next == '\r';
+    }
+
+    /**
+     * Verify the tag at `start` is a markup, by tokenizing what follows.
+     *
+     * Running into an end of a comment, CDATA or PI that was not started means the candidate is inside of it. It may
+     * reject a valid candidate, as "-->" and "?>" are permitted in text, but it is safe to try the next one.
+     */
+    private static boolean isMarkup(byte[] buf, int start, int limit) {
+        int p = start;
+        while (p < limit) {
+            byte b = buf[p];
+            if (b == '<') {
+                int end;
+                if (startsWith(buf, p, limit, COMMENT_START)) {
+                    end = indexOf(buf, p + COMMENT_START.length, limit, COMMENT_END);
+                    if (end >= 0) end += COMMENT_END.length;
+                } else if (startsWith(buf, p, limit, CDATA_START)) {
+                    end = indexOf(buf, p + CDATA_START.length, limit, CDATA_END);
+                    if (end >= 0) end += CDATA_END.length;
+                } else if (startsWith(buf, p, limit, PI_START)) {
+                    end = indexOf(buf, p + PI_START.length, limit, PI_END);
+                    if (end >= 0) end += PI_END.length;
+                } else {
+                    end = tagEnd(buf, p + 1, limit);
+                    // The candidate was a part of PI
+                    if (end > 0 && buf[end - 1] == '?') return false;
+                    if (end >= 0) end += 1;
+                }
+
+                // Reached the end of lookahead with no contradiction
+                if (end < 0) return true;
+                p = end;
+            } else if (startsWith(buf, p, limit, COMMENT_END) || startsWith(buf, p, limit, CDATA_END) || startsWith(buf, p, limit, PI_END)) {
+                return false;
+            } else {
+                p++;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Find the closing '>' of a tag, skipping quoted attribute values.
+     */
+    private static int tagEnd(byte[] buf, int from, int limit) {
+        byte quote = 0;
+        for (int i = from; i < limit; i++) {
+            byte b = buf[i];
+            if (quote != 0) {
+                if (b == quote) quote = 0;
+            } else if (b == '"' || b == '\'') {
+                quote = b;
+            } else if (b == '>') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static final byte[] COMMENT_START = "<!--".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] COMMENT_END = "-->".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] CDATA_START = "<![CDATA[".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] CDATA_END = "]]>".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] PI_START = "<?".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] PI_END = "?>".getBytes(StandardCharsets.US_ASCII);
+
+    private static boolean startsWith(byte[] buf, int from, int limit, byte[] pattern) {
+        if (from + pattern.length > limit) return false;
+        for (int i = 0; i < pattern.length; i++) {
+            if (buf[from + i] != pattern[i]) return false;
+        }
+        return true;
+    }
+
+    private static int indexOf(byte[] buf, int from, int limit, byte[] pattern) {
+        for (int i = from; i + pattern.length <= limit; i++) {
+            if (startsWith(buf, i, limit, pattern)) return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Read the record ancestors from the beginning of the file.
+     */
+    private Context readContext(Path file) throws IOException {
+        class ContextReader extends DefaultHandler {
+            private final StringBuilder prefix = new StringBuilder();
+            private final List<String> ancestors = new ArrayList<>();
+            private final Map<String, String> pendingPrefixes = new LinkedHashMap<>();
+
+            @Override
+            public void startPrefixMapping(String prefix, String uri) {
+                pendingPrefixes.put(prefix, uri);
+            }
+
+            @Override
+            public void startElement(String uri, String localName, String qName, Attributes attributes) throws SAXException {
+                if (record.equals(TagName.fromSaxArgs(uri, localName, qName))) {
+                    throw new FoundRecord();
+                }
+
+                ancestors.add(qName);
+                prefix.append('<').append(qName);
+                for (Map.Entry<String, String> e : pendingPrefixes.entrySet()) {
+                    prefix.append(e.getKey().isEmpty() ? " xmlns" : " xmlns:" + e.getKey());
+                    appendAttributeValue(e.getValue());
+                }
+                pendingPrefixes.clear();
+                for (int i = 0; i < attributes.getLength(); i++) {
+                    prefix.append(' ').append(attributes.getQName(i));
+                    appendAttributeValue(attributes.getValue(i));
+                }
+                prefix.append('>');
+            }
+
+            @Override
+            public void endElement(String uri, String localName, String qName) {
+                ancestors.remove(ancestors.size() - 1);
+            }
+
+            private void appendAttributeValue(String value) {
+                prefix.append("=\"");
+                for (int i = 0; i < value.length(); i++) {
+                    char c = value.charAt(i);
+                    switch (c) {
+                        case '&': prefix.append("&amp;"); break;
+                        case '<': prefix.append("&lt;"); break;
+                        case '"': prefix.append("&quot;"); break;
+                        case '\n': prefix.append("&#10;"); break;
+                        case '\r': prefix.append("&#13;"); break;
+                        case '\t': prefix.append("&#9;"); break;
+                        default: prefix.append(c);
+                    }
+                }
+                prefix.append('"');
+            }
+        }
+
+        ContextReader reader = new ContextReader();
+        try (InputStream is = Files.newInputStream(file)) {
+            Saxeed.newSaxParser().parse(new InputSource(is), reader);
+            throw new FailedReading("No record " + record + " found in " + file);
+        } catch (FoundRecord found) {
+            StringBuilder suffix = new StringBuilder();
+            for (int i = reader.ancestors.size() - 1; i >= 0; i--) {
+                suffix.append("</").append(reader.ancestors.get(i)).append('>');
+            }
+            return new Context(reader.prefix.toString(), suffix.toString(), reader.ancestors.size());
+        } catch (SAXException e) {
+            throw new FailedReading("Failed parsing " + file, e);
+        }
+    }
+
+    private static final class FoundRecord extends SAXException {
+        private FoundRecord() {
+            super("Record found", null);
+        }
+    }
+
+    private static final class Context {
+        private final String prefix;
+        private final String suffix;
+        private final int depth;
+
+        private Context(String prefix, String suffix, int depth) {
+            this.prefix = prefix;
+            this.suffix = suffix;
+            this.depth = depth;
+        }
+    }
+
+    /**
+     * Join outputs of transformed shards to a single document.
+     *
+     * The enclosing start and end tags of the record ancestors are kept from the first and the last shard output
+     * respectively, and removed from all others.
+     *
+     * @param outputs Transformation outputs of the shards, in order.
+     * @param depth Number of record ancestors, see {@link Shard#getDepth()}.
+     * @param output Target to write the result to. The stream is NOT closed.
+     */
+    public static void concatenate(List<Path> outputs, int depth, OutputStream output) throws FailedReading, FailedWriting {
+        WritableByteChannel target = Channels.newChannel(output);
+        for (int i = 0; i < outputs.size(); i++) {
+            Path path = outputs.get(i);
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                long start = i == 0 ? 0 : afterStartTags(channel, depth, path);
+                long end = i == outputs.size() - 1 ? channel.size() : beforeEndTags(channel, depth, path);
+                if (end < start) throw new FailedReading("No content between enclosing tags in " + path);
+
+                copy(channel, start, end, target);
+            } catch (IOException e) {
+                throw new FailedReading("Failed reading shard output " + path, e);
+            }
+        }
+    }
+
+    private static void copy(FileChannel channel, long start, long end, WritableByteChannel target) throws FailedWriting {
+        try {
+            while (start < end) {
+                start += channel.transferTo(start, end - start, target);
+            }
+        } catch (IOException e) {
+            throw new FailedWriting("Failed writing concatenated output", e);
+        }
+    }
+
+    /**
+     * Find the offset after the first `depth` start tags.
+     */
+    private static long afterStartTags(FileChannel channel, int depth, Path path) throws IOException {
+        byte[] buf = new byte[(int) Math.min(channel.size(), 64 * 1024)];
+        while (true) {
+            int length = read(channel, 0, buf);
+            int p = 0;
+            int found = 0;
+            while (found < depth) {
+                int lt = indexOf(buf, p, length, new byte[] {'<'});
+                if (lt < 0) break;
+
+                int end;
+                if (startsWith(buf, lt, length, PI_START)) {
+                    end = indexOf(buf, lt, length, PI_END);
+                    if (end >= 0) end += PI_END.length - 1;
+                } else {
+                    end = tagEnd(buf, lt + 1, length);
+                    if (end >= 0) found++;
+                }
+
+                if (end < 0) break;
+                p = end + 1;
+            }
+
+            if (found == depth) return p;
+            if (length == channel.size()) throw new FailedReading("Unable to find enclosing start tags in " + path);
+            buf = new byte[(int) Math.min(channel.size(), 2L * buf.length)];
+        }
+    }
+
+    /**
+     * Find the offset of the last `depth` end tags.
+     */
+    private static long beforeEndTags(FileChannel channel, int depth, Path path) throws IOException {
+        long size = channel.size();
+        int tail = (int) Math.min(size, 64 * 1024);
+        byte[] buf = new byte[tail];
+        int length = read(channel, size - tail, buf);
+
+        int p = length;
+        for (int found = 0; found < depth; found++) {
+            // End tags can only be separated by whitespace
+            while (p > 0 && Character.isWhitespace(buf[p - 1])) p--;
+            if (p == 0 || buf[p - 1] != '>') throw new FailedReading("Unable to find enclosing end tags in " + path);
+
+            int lt = p - 1;
+            while (lt >= 0 && buf[lt] != '<') lt--;
+            if (lt < 0 || lt + 1 >= length || buf[lt + 1] != '/') {
+                throw new FailedReading("Unable to find enclosing end tags in " + path);
+            }
+            p = lt;
+        }
+        return size - tail + p;
+    }
+}
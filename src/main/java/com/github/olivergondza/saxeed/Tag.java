@@ -1,5 +1,6 @@
 package com.github.olivergondza.saxeed;
 
+import java.io.Reader;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
@@ -66,6 +67,14 @@ public interface Tag {
      */
     Map<String, String> getAttributes();
 
+    /**
+     * Get attribute value.
+     *
+     * @param name Qualified name of the attribute.
+     * @return null if there is no such attribute.
+     */
+    String getAttribute(String name);
+
     /**
      * Create a bookmark for this element.
      */
@@ -165,6 +174,13 @@ public interface Tag {
          */
         void addText(String text);
 
+        /**
+         * Set text to write after opening tag, streamed from the reader.
+         *
+         * The reader is closed once written, or once the transformation completes if it is not written.
+         */
+        void addText(Reader text);
+
         /**
          * Declare new namespace on this tag.
          *
@@ -200,6 +216,13 @@ public interface Tag {
          * Set text to write before closing tag.
          */
         void addText(String text);
+
+        /**
+         * Set text to write before closing tag, streamed from the reader.
+         *
+         * The reader is closed once written, or once the transformation completes if it is not written.
+         */
+        void addText(Reader text);
     }
 
     /**
@@ -230,5 +253,12 @@ public interface Tag {
          * Set text to write before closing tag.
          */
         void addText(String text);
+
+        /**
+         * Set text to write before closing tag, streamed from the reader.
+         *
+         * The reader is closed once written, or once the transformation completes if it is not written.
+         */
+        void addText(Reader text);
     }
 }
@@ -2,7 +2,6 @@ package com.github.olivergondza.saxeed;
 
 import com.github.olivergondza.saxeed.ex.FailedWriting;
 
-import javax.xml.stream.FactoryConfigurationError;
 import javax.xml.stream.XMLOutputFactory;
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamWriter;
@@ -18,6 +17,11 @@ import java.nio.file.Path;
  */
 public abstract class Target implements AutoCloseable {
 
+    /**
+     * The factory lookup is expensive, and created instance is thread-safe once configured.
+     */
+    private static final XMLOutputFactory OUTPUT_FACTORY = XMLOutputFactory.newInstance();
+
     private AutoCloseable close = null;
 
     /**
@@ -34,10 +38,17 @@ public abstract class Target implements AutoCloseable {
      */
     public abstract XMLStreamWriter getWriter(Saxeed saxeed);
 
+    /**
+     * Determine if the content written is thrown away.
+     */
+    public boolean isDiscarding() {
+        return false;
+    }
+
     public static XMLStreamWriter createXmlStreamWriter(OutputStream os) {
         try {
-            return XMLOutputFactory.newInstance().createXMLStreamWriter(os);
-        } catch (FactoryConfigurationError | XMLStreamException e) {
+            return OUTPUT_FACTORY.createXMLStreamWriter(os);
+        } catch (XMLStreamException e) {
             throw new FailedWriting("Unable to create XMLStreamWriter from " + objectId(os), e);
         }
     }
@@ -64,9 +75,11 @@ public abstract class Target implements AutoCloseable {
     @Override
     public void close() throws FailedWriting {
         if (close != null) {
+            // Not to be closed again, even when failed
+            AutoCloseable closing = close;
+            close = null;
             try {
-                close.close();
-                close = null;
+                closing.close();
             } catch (Exception e) {
                 throw new FailedWriting("Failed closing target " + getName(), e);
             }
@@ -151,6 +164,11 @@ public abstract class Target implements AutoCloseable {
         public String getName() {
             return "target /dev/null";
         }
+
+        @Override
+        public boolean isDiscarding() {
+            return true;
+        }
     }
 
     static class XmlStreamWriterTarget extends Target {
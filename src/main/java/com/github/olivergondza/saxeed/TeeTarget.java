@@ -0,0 +1,336 @@
+package com.github.olivergondza.saxeed;
+
+import com.github.olivergondza.saxeed.ex.FailedWriting;
+
+import javax.xml.stream.XMLStreamWriter;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Target writing the same content to several sinks, such as a local file, an archive copy, and a checksum.
+ *
+ * The content is serialized once into a buffer, and its bytes are copied to all the sinks once it is full. Compared to
+ * adding the same transformation for every output, the visitors and the serialization run only once.
+ *
+ * <pre>
+ *     new TeeTarget().addSink(out).addSink(archive).addSink(new DigestOutputStream(OutputStream.nullOutputStream(), md));
+ * </pre>
+ */
+public class TeeTarget extends Target {
+
+    private static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    private final List<Path> paths = new ArrayList<>();
+    private final List<OutputStream> streams = new ArrayList<>();
+    private final List<FileChannel> channels = new ArrayList<>();
+
+    private int bufferSize = DEFAULT_BUFFER_SIZE;
+    private boolean concurrent = false;
+
+    /**
+     * Write to a file, that is closed once the transformation is completed.
+     */
+    public TeeTarget addSink(Path path) {
+        paths.add(Objects.requireNonNull(path));
+        return this;
+    }
+
+    /**
+     * Write to OutputStream.
+     *
+     * The stream is NOT closed.
+     */
+    public TeeTarget addSink(OutputStream os) {
+        streams.add(Objects.requireNonNull(os));
+        return this;
+    }
+
+    /**
+     * Write to FileChannel, from its current position.
+     *
+     * The channel is NOT closed.
+     */
+    public TeeTarget addSink(FileChannel channel) {
+        channels.add(Objects.requireNonNull(channel));
+        return this;
+    }
+
+    /**
+     * Set the size of the buffer copied to the sinks. 64 KiB by default.
+     */
+    public TeeTarget setBufferSize(int bufferSize) {
+        if (bufferSize <= 0) throw new IllegalArgumentException("Buffer size must be positive: " + bufferSize);
+
+        this.bufferSize = bufferSize;
+        return this;
+    }
+
+    /**
+     * Write to the sinks concurrently, each in its own thread. Sequentially in the transformation thread by default.
+     *
+     * The buffer is reused once all the sinks have written it, so the slowest sink still holds back the others.
+     */
+    public TeeTarget setConcurrent(boolean concurrent) {
+        this.concurrent = concurrent;
+        return this;
+    }
+
+    @Override
+    public String getName() {
+        return String.format("tee to %d sinks", paths.size() + streams.size() + channels.size());
+    }
+
+    @Override
+    public XMLStreamWriter getWriter(Saxeed saxeed) {
+        List<Sink> sinks = new ArrayList<>();
+        for (OutputStream os : streams) {
+            sinks.add(new StreamSink(os, false));
+        }
+        for (FileChannel channel : channels) {
+            sinks.add(new ChannelSink(channel));
+        }
+        try {
+            for (Path path : paths) {
+                OutputStream os;
+                try {
+                    os = Files.newOutputStream(path);
+                } catch (IOException e) {
+                    throw new FailedWriting("Cannot create/open file: " + path.toAbsolutePath(), e);
+                }
+                sinks.add(new StreamSink(os, true));
+            }
+        } catch (FailedWriting e) {
+            for (Sink sink : sinks) {
+                try {
+                    sink.close();
+                } catch (IOException ex) {
+                    e.addSuppressed(ex);
+                }
+            }
+            throw e;
+        }
+        if (sinks.isEmpty()) throw new IllegalStateException("No sinks to write to: " + getName());
+
+        TeeStream stream = new TeeStream(sinks);
+        registerClosable(stream);
+        return createXmlStreamWriter(stream);
+    }
+
+    private interface Sink {
+        void write(byte[] b, int len) throws IOException;
+
+        void flush() throws IOException;
+
+        void close() throws IOException;
+    }
+
+    private static final class StreamSink implements Sink {
+        private final OutputStream os;
+        private final boolean owned;
+
+        private StreamSink(OutputStream os, boolean owned) {
+            this.os = os;
+            this.owned = owned;
+        }
+
+        @Override
+        public void write(byte[] b, int len) throws IOException {
+            os.write(b, 0, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            os.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (owned) {
+                os.close();
+            } else {
+                os.flush();
+            }
+        }
+    }
+
+    private static final class ChannelSink implements Sink {
+        private final FileChannel channel;
+
+        private ChannelSink(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        public void write(byte[] b, int len) throws IOException {
+            ByteBuffer buffer = ByteBuffer.wrap(b, 0, len);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+
+        @Override
+        public void flush() {
+            // Nothing is buffered
+        }
+
+        @Override
+        public void close() {
+            // Not ours to close
+        }
+    }
+
+    private final class TeeStream extends OutputStream {
+        private final List<Sink> sinks;
+        private final ExecutorService executor;
+
+        private final byte[] buffer = new byte[bufferSize];
+        private int position = 0;
+        private boolean closed = false;
+        private boolean failed = false;
+
+        private TeeStream(List<Sink> sinks) {
+            this.sinks = sinks;
+            this.executor = concurrent && sinks.size() > 1
+                    ? Executors.newFixedThreadPool(sinks.size(), r -> {
+                        Thread thread = new Thread(r, "saxeed " + getName());
+                        thread.setDaemon(true);
+                        return thread;
+                    })
+                    : null;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (position == buffer.length) {
+                drain();
+            }
+            buffer[position++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            Objects.checkFromIndexSize(off, len, b.length);
+            while (len > 0) {
+                if (position == buffer.length) {
+                    drain();
+                }
+                int chunk = Math.min(len, buffer.length - position);
+                System.arraycopy(b, off, buffer, position, chunk);
+                position += chunk;
+                off += chunk;
+                len -= chunk;
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            drain();
+            forEachSink(Sink::flush);
+        }
+
+        private void drain() throws IOException {
+            if (failed) throw new IOException("Writing to the sinks failed already");
+            if (position == 0) return;
+
+            int len = position;
+            // Not to be written again, when the sinks have written part of it already
+            position = 0;
+            try {
+                forEachSink(sink -> sink.write(buffer, len));
+            } catch (IOException e) {
+                failed = true;
+                throw e;
+            }
+        }
+
+        private void forEachSink(SinkOperation op) throws IOException {
+            if (executor == null) {
+                for (Sink sink : sinks) {
+                    op.run(sink);
+                }
+                return;
+            }
+
+            List<Callable<Void>> tasks = new ArrayList<>(sinks.size());
+            for (Sink sink : sinks) {
+                tasks.add(() -> {
+                    op.run(sink);
+                    return null;
+                });
+            }
+
+            IOException failure = null;
+            try {
+                for (Future<Void> future : executor.invokeAll(tasks)) {
+                    try {
+                        future.get();
+                    } catch (ExecutionException e) {
+                        IOException cause = e.getCause() instanceof IOException
+                                ? (IOException) e.getCause()
+                                : new IOException(e.getCause());
+                        if (failure == null) {
+                            failure = cause;
+                        } else {
+                            failure.addSuppressed(cause);
+                        }
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted waiting for the sinks");
+            }
+            if (failure != null) throw failure;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) return;
+            closed = true;
+
+            IOException failure = null;
+            try {
+                // Reported already, when the write failed
+                if (!failed) {
+                    flush();
+                }
+            } catch (IOException e) {
+                failure = e;
+            } finally {
+                if (executor != null) {
+                    executor.shutdown();
+                }
+            }
+
+            for (Sink sink : sinks) {
+                try {
+                    sink.close();
+                } catch (IOException e) {
+                    if (failure == null) {
+                        failure = e;
+                    } else {
+                        failure.addSuppressed(e);
+                    }
+                }
+            }
+            if (failure != null) throw failure;
+        }
+    }
+
+    @FunctionalInterface
+    private interface SinkOperation {
+        void run(Sink sink) throws IOException;
+    }
+}
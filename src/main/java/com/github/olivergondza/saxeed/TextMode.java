@@ -0,0 +1,31 @@
+package com.github.olivergondza.saxeed;
+
+import com.github.olivergondza.saxeed.internal.CharChunk;
+
+/**
+ * How the text of the document is delivered to {@link UpdatingVisitor#chars(Tag.Chars, CharChunk)}.
+ *
+ * @see TransformationBuilder#setTextMode(TextMode)
+ */
+public enum TextMode {
+    /**
+     * Deliver the text as reported by the parser.
+     *
+     * A single text node can be split into any number of chunks, and where it ends is not known.
+     */
+    FRAGMENTS,
+
+    /**
+     * Deliver every text node in a single chunk.
+     *
+     * The text is collected in a reusable buffer, so the whole text node needs to fit in memory.
+     */
+    COALESCED,
+
+    /**
+     * Deliver every text node as a sequence of chunks, the last one marked by {@link CharChunk#isLast()}.
+     *
+     * Only a single chunk is held in memory, regardless of the size of the text node.
+     */
+    STREAMING
+}
@@ -0,0 +1,280 @@
+package com.github.olivergondza.saxeed;
+
+import com.github.olivergondza.saxeed.internal.CharChunk;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Supplier;
+
+/**
+ * Replace literal terms in the text of visited tags, in a single pass.
+ *
+ * The terms are compiled into an Aho-Corasick automaton, so the time taken does not depend on the number of terms.
+ * When more terms match at the same place, the longest one is replaced, and the replacements do not overlap.
+ *
+ * Matches spanning multiple chunks of a text node are replaced too, as the characters that can be a part of a match
+ * are held back until the next chunk. Therefore, the transformation needs to deliver the text in
+ * {@link TextMode#STREAMING} or {@link TextMode#COALESCED} mode.
+ *
+ * <pre>
+ *     new TransformationBuilder().add("p", new TextReplacer(terms)).setTextMode(TextMode.STREAMING);
+ * </pre>
+ *
+ * The instance is immutable, and it creates a new visitor for every document.
+ */
+public final class TextReplacer implements Supplier<UpdatingVisitor> {
+
+    private static final int ROOT = 0;
+
+    /**
+     * Characters of state transitions, sorted.
+     */
+    private final char[][] keys;
+    private final int[][] targets;
+    private final int[] fail;
+
+    /**
+     * Length of the longest term prefix the state represents.
+     */
+    private final int[] depth;
+
+    /**
+     * Length of the longest term ending in the state, 0 for none.
+     */
+    private final int[] matchLength;
+    private final String[] matchReplacement;
+
+    /**
+     * @param replacements Replacements of the terms to find. Terms cannot be empty.
+     */
+    public TextReplacer(Map<String, String> replacements) {
+        List<TreeMap<Character, Integer>> trie = new ArrayList<>();
+        trie.add(new TreeMap<>());
+        List<Integer> depths = new ArrayList<>(List.of(0));
+        List<String> terminal = new ArrayList<>();
+        terminal.add(null);
+
+        for (Map.Entry<String, String> e : replacements.entrySet()) {
+            String term = e.getKey();
+            if (term == null || term.isEmpty()) throw new IllegalArgumentException("Term must not be empty");
+            if (e.getValue() == null) throw new IllegalArgumentException("Replacement of '" + term + "' must not be null");
+
+            int state = ROOT;
+            for (int i = 0; i < term.length(); i++) {
+                Integer next = trie.get(state).get(term.charAt(i));
+                if (next == null) {
+                    next = trie.size();
+                    trie.get(state).put(term.charAt(i), next);
+                    trie.add(new TreeMap<>());
+                    depths.add(i + 1);
+                    terminal.add(null);
+                }
+                state = next;
+            }
+            terminal.set(state, e.getValue());
+        }
+
+        int states = trie.size();
+        keys = new char[states][];
+        targets = new int[states][];
+        depth = new int[states];
+        for (int state = 0; state < states; state++) {
+            TreeMap<Character, Integer> transitions = trie.get(state);
+            keys[state] = new char[transitions.size()];
+            targets[state] = new int[transitions.size()];
+            int i = 0;
+            for (Map.Entry<Character, Integer> t : transitions.entrySet()) {
+                keys[state][i] = t.getKey();
+                targets[state][i] = t.getValue();
+                i++;
+            }
+            depth[state] = depths.get(state);
+        }
+
+        // Resolve failure links breadth-first, so they always point to states already resolved
+        fail = new int[states];
+        matchLength = new int[states];
+        matchReplacement = new String[states];
+        Deque<Integer> queue = new ArrayDeque<>();
+        queue.add(ROOT);
+        while (!queue.isEmpty()) {
+            int state = queue.remove();
+            for (int i = 0; i < keys[state].length; i++) {
+                int child = targets[state][i];
+                fail[child] = state == ROOT ? ROOT : next(fail[state], keys[state][i]);
+
+                if (terminal.get(child) != null) {
+                    matchLength[child] = depth[child];
+                    matchReplacement[child] = terminal.get(child);
+                } else {
+                    matchLength[child] = matchLength[fail[child]];
+                    matchReplacement[child] = matchReplacement[fail[child]];
+                }
+                queue.add(child);
+            }
+        }
+    }
+
+    private int next(int state, char c) {
+        while (true) {
+            int i = Arrays.binarySearch(keys[state], c);
+            if (i >= 0) return targets[state][i];
+            if (state == ROOT) return ROOT;
+
+            state = fail[state];
+        }
+    }
+
+    @Override
+    public UpdatingVisitor get() {
+        return new Replacing();
+    }
+
+    /**
+     * Replace the terms in a stream of text nodes.
+     */
+    private final class Replacing implements UpdatingVisitor {
+
+        /**
+         * Characters of the text node not written yet.
+         */
+        private char[] window = new char[64];
+        private int windowLength = 0;
+
+        /**
+         * Characters of the window written already, and the ones fed to the automaton.
+         */
+        private int written = 0;
+        private int scanned = 0;
+        private int state = ROOT;
+
+        /**
+         * Leftmost-longest match found, not replaced yet. -1 for none.
+         */
+        private int matchStart = -1;
+        private int matchEnd;
+        private String match;
+
+        private char[] out = new char[64];
+        private int outLength;
+
+        @Override
+        public void chars(Tag.Chars tag, CharChunk chars) {
+            if (chars.getTextMode() == TextMode.FRAGMENTS) throw new IllegalStateException(
+                    "Replacing text requires TextMode.STREAMING or TextMode.COALESCED"
+            );
+
+            outLength = 0;
+            for (int i = 0, length = chars.length(); i < length; i++) {
+                feed(chars.charAt(i));
+            }
+            if (chars.isLast()) {
+                finish();
+            }
+            chars.update(out, 0, outLength);
+        }
+
+        private void feed(char c) {
+            if (windowLength == window.length) {
+                compact();
+                if (windowLength == window.length) {
+                    window = Arrays.copyOf(window, window.length * 2);
+                }
+            }
+            window[windowLength++] = c;
+            process();
+        }
+
+        /**
+         * Feed the automaton, writing the characters that cannot be a part of any match.
+         */
+        private void process() {
+            while (scanned < windowLength) {
+                state = next(state, window[scanned++]);
+
+                int length = matchLength[state];
+                if (length > 0) {
+                    int start = scanned - length;
+                    if (matchStart < 0 || start < matchStart || (start == matchStart && scanned > matchEnd)) {
+                        matchStart = start;
+                        matchEnd = scanned;
+                        match = matchReplacement[state];
+                    }
+                }
+
+                // No match in progress can start before this
+                int pending = scanned - depth[state];
+                if (matchStart >= 0) {
+                    if (pending > matchStart) {
+                        replaceMatch();
+                    }
+                } else if (pending > written) {
+                    write(written, pending);
+                }
+            }
+        }
+
+        private void replaceMatch() {
+            write(written, matchStart);
+            writeReplacement(match);
+            written = matchEnd;
+
+            // Rescan the characters after the match
+            scanned = matchEnd;
+            state = ROOT;
+            matchStart = -1;
+        }
+
+        /**
+         * Text node ended, so no match in progress can be completed.
+         */
+        private void finish() {
+            while (matchStart >= 0) {
+                replaceMatch();
+                process();
+            }
+            write(written, windowLength);
+
+            windowLength = 0;
+            written = 0;
+            scanned = 0;
+            state = ROOT;
+        }
+
+        private void compact() {
+            System.arraycopy(window, written, window, 0, windowLength - written);
+            windowLength -= written;
+            scanned -= written;
+            if (matchStart >= 0) {
+                matchStart -= written;
+                matchEnd -= written;
+            }
+            written = 0;
+        }
+
+        private void write(int from, int to) {
+            int length = to - from;
+            ensureOut(length);
+            System.arraycopy(window, from, out, outLength, length);
+            outLength += length;
+            written = to;
+        }
+
+        private void writeReplacement(String replacement) {
+            ensureOut(replacement.length());
+            replacement.getChars(0, replacement.length(), out, outLength);
+            outLength += replacement.length();
+        }
+
+        private void ensureOut(int length) {
+            if (outLength + length > out.length) {
+                out = Arrays.copyOf(out, Math.max(out.length * 2, outLength + length));
+            }
+        }
+    }
+}
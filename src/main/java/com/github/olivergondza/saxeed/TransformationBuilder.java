@@ -1,13 +1,30 @@
 package com.github.olivergondza.saxeed;
 
+import com.github.olivergondza.saxeed.internal.RecordLimits;
 import com.github.olivergondza.saxeed.internal.TransformationHandler;
 
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.LinkedHashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Supplier;
 
 public class TransformationBuilder {
-    private final LinkedHashMap<UpdatingVisitor, Subscribed> visitors = new LinkedHashMap<>();
+    private final List<Subscribed> subscriptions = new ArrayList<>();
+    private final List<Supplier<? extends UpdatingVisitor>> factories = new ArrayList<>();
+
+    /**
+     * Visitor instances registered directly. Such transformation cannot be safely reused.
+     */
+    private final Set<UpdatingVisitor> instances = new HashSet<>();
+
+    private FinishPolicy finishPolicy = FinishPolicy.PASSTHROUGH;
+    private RecordLimits limits = RecordLimits.NONE;
+    private TextMode textMode = TextMode.FRAGMENTS;
+    private NamespaceDeclarations namespaceDeclarations = NamespaceDeclarations.PRESERVE;
+    private FlushPolicy flushPolicy = FlushPolicy.ON_CLOSE;
 
     public TransformationBuilder() {
     }
@@ -21,12 +38,11 @@ public class TransformationBuilder {
     }
 
     public TransformationBuilder add(Subscribed subs, UpdatingVisitor visitor) {
-        if (visitors.containsKey(visitor)) {
+        if (!instances.add(visitor)) {
             throw new IllegalStateException("Repeated addition of visitor " + visitor);
         }
 
-        visitors.put(visitor, subs);
-        return this;
+        return register(subs, () -> visitor);
     }
 
     public TransformationBuilder add(Subscribed subs, Collection<UpdatingVisitor> visitors) {
@@ -36,7 +52,140 @@ public class TransformationBuilder {
         return this;
     }
 
+    /**
+     * Add visitor factory.
+     *
+     * New visitor instance is created for every document transformed.
+     */
+    public TransformationBuilder add(String tagName, Supplier<? extends UpdatingVisitor> factory) {
+        return add(Subscribed.to().tagNames(tagName).build(), factory);
+    }
+
+    /**
+     * Add visitor factory.
+     *
+     * New visitor instance is created for every document transformed.
+     */
+    public TransformationBuilder add(Subscribed subs, Supplier<? extends UpdatingVisitor> factory) {
+        return register(subs, factory);
+    }
+
+    /**
+     * Decide how the text is delivered to the visitors.
+     *
+     * @see TextMode
+     */
+    public TransformationBuilder setTextMode(TextMode textMode) {
+        this.textMode = Objects.requireNonNull(textMode);
+        return this;
+    }
+
+    /**
+     * Decide how the namespace declarations are written.
+     *
+     * @see NamespaceDeclarations
+     */
+    public TransformationBuilder setNamespaceDeclarations(NamespaceDeclarations namespaceDeclarations) {
+        this.namespaceDeclarations = Objects.requireNonNull(namespaceDeclarations);
+        return this;
+    }
+
+    /**
+     * Decide when the target is flushed, for the consumers reading it while it is written.
+     *
+     * @see FlushPolicy
+     */
+    public TransformationBuilder setFlushPolicy(FlushPolicy flushPolicy) {
+        this.flushPolicy = Objects.requireNonNull(flushPolicy);
+        return this;
+    }
+
+    /**
+     * Decide what to do with the rest of the document, once all the visitors are done.
+     *
+     * Regardless of the policy, nothing is written once done when transforming with no target.
+     *
+     * @see UpdatingVisitor#isDone()
+     */
+    public TransformationBuilder setFinishPolicy(FinishPolicy finishPolicy) {
+        this.finishPolicy = Objects.requireNonNull(finishPolicy);
+        return this;
+    }
+
+    /**
+     * Transform only the first records, and close the document once more of them is encountered.
+     *
+     * The resulting document is well-formed, but it is missing the content after the last record written.
+     *
+     * @param count Number of records to transform.
+     */
+    public TransformationBuilder setHead(TagName record, long count) {
+        return setHead(record::equals, count);
+    }
+
+    /**
+     * Transform only the first records, and close the document once more of them is encountered.
+     *
+     * @see #setHead(TagName, long)
+     */
+    public TransformationBuilder setHead(Subscribed records, long count) {
+        limits = limits.withHead(Objects.requireNonNull(records), count);
+        return this;
+    }
+
+    /**
+     * Transform only a deterministic sample of the records, skipping the others.
+     *
+     * The records kept are spread evenly, starting with the first one. When combined with {@link #setHead}, the head
+     * is taken from the sample.
+     *
+     * @param percent Percentage of records to transform.
+     */
+    public TransformationBuilder setSample(TagName record, int percent) {
+        return setSample(record::equals, percent);
+    }
+
+    /**
+     * Transform only a deterministic sample of the records, skipping the others.
+     *
+     * @see #setSample(TagName, int)
+     */
+    public TransformationBuilder setSample(Subscribed records, int percent) {
+        limits = limits.withSample(Objects.requireNonNull(records), percent);
+        return this;
+    }
+
+    private TransformationBuilder register(Subscribed subs, Supplier<? extends UpdatingVisitor> factory) {
+        subscriptions.add(subs);
+        factories.add(factory);
+        return this;
+    }
+
+    /**
+     * Create immutable transformation to be used repeatedly, and concurrently.
+     *
+     * All visitors must be registered as factories, so each document gets its own visitor instances.
+     *
+     * @throws IllegalStateException When visitor instance was registered.
+     */
+    public CompiledTransformation compile() throws IllegalStateException {
+        if (!instances.isEmpty()) throw new IllegalStateException(
+                "Unable to compile transformation with visitor instances, register their factories instead: " + instances
+        );
+
+        return snapshot();
+    }
+
+    /**
+     * Capture the current configuration for a single use.
+     */
+    /*package*/ CompiledTransformation snapshot() {
+        return new CompiledTransformation(
+                subscriptions, factories, finishPolicy, limits, textMode, namespaceDeclarations, flushPolicy
+        );
+    }
+
     public TransformationHandler build(Saxeed saxeed, Target target) {
-        return new TransformationHandler(saxeed, target, visitors);
+        return snapshot().build(saxeed, target);
     }
 }
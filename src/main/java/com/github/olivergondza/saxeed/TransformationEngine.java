@@ -0,0 +1,148 @@
+package com.github.olivergondza.saxeed;
+
+import com.github.olivergondza.saxeed.ex.FailedReading;
+import com.github.olivergondza.saxeed.ex.FailedTransforming;
+import com.github.olivergondza.saxeed.ex.FailedWriting;
+import com.github.olivergondza.saxeed.internal.MultiplexingHandler;
+import com.github.olivergondza.saxeed.internal.TransformationHandler;
+import org.xml.sax.InputSource;
+
+import javax.xml.parsers.SAXParser;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Reusable engine for transforming large number of (small) documents.
+ *
+ * Where {@link Saxeed} is set up for every document, the engine keeps a pool of parsers, writers and handlers, and
+ * recycles them for next document. So the per-document cost is reduced to creating the visitors.
+ *
+ * <pre>
+ *     TransformationEngine engine = new TransformationEngine(compiledTransformation);
+ *     // In any thread
+ *     engine.transform(in, out);
+ * </pre>
+ *
+ * The engine is thread-safe. The pool holds as many sets of the resources as there were documents transformed
+ * concurrently, and it is emptied once the engine is closed.
+ */
+public final class TransformationEngine implements AutoCloseable {
+
+    private final CompiledTransformation transformation;
+    /**
+     * Workers not transforming at the moment.
+     */
+    private final Queue<Worker> idle = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Incremented on close, so the workers busy at the time are not returned to the pool.
+     */
+    private final AtomicInteger generation = new AtomicInteger();
+
+    public TransformationEngine(CompiledTransformation transformation) {
+        this.transformation = transformation;
+    }
+
+    /**
+     * Transform the document from the input stream to the output stream.
+     *
+     * Neither of the streams is closed.
+     *
+     * @throws FailedReading When reading the supplied input fails.
+     * @throws FailedTransforming When some of the visitors throws.
+     * @throws FailedWriting When writing the output fails.
+     */
+    public void transform(InputStream is, OutputStream os) throws FailedReading, FailedTransforming, FailedWriting {
+        Worker worker = idle.poll();
+        if (worker == null) {
+            worker = new Worker(transformation, generation.get());
+        }
+
+        // Writer and handlers are in an undefined state after failure. Not returned to the pool.
+        worker.transform(new InputSource(is), os);
+
+        if (worker.generation == generation.get()) {
+            idle.add(worker);
+        }
+    }
+
+    /**
+     * Release the pooled resources, including those in use once their documents are completed.
+     *
+     * The engine can still be used, creating them again.
+     */
+    @Override
+    public void close() {
+        generation.incrementAndGet();
+        idle.clear();
+    }
+
+    /**
+     * Resources used by one thread at a time.
+     */
+    private static final class Worker {
+        private final CompiledTransformation transformation;
+        private final int generation;
+        private final SAXParser parser = Saxeed.newSaxParser();
+        private final RedirectingOutputStream output = new RedirectingOutputStream();
+        private final TransformationHandler handler;
+        private final MultiplexingHandler multiplexer;
+        private boolean used = false;
+
+        private Worker(CompiledTransformation transformation, int generation) {
+            this.transformation = transformation;
+            this.generation = generation;
+            XMLStreamWriter writer = Target.createXmlStreamWriter(output);
+            handler = transformation.build(null, new Target.XmlStreamWriterTarget(writer));
+            multiplexer = new MultiplexingHandler(List.of(handler));
+        }
+
+        private void transform(InputSource input, OutputStream os) {
+            if (used) {
+                parser.reset();
+                handler.reset(transformation.createVisitors());
+            }
+            used = true;
+
+            output.target = os;
+            try (MultiplexingHandler handler = multiplexer) {
+                Saxeed.parse(parser, input, handler);
+            } finally {
+                output.target = null;
+            }
+        }
+    }
+
+    /**
+     * Permit reusing the writer with different output streams.
+     */
+    private static final class RedirectingOutputStream extends OutputStream {
+        private OutputStream target;
+
+        @Override
+        public void write(int b) throws IOException {
+            target.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            target.write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            target.flush();
+        }
+
+        @Override
+        public void close() {
+            // The stream is NOT closed
+        }
+    }
+}
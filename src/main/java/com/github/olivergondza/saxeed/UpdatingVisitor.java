@@ -5,6 +5,9 @@ import com.github.olivergondza.saxeed.internal.CharChunk;
 
 /**
  * Visitor listening and modifying resulting stream.
+ *
+ * Visitors implementing {@link AutoCloseable} are closed once the transformation completes, fails or finishes early,
+ * so they can release resources held across the events.
  */
 public interface UpdatingVisitor {
 
@@ -22,4 +25,14 @@ public interface UpdatingVisitor {
 
     default void endDocument() throws FailedTransforming {
     }
+
+    /**
+     * Determine if the visitor does not need the rest of the document.
+     *
+     * Checked after every call of the visitor. Once done, the visitor is not called anymore, except for
+     * {@link #endDocument()}.
+     */
+    default boolean isDone() {
+        return false;
+    }
 }
@@ -0,0 +1,226 @@
+package com.github.olivergondza.saxeed.internal;
+
+import org.xml.sax.Attributes;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Attributes of a tag, read from SAX Attributes until modified.
+ *
+ * Reading does not copy anything. The first modification copies the attributes into a LinkedHashMap, preserving the
+ * order. As the parser reuses the SAX Attributes for the next element, they must be {@link #detach()}ed once the
+ * start of the element is processed.
+ */
+/*package*/ final class AttributeMap extends AbstractMap<String, String> {
+
+    private static final String[] NONE = new String[0];
+
+    /**
+     * Attributes of the parser, valid until the next element starts. Null when detached or modified.
+     */
+    private Attributes sax;
+
+    /**
+     * Attributes detached from the parser, qualified names and values interleaved. Null when not detached.
+     */
+    private String[] detached;
+
+    /**
+     * Modified attributes. Null when not modified.
+     */
+    private LinkedHashMap<String, String> modified;
+
+    /*package*/ AttributeMap(Attributes sax) {
+        this.sax = Objects.requireNonNull(sax);
+    }
+
+    /**
+     * Create modifiable attributes, not backed by the parser.
+     */
+    /*package*/ AttributeMap() {
+        this.modified = new LinkedHashMap<>();
+    }
+
+    /**
+     * Stop reading from SAX Attributes, before the parser reuses them.
+     */
+    /*package*/ void detach() {
+        if (sax == null) return;
+
+        int length = sax.getLength();
+        if (length == 0) {
+            detached = NONE;
+        } else {
+            detached = new String[length * 2];
+            for (int i = 0; i < length; i++) {
+                detached[i * 2] = sax.getQName(i);
+                detached[i * 2 + 1] = sax.getValue(i);
+            }
+        }
+        sax = null;
+    }
+
+    /*package*/ void write(XMLStreamWriter writer) throws XMLStreamException {
+        if (modified != null) {
+            for (Map.Entry<String, String> e : modified.entrySet()) {
+                writer.writeAttribute(e.getKey(), e.getValue());
+            }
+        } else {
+            for (int i = 0, length = length(); i < length; i++) {
+                writer.writeAttribute(qName(i), value(i));
+            }
+        }
+    }
+
+    private LinkedHashMap<String, String> modifiable() {
+        if (modified == null) {
+            int length = length();
+            modified = new LinkedHashMap<>(Math.max(16, length * 2));
+            for (int i = 0; i < length; i++) {
+                modified.put(qName(i), value(i));
+            }
+            sax = null;
+            detached = null;
+        }
+        return modified;
+    }
+
+    private int length() {
+        return sax != null ? sax.getLength() : detached.length / 2;
+    }
+
+    private String qName(int i) {
+        return sax != null ? sax.getQName(i) : detached[i * 2];
+    }
+
+    private String value(int i) {
+        return sax != null ? sax.getValue(i) : detached[i * 2 + 1];
+    }
+
+    private int indexOf(Object key) {
+        if (!(key instanceof String)) return -1;
+
+        if (sax != null) return sax.getIndex((String) key);
+
+        for (int i = 0; i < detached.length; i += 2) {
+            if (detached[i].equals(key)) return i / 2;
+        }
+        return -1;
+    }
+
+    @Override
+    public String get(Object key) {
+        if (modified != null) return modified.get(key);
+
+        int i = indexOf(key);
+        return i < 0 ? null : value(i);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        if (modified != null) return modified.containsKey(key);
+
+        return indexOf(key) >= 0;
+    }
+
+    @Override
+    public int size() {
+        if (modified != null) return modified.size();
+
+        return length();
+    }
+
+    @Override
+    public String put(String key, String value) {
+        return modifiable().put(key, value);
+    }
+
+    @Override
+    public String remove(Object key) {
+        if (modified == null && indexOf(key) < 0) return null;
+
+        return modifiable().remove(key);
+    }
+
+    @Override
+    public void putAll(Map<? extends String, ? extends String> m) {
+        modifiable().putAll(m);
+    }
+
+    @Override
+    public void clear() {
+        modifiable().clear();
+    }
+
+    @Override
+    public Set<Entry<String, String>> entrySet() {
+        if (modified != null) return modified.entrySet();
+
+        return new Unmodified();
+    }
+
+    /**
+     * Entries of the attributes not modified yet. Modifications through the view switch to the modified copy.
+     */
+    private final class Unmodified extends AbstractSet<Entry<String, String>> {
+
+        @Override
+        public Iterator<Entry<String, String>> iterator() {
+            if (modified != null) return modified.entrySet().iterator();
+
+            // Once modified through the iterator, it continues over the original attributes
+            Attributes sax = AttributeMap.this.sax;
+            String[] detached = AttributeMap.this.detached;
+            int length = length();
+
+            return new Iterator<>() {
+                private int next = 0;
+                private String last;
+
+                @Override
+                public boolean hasNext() {
+                    return next < length;
+                }
+
+                @Override
+                public Entry<String, String> next() {
+                    if (!hasNext()) throw new NoSuchElementException();
+
+                    String key = sax != null ? sax.getQName(next) : detached[next * 2];
+                    String value = sax != null ? sax.getValue(next) : detached[next * 2 + 1];
+                    next++;
+                    last = key;
+                    return new SimpleEntry<>(key, value) {
+                        @Override
+                        public String setValue(String value) {
+                            super.setValue(value);
+                            return modifiable().put(key, value);
+                        }
+                    };
+                }
+
+                @Override
+                public void remove() {
+                    if (last == null) throw new IllegalStateException();
+
+                    modifiable().remove(last);
+                    last = null;
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return AttributeMap.this.size();
+        }
+    }
+}
@@ -0,0 +1,464 @@
+package com.github.olivergondza.saxeed.internal;
+
+import com.github.olivergondza.saxeed.Target;
+
+import javax.xml.XMLConstants;
+import javax.xml.stream.XMLStreamException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Writer serializing the document in its canonical form, as it is written.
+ *
+ * Implements Canonical XML 1.1, or Exclusive XML Canonicalization, both without comments, of a whole document:
+ * <ul>
+ *     <li>No XML declaration or DTD, and no whitespace outside the document element, except the line breaks around the
+ *     processing instructions there.</li>
+ *     <li>Empty elements are written as start and end tag pairs.</li>
+ *     <li>Namespace declarations are written only where they change the namespaces in scope of the output, ordered by
+ *     prefix. In the exclusive mode, only where the element or its attributes use them.</li>
+ *     <li>Attributes are ordered by namespace URI and local name.</li>
+ *     <li>Text and attribute values are escaped as required.</li>
+ * </ul>
+ *
+ * Only the namespaces in scope and the names of the open elements are kept, so the memory needed is proportional to the
+ * depth of the document.
+ */
+public final class CanonicalXmlStreamWriter extends DelegatingXmlStreamWriter {
+
+    private static final Comparator<Attribute> NAMESPACE_ORDER = Comparator.comparing(a -> a.prefix);
+    private static final Comparator<Attribute> ATTRIBUTE_ORDER = Comparator.<Attribute, String>comparing(a -> a.uri)
+            .thenComparing(a -> a.local);
+
+    private final Writer out;
+    private final boolean exclusive;
+
+    /**
+     * Namespaces declared by the elements written.
+     */
+    private final NamespaceScopes declared = new NamespaceScopes();
+    /**
+     * Namespaces declared by the canonical output.
+     */
+    private final NamespaceScopes rendered = new NamespaceScopes();
+
+    /**
+     * Qualified names of the open elements.
+     */
+    private String[] names = new String[16];
+    private int depth = 0;
+    private boolean rootClosed = false;
+
+    /**
+     * Start tag to be written, once its namespaces and attributes are known. Null prefix or URI are to be resolved.
+     */
+    private boolean pending = false;
+    private String pendingPrefix;
+    private String pendingLocal;
+    private String pendingUri;
+    private final List<String> pendingDeclarations = new ArrayList<>();
+    private final List<Attribute> pendingAttributes = new ArrayList<>();
+    private final List<Attribute> namespaces = new ArrayList<>();
+
+    public CanonicalXmlStreamWriter(Writer out, boolean exclusive) {
+        // Serves the namespace context lookups and the properties
+        super(Target.createXmlStreamWriter(OutputStream.nullOutputStream()));
+        this.out = out;
+        this.exclusive = exclusive;
+    }
+
+    private static final class Attribute {
+        private String prefix;
+        private final String local;
+        private String uri;
+        private final String value;
+
+        private Attribute(String prefix, String local, String uri, String value) {
+            this.prefix = prefix;
+            this.local = local;
+            this.uri = uri;
+            this.value = value;
+        }
+    }
+
+    private void start(String prefix, String localName, String uri) throws XMLStreamException {
+        writePending();
+        declared.enter();
+        pending = true;
+        pendingPrefix = prefix;
+        pendingLocal = localName;
+        pendingUri = uri;
+    }
+
+    private void writePending() throws XMLStreamException {
+        if (!pending) return;
+        pending = false;
+
+        // Resolve the names
+        if (pendingPrefix == null) {
+            String prefix = declared.getPrefix(pendingUri);
+            pendingPrefix = prefix == null ? "" : prefix;
+        }
+        if (pendingUri == null) {
+            pendingUri = uriOf(pendingPrefix);
+        } else if (!pendingUri.equals(uriOf(pendingPrefix))) {
+            // Used without being declared
+            declare(pendingPrefix, pendingUri);
+        }
+        for (Attribute attr : pendingAttributes) {
+            if (attr.prefix == null) {
+                String prefix = declared.getPrefix(attr.uri);
+                attr.prefix = prefix == null ? "" : prefix;
+            }
+            if (attr.prefix.isEmpty()) {
+                // Unprefixed attributes are in no namespace
+                attr.uri = "";
+            } else if (attr.uri == null) {
+                attr.uri = uriOf(attr.prefix);
+            } else if (!attr.uri.equals(uriOf(attr.prefix))) {
+                declare(attr.prefix, attr.uri);
+            }
+        }
+
+        // Pick the namespace declarations to write
+        rendered.enter();
+        namespaces.clear();
+        if (exclusive) {
+            render(pendingPrefix);
+            for (Attribute attr : pendingAttributes) {
+                if (!attr.prefix.isEmpty()) {
+                    render(attr.prefix);
+                }
+            }
+        } else {
+            for (String prefix : pendingDeclarations) {
+                render(prefix);
+            }
+        }
+        namespaces.sort(NAMESPACE_ORDER);
+        pendingAttributes.sort(ATTRIBUTE_ORDER);
+
+        String name = pendingPrefix.isEmpty() ? pendingLocal : pendingPrefix + ":" + pendingLocal;
+        try {
+            out.write('<');
+            out.write(name);
+            for (Attribute ns : namespaces) {
+                out.write(ns.prefix.isEmpty() ? " xmlns" : " xmlns:");
+                out.write(ns.prefix);
+                writeValue(ns.uri);
+            }
+            for (Attribute attr : pendingAttributes) {
+                out.write(' ');
+                if (!attr.prefix.isEmpty()) {
+                    out.write(attr.prefix);
+                    out.write(':');
+                }
+                out.write(attr.local);
+                writeValue(attr.value);
+            }
+            out.write('>');
+        } catch (IOException e) {
+            throw new XMLStreamException("Failed writing element " + name, e);
+        }
+
+        if (depth == names.length) {
+            names = Arrays.copyOf(names, depth * 2);
+        }
+        names[depth++] = name;
+
+        pendingDeclarations.clear();
+        pendingAttributes.clear();
+    }
+
+    private String uriOf(String prefix) {
+        if (XMLConstants.XML_NS_PREFIX.equals(prefix)) return XMLConstants.XML_NS_URI;
+
+        String uri = declared.getUri(prefix);
+        return uri == null ? "" : uri;
+    }
+
+    private void declare(String prefix, String uri) {
+        if (prefix == null || XMLConstants.XMLNS_ATTRIBUTE.equals(prefix)) {
+            prefix = "";
+        }
+        if (XMLConstants.XML_NS_PREFIX.equals(prefix)) return;
+
+        declared.declare(uri, prefix);
+        pendingDeclarations.add(prefix);
+    }
+
+    /**
+     * Write the namespace declaration of the prefix, unless the output has it in scope already.
+     */
+    private void render(String prefix) {
+        if (XMLConstants.XML_NS_PREFIX.equals(prefix)) return;
+
+        String uri = uriOf(prefix);
+        String current = rendered.getUri(prefix);
+        if (current == null) {
+            current = "";
+        }
+        if (uri.equals(current)) return;
+        for (Attribute ns : namespaces) {
+            if (ns.prefix.equals(prefix)) return;
+        }
+
+        rendered.declare(uri, prefix);
+        namespaces.add(new Attribute(prefix, null, uri, null));
+    }
+
+    private void end() throws XMLStreamException {
+        writePending();
+        if (depth == 0) throw new XMLStreamException("No element to end");
+
+        String name = names[--depth];
+        names[depth] = null;
+        try {
+            out.write("</");
+            out.write(name);
+            out.write('>');
+        } catch (IOException e) {
+            throw new XMLStreamException("Failed writing element " + name, e);
+        }
+        rendered.leave();
+        declared.leave();
+        if (depth == 0) {
+            rootClosed = true;
+        }
+    }
+
+    private void writeValue(String value) throws IOException {
+        out.write("=\"");
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '&': out.write("&amp;"); break;
+                case '<': out.write("&lt;"); break;
+                case '"': out.write("&quot;"); break;
+                case '\t': out.write("&#x9;"); break;
+                case '\n': out.write("&#xA;"); break;
+                case '\r': out.write("&#xD;"); break;
+                default: out.write(c);
+            }
+        }
+        out.write('"');
+    }
+
+    private void writeText(String text) throws XMLStreamException {
+        writePending();
+        // No text outside the document element
+        if (depth == 0) return;
+
+        try {
+            for (int i = 0; i < text.length(); i++) {
+                writeText(text.charAt(i));
+            }
+        } catch (IOException e) {
+            throw new XMLStreamException("Failed writing text", e);
+        }
+    }
+
+    private void writeText(char[] text, int start, int len) throws XMLStreamException {
+        writePending();
+        if (depth == 0) return;
+
+        try {
+            for (int i = start; i < start + len; i++) {
+                writeText(text[i]);
+            }
+        } catch (IOException e) {
+            throw new XMLStreamException("Failed writing text", e);
+        }
+    }
+
+    private void writeText(char c) throws IOException {
+        switch (c) {
+            case '&': out.write("&amp;"); break;
+            case '<': out.write("&lt;"); break;
+            case '>': out.write("&gt;"); break;
+            case '\r': out.write("&#xD;"); break;
+            default: out.write(c);
+        }
+    }
+
+    @Override
+    public void writeStartElement(String localName) throws XMLStreamException {
+        start("", localName, null);
+    }
+
+    @Override
+    public void writeStartElement(String namespaceURI, String localName) throws XMLStreamException {
+        start(null, localName, namespaceURI);
+    }
+
+    @Override
+    public void writeStartElement(String prefix, String localName, String namespaceURI) throws XMLStreamException {
+        start(prefix, localName, namespaceURI);
+    }
+
+    @Override
+    public void writeEmptyElement(String localName) throws XMLStreamException {
+        start("", localName, null);
+        end();
+    }
+
+    @Override
+    public void writeEmptyElement(String namespaceURI, String localName) throws XMLStreamException {
+        start(null, localName, namespaceURI);
+        end();
+    }
+
+    @Override
+    public void writeEmptyElement(String prefix, String localName, String namespaceURI) throws XMLStreamException {
+        start(prefix, localName, namespaceURI);
+        end();
+    }
+
+    @Override
+    public void writeEndElement() throws XMLStreamException {
+        end();
+    }
+
+    @Override
+    public void writeEndDocument() throws XMLStreamException {
+        writePending();
+        while (depth > 0) {
+            end();
+        }
+    }
+
+    @Override
+    public void writeNamespace(String prefix, String namespaceURI) throws XMLStreamException {
+        if (!pending) throw new XMLStreamException("Namespace declared outside of start tag");
+
+        declare(prefix, namespaceURI);
+    }
+
+    @Override
+    public void writeDefaultNamespace(String namespaceURI) throws XMLStreamException {
+        writeNamespace("", namespaceURI);
+    }
+
+    @Override
+    public void writeAttribute(String localName, String value) throws XMLStreamException {
+        if (!pending) throw new XMLStreamException("Attribute written outside of start tag");
+
+        // Written by qualified name
+        int colon = localName.indexOf(':');
+        String prefix = colon < 0 ? "" : localName.substring(0, colon);
+        String local = colon < 0 ? localName : localName.substring(colon + 1);
+        if (XMLConstants.XMLNS_ATTRIBUTE.equals(prefix)) {
+            declare(local, value);
+        } else if (XMLConstants.XMLNS_ATTRIBUTE.equals(localName)) {
+            declare("", value);
+        } else {
+            pendingAttributes.add(new Attribute(prefix, local, null, value));
+        }
+    }
+
+    @Override
+    public void writeAttribute(String prefix, String namespaceURI, String localName, String value) throws XMLStreamException {
+        if (!pending) throw new XMLStreamException("Attribute written outside of start tag");
+
+        pendingAttributes.add(new Attribute(prefix, localName, namespaceURI, value));
+    }
+
+    @Override
+    public void writeAttribute(String namespaceURI, String localName, String value) throws XMLStreamException {
+        if (!pending) throw new XMLStreamException("Attribute written outside of start tag");
+
+        pendingAttributes.add(new Attribute(null, localName, namespaceURI, value));
+    }
+
+    @Override
+    public void writeCharacters(String text) throws XMLStreamException {
+        writeText(text);
+    }
+
+    @Override
+    public void writeCharacters(char[] text, int start, int len) throws XMLStreamException {
+        writeText(text, start, len);
+    }
+
+    @Override
+    public void writeCData(String data) throws XMLStreamException {
+        writeText(data);
+    }
+
+    @Override
+    public void writeComment(String data) throws XMLStreamException {
+        // Canonical form without comments
+        writePending();
+    }
+
+    @Override
+    public void writeProcessingInstruction(String target) throws XMLStreamException {
+        writeProcessingInstruction(target, "");
+    }
+
+    @Override
+    public void writeProcessingInstruction(String target, String data) throws XMLStreamException {
+        writePending();
+        try {
+            if (depth == 0 && rootClosed) {
+                out.write('\n');
+            }
+            out.write("<?");
+            out.write(target);
+            if (data != null && !data.isEmpty()) {
+                out.write(' ');
+                out.write(data);
+            }
+            out.write("?>");
+            if (depth == 0 && !rootClosed) {
+                out.write('\n');
+            }
+        } catch (IOException e) {
+            throw new XMLStreamException("Failed writing processing instruction " + target, e);
+        }
+    }
+
+    @Override
+    public void writeDTD(String dtd) {
+        // Not part of the canonical form
+    }
+
+    @Override
+    public void writeEntityRef(String name) throws XMLStreamException {
+        throw new XMLStreamException("Entity reference cannot be canonicalized: " + name);
+    }
+
+    @Override
+    public void writeStartDocument() {
+        // Not part of the canonical form
+    }
+
+    @Override
+    public void writeStartDocument(String version) {
+        // Not part of the canonical form
+    }
+
+    @Override
+    public void writeStartDocument(String encoding, String version) {
+        // Not part of the canonical form
+    }
+
+    @Override
+    public void flush() throws XMLStreamException {
+        try {
+            out.flush();
+        } catch (IOException e) {
+            throw new XMLStreamException("Failed flushing", e);
+        }
+    }
+
+    @Override
+    public void close() throws XMLStreamException {
+        flush();
+    }
+}
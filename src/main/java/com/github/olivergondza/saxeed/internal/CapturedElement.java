@@ -0,0 +1,29 @@
+package com.github.olivergondza.saxeed.internal;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Start tag captured as written, with its namespace declarations and attributes, to be written again elsewhere.
+ */
+public final class CapturedElement {
+
+    @FunctionalInterface
+    public interface Op {
+        void replay(XMLStreamWriter writer) throws XMLStreamException;
+    }
+
+    private final List<Op> ops = new ArrayList<>(4);
+
+    public void add(Op op) {
+        ops.add(op);
+    }
+
+    public void replay(XMLStreamWriter writer) throws XMLStreamException {
+        for (Op op : ops) {
+            op.replay(writer);
+        }
+    }
+}
@@ -1,9 +1,19 @@
 package com.github.olivergondza.saxeed.internal;
 
+import com.github.olivergondza.saxeed.TextMode;
+
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamWriter;
+import java.nio.CharBuffer;
+import java.util.Objects;
 
-public class CharChunk {
+/**
+ * Text chunk delivered to visitors.
+ *
+ * The characters can be read without creating a String, as the chunk is a CharSequence over the parser buffer. When
+ * modified in place, the content is copied into a buffer reused for all the chunks of the document.
+ */
+public class CharChunk implements CharSequence {
     private char[] origData;
     private int origStart;
     private int origLength;
@@ -13,6 +23,15 @@ public class CharChunk {
      */
     private String replacement;
 
+    /**
+     * Reusable buffer for text collected from multiple parser events, or modified in place.
+     */
+    private char[] buffer;
+
+    private boolean last;
+
+    private TextMode textMode = TextMode.FRAGMENTS;
+
     public CharChunk() {
     }
 
@@ -30,12 +49,142 @@ public class CharChunk {
         origLength = -1;
     }
 
+    /**
+     * Append text to the one collected so far, copying it to the internal buffer.
+     */
+    /*package*/ void append(char[] charsData, int charsStart, int charsLength) {
+        int length = length();
+        own(length + charsLength);
+        System.arraycopy(charsData, charsStart, buffer, length, charsLength);
+        origLength = length + charsLength;
+    }
+
+    /**
+     * Replace the characters between start (inclusive) and end (exclusive) with the text provided.
+     */
+    public CharChunk replace(int start, int end, CharSequence text) {
+        int length = length();
+        Objects.checkFromToIndex(start, end, length);
+
+        // Strings are used directly, other sequences might be backed by the buffer being modified
+        String str = text.toString();
+        int newLength = length - (end - start) + str.length();
+        own(newLength);
+        System.arraycopy(buffer, end, buffer, start + str.length(), length - end);
+        str.getChars(0, str.length(), buffer, start);
+        origLength = newLength;
+        return this;
+    }
+
+    public CharChunk append(CharSequence text) {
+        int length = length();
+        return replace(length, length, text);
+    }
+
+    /**
+     * Delete the characters between start (inclusive) and end (exclusive).
+     */
+    public CharChunk delete(int start, int end) {
+        return replace(start, end, "");
+    }
+
+    public CharChunk setCharAt(int index, char c) {
+        Objects.checkIndex(index, length());
+
+        own(length());
+        buffer[index] = c;
+        return this;
+    }
+
+    /**
+     * Move the content to the start of the buffer, making sure it has the capacity required.
+     */
+    private void own(int capacity) {
+        int length = length();
+        if (buffer == null || buffer.length < capacity) {
+            char[] grown = new char[Math.max(capacity, buffer == null ? 256 : buffer.length * 2)];
+            copyTo(grown, length);
+            buffer = grown;
+        } else if (origData != buffer || origStart != 0) {
+            copyTo(buffer, length);
+        }
+
+        origData = buffer;
+        origStart = 0;
+        origLength = length;
+        // The String is outdated once the buffer is modified
+        replacement = null;
+    }
+
+    private void copyTo(char[] target, int length) {
+        if (origData != null) {
+            System.arraycopy(origData, origStart, target, 0, length);
+        } else if (replacement != null) {
+            replacement.getChars(0, length, target, 0);
+        }
+    }
+
+    /**
+     * Determine if this is the last chunk of the text node.
+     *
+     * Always true in {@link TextMode#COALESCED}, and always false in {@link TextMode#FRAGMENTS}, where the end of the
+     * text node is not known.
+     */
+    public boolean isLast() {
+        return last;
+    }
+
+    /*package*/ void setLast(boolean last) {
+        this.last = last;
+    }
+
+    /**
+     * Get the mode the text is delivered in.
+     */
+    public TextMode getTextMode() {
+        return textMode;
+    }
+
+    /*package*/ void setTextMode(TextMode textMode) {
+        this.textMode = textMode;
+    }
+
     public void clear() {
         update(null);
     }
 
     public boolean isEmpty() {
-        return origData == null && replacement == null;
+        return length() == 0;
+    }
+
+    @Override
+    public int length() {
+        if (origData != null) return origLength;
+        if (replacement != null) return replacement.length();
+        return 0;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (origData != null) {
+            Objects.checkIndex(index, origLength);
+            return origData[origStart + index];
+        }
+        if (replacement != null) return replacement.charAt(index);
+
+        throw new IndexOutOfBoundsException("Cleared chunk has no characters: " + index);
+    }
+
+    /**
+     * Get the view of the characters, valid until the chunk is modified.
+     */
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        Objects.checkFromToIndex(start, end, length());
+
+        if (origData != null) return CharBuffer.wrap(origData, origStart + start, end - start);
+        if (replacement != null) return replacement.subSequence(start, end);
+        return "";
     }
 
     public String get() {
@@ -54,6 +203,12 @@ public class CharChunk {
         return replacement;
     }
 
+    @Override
+    public String toString() {
+        String str = get();
+        return str == null ? "" : str;
+    }
+
     /*package*/ void write(XMLStreamWriter writer) throws XMLStreamException {
         // origData are erased when content is updated
         if (origData != null) {
@@ -0,0 +1,61 @@
+package com.github.olivergondza.saxeed.internal;
+
+import com.github.olivergondza.saxeed.Subscribed;
+import com.github.olivergondza.saxeed.TagName;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Resolved mapping of tag names to visitors subscribed to them.
+ *
+ * Visitors are identified by their index in order of registration, so the same table can serve any number of
+ * concurrent transformations, each with its own visitor instances. The resolution is done once per tag name.
+ */
+public final class DispatchTable {
+
+    private static final int[] NONE = new int[0];
+
+    private final List<Subscribed> subscriptions;
+    private final ConcurrentHashMap<TagName, int[]> resolved = new ConcurrentHashMap<>();
+
+    public DispatchTable(List<Subscribed> subscriptions) {
+        this.subscriptions = List.copyOf(subscriptions);
+    }
+
+    /**
+     * Number of visitors the table dispatches to.
+     */
+    public int size() {
+        return subscriptions.size();
+    }
+
+    /**
+     * Get indices of visitors subscribed to given tag name, in order of their registration.
+     *
+     * The array returned is shared, and must not be modified.
+     */
+    /*package*/ int[] get(TagName tagName) {
+        int[] indices = resolved.get(tagName);
+        if (indices != null) return indices;
+
+        return resolved.computeIfAbsent(tagName, this::resolve);
+    }
+
+    private int[] resolve(TagName tagName) {
+        int count = 0;
+        int[] indices = new int[subscriptions.size()];
+        for (int i = 0; i < indices.length; i++) {
+            if (subscriptions.get(i).isSubscribed(tagName)) {
+                indices[count++] = i;
+            }
+        }
+
+        if (count == 0) return NONE;
+        if (count == indices.length) return indices;
+
+        int[] out = new int[count];
+        System.arraycopy(indices, 0, out, 0, count);
+        return out;
+    }
+}
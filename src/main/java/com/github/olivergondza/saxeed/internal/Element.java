@@ -1,7 +1,13 @@
 package com.github.olivergondza.saxeed.internal;
 
+import com.github.olivergondza.saxeed.ex.FailedReading;
+
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Collection;
 
 /**
  * Element introduced by visitor to be added to the output document.
@@ -26,4 +32,39 @@ public interface Element {
             writer.writeCharacters(text);
         }
     }
+
+    /**
+     * Text streamed from a reader, that is closed once written.
+     *
+     * Pending until written, so the readers not written get closed with the transformation.
+     */
+    final class TextReader implements SelfWriting, Closeable {
+        private final Reader text;
+        private final Collection<TextReader> pending;
+
+        public TextReader(Reader text, Collection<TextReader> pending) {
+            this.text = text;
+            this.pending = pending;
+            pending.add(this);
+        }
+
+        @Override
+        public void write(XMLStreamWriter writer) throws XMLStreamException {
+            char[] buffer = new char[8192];
+            try (TextReader closing = this) {
+                int read;
+                while ((read = text.read(buffer)) != -1) {
+                    writer.writeCharacters(buffer, 0, read);
+                }
+            } catch (IOException e) {
+                throw new FailedReading("Failed reading text to add", e);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            pending.remove(this);
+            text.close();
+        }
+    }
 }
@@ -0,0 +1,115 @@
+package com.github.olivergondza.saxeed.internal;
+
+import com.github.olivergondza.saxeed.FlushPolicy;
+import com.github.olivergondza.saxeed.TagName;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import java.util.BitSet;
+
+/**
+ * Flush the writer as the {@link FlushPolicy} requests.
+ */
+public final class FlushingWriter extends DelegatingXmlStreamWriter {
+
+    private final TagName record;
+    private final long intervalNanos;
+    private final long maxChars;
+
+    /**
+     * Depths of the elements that are the records.
+     */
+    private final BitSet records = new BitSet();
+    private int depth = 0;
+
+    private long chars = 0;
+    private long lastFlush;
+
+    public FlushingWriter(XMLStreamWriter delegate, FlushPolicy policy) {
+        super(delegate);
+        this.record = policy.getRecord();
+        this.intervalNanos = policy.getIntervalNanos();
+        this.maxChars = policy.getChars();
+        this.lastFlush = intervalNanos > 0 ? System.nanoTime() : 0;
+    }
+
+    private void start(String uri, String localName) {
+        depth++;
+        chars += localName.length() + 2;
+        if (record != null) {
+            records.set(depth, record.getLocal().equals(localName) && record.getNsUri().equals(uri));
+        }
+    }
+
+    private void written(long count) throws XMLStreamException {
+        chars += count;
+        if (maxChars > 0 && chars >= maxChars) {
+            flush();
+        } else if (intervalNanos > 0 && System.nanoTime() - lastFlush >= intervalNanos) {
+            flush();
+        }
+    }
+
+    @Override
+    public void writeStartElement(String localName) throws XMLStreamException {
+        delegate.writeStartElement(localName);
+        start("", localName);
+    }
+
+    @Override
+    public void writeStartElement(String namespaceURI, String localName) throws XMLStreamException {
+        delegate.writeStartElement(namespaceURI, localName);
+        start(namespaceURI, localName);
+    }
+
+    @Override
+    public void writeStartElement(String prefix, String localName, String namespaceURI) throws XMLStreamException {
+        delegate.writeStartElement(prefix, localName, namespaceURI);
+        start(namespaceURI, localName);
+    }
+
+    @Override
+    public void writeEndElement() throws XMLStreamException {
+        delegate.writeEndElement();
+        boolean wasRecord = record != null && records.get(depth);
+        depth--;
+        if (wasRecord) {
+            flush();
+        } else {
+            written(3);
+        }
+    }
+
+    @Override
+    public void writeAttribute(String localName, String value) throws XMLStreamException {
+        delegate.writeAttribute(localName, value);
+        chars += localName.length() + value.length() + 4;
+    }
+
+    @Override
+    public void writeNamespace(String prefix, String namespaceURI) throws XMLStreamException {
+        delegate.writeNamespace(prefix, namespaceURI);
+        chars += prefix.length() + namespaceURI.length() + 10;
+    }
+
+    @Override
+    public void writeCharacters(String text) throws XMLStreamException {
+        delegate.writeCharacters(text);
+        written(text.length());
+    }
+
+    @Override
+    public void writeCharacters(char[] text, int start, int len) throws XMLStreamException {
+        delegate.writeCharacters(text, start, len);
+        written(len);
+    }
+
+    @Override
+    public void flush() throws XMLStreamException {
+        delegate.flush();
+        chars = 0;
+        if (intervalNanos > 0) {
+            lastFlush = System.nanoTime();
+        }
+    }
+}
@@ -9,16 +9,48 @@ import org.xml.sax.helpers.DefaultHandler;
 import java.util.List;
 
 public class MultiplexingHandler extends DefaultHandler implements AutoCloseable {
-    private final List<TransformationHandler> handlers;
+    private final List<? extends VisitingHandler> handlers;
 
-    public MultiplexingHandler(List<TransformationHandler> handlers) {
+    /**
+     * Number of elements open inside content omitted by all the handlers.
+     *
+     * Events inside are not dispatched, as no handler would visit nor write them.
+     */
+    private int omittedDepth = 0;
+
+    public MultiplexingHandler(List<? extends VisitingHandler> handlers) {
         this.handlers = handlers;
     }
 
+    private boolean isContentOmitted() {
+        if (omittedDepth > 0) return true;
+
+        for (VisitingHandler handler : handlers) {
+            if (!handler.isContentOmitted()) return false;
+        }
+        return !handlers.isEmpty();
+    }
+
+    /**
+     * Stop parsing once all the handlers are finished.
+     */
+    private void checkFinished() throws SAXException {
+        if (handlers.isEmpty()) return;
+
+        for (VisitingHandler handler : handlers) {
+            if (!handler.isFinished()) return;
+        }
+
+        for (VisitingHandler handler : handlers) {
+            handler.endDocument();
+        }
+        throw new ParsingFinished();
+    }
+
     @Override
     public void close() throws FailedWriting {
         FailedWriting exception = null;
-        for (TransformationHandler handler : handlers) {
+        for (VisitingHandler handler : handlers) {
             try {
                 handler.close();
             } catch (Exception ex) {
@@ -35,77 +67,103 @@ public class MultiplexingHandler extends DefaultHandler implements AutoCloseable
 
     @Override
     public void setDocumentLocator(Locator locator) {
-        for (TransformationHandler handler : handlers) {
+        for (VisitingHandler handler : handlers) {
             handler.setDocumentLocator(locator);
         }
     }
 
     @Override
     public void startDocument() throws SAXException {
-        for (TransformationHandler handler : handlers) {
+        for (VisitingHandler handler : handlers) {
             handler.startDocument();
         }
+        checkFinished();
     }
 
     @Override
     public void endDocument() throws SAXException {
-        for (TransformationHandler handler : handlers) {
+        for (VisitingHandler handler : handlers) {
             handler.endDocument();
         }
     }
 
     @Override
     public void startPrefixMapping(String prefix, String uri) throws SAXException {
-        for (TransformationHandler handler : handlers) {
+        if (isContentOmitted()) return;
+
+        for (VisitingHandler handler : handlers) {
             handler.startPrefixMapping(prefix, uri);
         }
     }
 
     @Override
     public void endPrefixMapping(String prefix) throws SAXException {
-        for (TransformationHandler handler : handlers) {
+        if (isContentOmitted()) return;
+
+        for (VisitingHandler handler : handlers) {
             handler.endPrefixMapping(prefix);
         }
     }
 
     @Override
     public void startElement(String uri, String localName, String qName, Attributes attributes) throws SAXException {
-        for (TransformationHandler handler : handlers) {
+        if (isContentOmitted()) {
+            omittedDepth++;
+            return;
+        }
+
+        for (VisitingHandler handler : handlers) {
             handler.startElement(uri, localName, qName, attributes);
         }
+        checkFinished();
     }
 
     @Override
     public void endElement(String uri, String localName, String qName) throws SAXException {
-        for (TransformationHandler handler : handlers) {
+        if (omittedDepth > 0) {
+            omittedDepth--;
+            return;
+        }
+
+        for (VisitingHandler handler : handlers) {
             handler.endElement(uri, localName, qName);
         }
+        checkFinished();
     }
 
     @Override
     public void characters(char[] ch, int start, int length) throws SAXException {
-        for (TransformationHandler handler : handlers) {
+        if (isContentOmitted()) return;
+
+        for (VisitingHandler handler : handlers) {
             handler.characters(ch, start, length);
         }
+        checkFinished();
     }
 
     @Override
     public void ignorableWhitespace(char[] ch, int start, int length) throws SAXException {
-        for (TransformationHandler handler : handlers) {
+        if (isContentOmitted()) return;
+
+        for (VisitingHandler handler : handlers) {
             handler.ignorableWhitespace(ch, start, length);
         }
     }
 
     @Override
     public void processingInstruction(String target, String data) throws SAXException {
-        for (TransformationHandler handler : handlers) {
+        if (isContentOmitted()) return;
+
+        for (VisitingHandler handler : handlers) {
             handler.processingInstruction(target, data);
         }
     }
 
     @Override
     public void skippedEntity(String name) throws SAXException {
-        for (TransformationHandler handler : handlers) {
+        if (isContentOmitted()) return;
+
+        for (VisitingHandler handler : handlers) {
             handler.skippedEntity(name);
         }
     }
@@ -0,0 +1,125 @@
+package com.github.olivergondza.saxeed.internal;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Namespace bindings in scope of the open elements.
+ *
+ * Bindings of an element are declared after it is entered, and they are undone when it is left. Resolving a prefix of
+ * a namespace URI is a single map lookup, regardless of how deep the scopes are nested.
+ */
+/*package*/ final class NamespaceScopes {
+
+    /**
+     * Namespace URI to the prefix bound in the innermost scope.
+     */
+    private final Map<String, String> bound = new HashMap<>();
+
+    /**
+     * Prefix to the namespace URI bound in the innermost scope.
+     */
+    private final Map<String, String> prefixes = new HashMap<>();
+
+    /**
+     * Bindings replaced by the open scopes, to restore once left. Null for a URI or a prefix not bound before.
+     */
+    private String[] undoUris = new String[16];
+    private String[] undoPrefixes = new String[16];
+    private String[] undoPreviousPrefixes = new String[16];
+    private String[] undoPreviousUris = new String[16];
+    private int undoSize = 0;
+
+    /**
+     * Size of the undo log when the scope was entered.
+     */
+    private int[] scopes = new int[16];
+    private int depth = 0;
+
+    /*package*/ void enter() {
+        if (depth == scopes.length) {
+            scopes = Arrays.copyOf(scopes, depth * 2);
+        }
+        scopes[depth++] = undoSize;
+    }
+
+    /**
+     * Bind the namespace URI to the prefix, until the current scope is left.
+     */
+    /*package*/ void declare(String uri, String prefix) {
+        if (undoSize == undoUris.length) {
+            undoUris = Arrays.copyOf(undoUris, undoSize * 2);
+            undoPrefixes = Arrays.copyOf(undoPrefixes, undoSize * 2);
+            undoPreviousPrefixes = Arrays.copyOf(undoPreviousPrefixes, undoSize * 2);
+            undoPreviousUris = Arrays.copyOf(undoPreviousUris, undoSize * 2);
+        }
+        undoUris[undoSize] = uri;
+        undoPrefixes[undoSize] = prefix;
+        undoPreviousPrefixes[undoSize] = bound.put(uri, prefix);
+        undoPreviousUris[undoSize] = prefixes.put(prefix, uri);
+        undoSize++;
+    }
+
+    /**
+     * Bind all the prefixes to their namespace URIs, until the current scope is left.
+     */
+    /*package*/ void declareAll(Map<String, String> namespaces) {
+        for (Map.Entry<String, String> e : namespaces.entrySet()) {
+            declare(e.getValue(), e.getKey());
+        }
+    }
+
+    /*package*/ void leave() {
+        if (depth == 0) throw new AssertionError("Leaving namespace scope that was not entered");
+
+        int mark = scopes[--depth];
+        while (undoSize > mark) {
+            undoSize--;
+            restore(bound, undoUris[undoSize], undoPreviousPrefixes[undoSize]);
+            restore(prefixes, undoPrefixes[undoSize], undoPreviousUris[undoSize]);
+            undoUris[undoSize] = null;
+            undoPrefixes[undoSize] = null;
+            undoPreviousPrefixes[undoSize] = null;
+            undoPreviousUris[undoSize] = null;
+        }
+    }
+
+    private static void restore(Map<String, String> map, String key, String previous) {
+        if (previous == null) {
+            map.remove(key);
+        } else {
+            map.put(key, previous);
+        }
+    }
+
+    /**
+     * Get prefix bound to the namespace URI, or null if not in scope.
+     */
+    /*package*/ String getPrefix(String uri) {
+        return bound.get(uri);
+    }
+
+    /**
+     * Get namespace URI the prefix is bound to, or null if not in scope.
+     */
+    /*package*/ String getUri(String prefix) {
+        return prefixes.get(prefix);
+    }
+
+    /*package*/ void clear() {
+        bound.clear();
+        prefixes.clear();
+        Arrays.fill(undoUris, 0, undoSize, null);
+        Arrays.fill(undoPrefixes, 0, undoSize, null);
+        Arrays.fill(undoPreviousPrefixes, 0, undoSize, null);
+        Arrays.fill(undoPreviousUris, 0, undoSize, null);
+        undoSize = 0;
+        depth = 0;
+    }
+
+    @Override
+    public String toString() {
+        return bound.toString();
+    }
+}
@@ -0,0 +1,14 @@
+package com.github.olivergondza.saxeed.internal;
+
+import org.xml.sax.SAXException;
+
+/**
+ * Thrown from SAX handler to stop parsing, once none of the handlers needs the rest of the document.
+ */
+public final class ParsingFinished extends SAXException {
+    private static final long serialVersionUID = 1L;
+
+    public ParsingFinished() {
+        super("Parsing finished before the end of the document");
+    }
+}
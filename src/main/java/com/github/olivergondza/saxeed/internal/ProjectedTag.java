@@ -0,0 +1,210 @@
+package com.github.olivergondza.saxeed.internal;
+
+import com.github.olivergondza.saxeed.Bookmark;
+import com.github.olivergondza.saxeed.Tag;
+import com.github.olivergondza.saxeed.TagName;
+import org.xml.sax.Attributes;
+
+import java.io.Reader;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Read-only Tag of a projection.
+ *
+ * Only the tags inside the projection are created, so the parent is the closest ancestor inside the projection.
+ * All the modifications are rejected, as there is nothing written.
+ */
+/*package*/ final class ProjectedTag implements Tag, Tag.Start, Tag.Chars, Tag.End {
+
+    private final ProjectedTag parent;
+    private final TagName name;
+    private final Map<String, String> attributes;
+
+    /*package*/ ProjectedTag(ProjectedTag parent, TagName name, Attributes attrs) {
+        this.parent = parent;
+        this.name = Objects.requireNonNull(name);
+
+        // SAX attributes are reused by the parser, so they must be copied for the tag to be an ancestor
+        if (attrs.getLength() == 0) {
+            this.attributes = Map.of();
+        } else {
+            LinkedHashMap<String, String> attributes = new LinkedHashMap<>(attrs.getLength());
+            for (int i = 0; i < attrs.getLength(); i++) {
+                attributes.put(attrs.getQName(i), attrs.getValue(i));
+            }
+            this.attributes = Collections.unmodifiableMap(attributes);
+        }
+    }
+
+    /*package*/ ProjectedTag parent() {
+        return parent;
+    }
+
+    @Override
+    public TagName getName() {
+        return name;
+    }
+
+    @Override
+    public boolean isNamed(String name) {
+        return Objects.equals(name, this.name.getLocal());
+    }
+
+    @Override
+    public boolean isNamed(TagName name) {
+        return Objects.equals(name, this.name);
+    }
+
+    @Override
+    public Tag getParent() {
+        return parent;
+    }
+
+    @Override
+    public Tag getParent(String name) {
+        return parent != null && parent.isNamed(name)
+                ? parent
+                : null
+        ;
+    }
+
+    @Override
+    public Tag getParent(TagName name) {
+        return parent != null && parent.isNamed(name)
+                ? parent
+                : null
+        ;
+    }
+
+    @Override
+    public Tag getAncestor(String name) {
+        for (ProjectedTag tag = this.parent; tag != null; tag = tag.parent){
+            if (tag.isNamed(name)) return tag;
+        }
+        return null;
+    }
+
+    @Override
+    public Tag getAncestor(TagName name) {
+        for (ProjectedTag tag = this.parent; tag != null; tag = tag.parent){
+            if (tag.isNamed(name)) return tag;
+        }
+        return null;
+    }
+
+    /**
+     * Get unmodifiable attribute map.
+     */
+    @Override
+    public Map<String, String> getAttributes() {
+        return attributes;
+    }
+
+    @Override
+    public String getAttribute(String name) {
+        return attributes.get(name);
+    }
+
+    @Override
+    public Bookmark bookmark() {
+        throw readOnly();
+    }
+
+    @Override
+    public boolean isBookmarked(Bookmark bookmark) {
+        throw readOnly();
+    }
+
+    @Override
+    public boolean isBookmarked(List<Bookmark> bookmarks) {
+        throw readOnly();
+    }
+
+    @Override
+    public boolean isGenerated() {
+        return false;
+    }
+
+    @Override
+    public boolean isOmitted() {
+        return false;
+    }
+
+    @Override
+    public void skip() {
+        throw readOnly();
+    }
+
+    @Override
+    public void unwrap() {
+        throw readOnly();
+    }
+
+    @Override
+    public void empty() {
+        throw readOnly();
+    }
+
+    @Override
+    public boolean removeAttributes(Collection<String> attrs) {
+        throw readOnly();
+    }
+
+    @Override
+    public String removeAttribute(String attr) {
+        throw readOnly();
+    }
+
+    @Override
+    public Tag.Start addChild(String name) {
+        throw readOnly();
+    }
+
+    @Override
+    public Tag.Start addChild(TagName name) {
+        throw readOnly();
+    }
+
+    @Override
+    public Tag.Start wrapWith(String name) {
+        throw readOnly();
+    }
+
+    @Override
+    public Tag.Start wrapWith(TagName name) {
+        throw readOnly();
+    }
+
+    @Override
+    public void addText(String text) {
+        throw readOnly();
+    }
+
+    @Override
+    public void addText(Reader text) {
+        throw readOnly();
+    }
+
+    @Override
+    public void declareNamespace(String uri, String prefix) {
+        throw readOnly();
+    }
+
+    private UnsupportedOperationException readOnly() {
+        return new UnsupportedOperationException("Projected tags are read-only: " + this);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (ProjectedTag tag = this; tag != null; tag = tag.parent) {
+            sb.insert(0, ">").insert(0, tag.name.getQualifiedName());
+        }
+        return sb.toString();
+    }
+}
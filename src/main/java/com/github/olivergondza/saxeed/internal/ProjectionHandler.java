@@ -0,0 +1,194 @@
+package com.github.olivergondza.saxeed.internal;
+
+import com.github.olivergondza.saxeed.TagName;
+import com.github.olivergondza.saxeed.TextMode;
+import com.github.olivergondza.saxeed.UpdatingVisitor;
+import com.github.olivergondza.saxeed.ex.FailedWriting;
+import org.xml.sax.Attributes;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * SAX Handler to apply visitors to elements, without writing anything.
+ *
+ * Tags are only created for the elements subscribed by some of the visitors (the projection).
+ */
+public class ProjectionHandler extends VisitingHandler {
+
+    private final UpdatingVisitor[] visitors;
+
+    /**
+     * Visitors that do not need the rest of the document.
+     */
+    private final boolean[] done;
+    private int doneCount = 0;
+
+    private final DispatchTable dispatch;
+
+    /**
+     * Tags of the open elements. Null for elements outside the projection.
+     */
+    private ProjectedTag[] open = new ProjectedTag[32];
+    private int depth = 0;
+
+    /**
+     * Innermost open tag inside the projection.
+     */
+    private ProjectedTag currentTag;
+    private final CharChunk currentChars = new CharChunk();
+    private final TextMode textMode;
+
+    public ProjectionHandler(List<UpdatingVisitor> visitors, DispatchTable dispatch, TextMode textMode) {
+        if (visitors.size() != dispatch.size()) throw new IllegalArgumentException(
+                "Visitors do not match the dispatch table: " + visitors.size() + " != " + dispatch.size()
+        );
+        this.visitors = visitors.toArray(new UpdatingVisitor[0]);
+        this.done = new boolean[this.visitors.length];
+        this.dispatch = dispatch;
+        this.textMode = textMode;
+        this.currentChars.setTextMode(textMode);
+    }
+
+    @Override
+    /*package*/ boolean isContentOmitted() {
+        return false;
+    }
+
+    @Override
+    /*package*/ boolean isFinished() {
+        return doneCount == visitors.length;
+    }
+
+    private void checkDone(int i) {
+        if (!done[i] && visitors[i].isDone()) {
+            done[i] = true;
+            doneCount++;
+        }
+    }
+
+    @Override
+    public void startDocument() {
+        for (int i = 0; i < visitors.length; i++) {
+            visitors[i].startDocument();
+            checkDone(i);
+        }
+    }
+
+    @Override
+    public void startElement(String uri, String localName, String qName, Attributes attributes) {
+        flushChars();
+
+        if (depth == open.length) {
+            open = Arrays.copyOf(open, depth * 2);
+        }
+
+        TagName name = TagName.fromSaxArgs(uri, localName, qName);
+        int[] subscribed = dispatch.get(name);
+        if (subscribed.length == 0) {
+            open[depth++] = null;
+            return;
+        }
+
+        ProjectedTag tag = new ProjectedTag(currentTag, name, attributes);
+        open[depth++] = tag;
+        currentTag = tag;
+
+        for (int i : subscribed) {
+            if (done[i]) continue;
+
+            visitors[i].startTag(tag);
+            checkDone(i);
+        }
+    }
+
+    @Override
+    public void endElement(String uri, String localName, String qName) {
+        flushChars();
+
+        ProjectedTag tag = open[--depth];
+        open[depth] = null;
+        if (tag == null) return;
+
+        int[] subscribed = dispatch.get(tag.getName());
+        // Iterate reversed for closing tag
+        for (int i = subscribed.length - 1; i >= 0; i--) {
+            if (done[subscribed[i]]) continue;
+
+            visitors[subscribed[i]].endTag(tag);
+            checkDone(subscribed[i]);
+        }
+
+        currentTag = tag.parent();
+    }
+
+    @Override
+    public void characters(char[] ch, int start, int length) {
+        ProjectedTag tag = depth == 0 ? null : open[depth - 1];
+        if (tag == null) return;
+
+        switch (textMode) {
+            case FRAGMENTS:
+                currentChars.update(ch, start, length);
+                deliverChars(tag, false);
+                break;
+            case COALESCED:
+                currentChars.append(ch, start, length);
+                break;
+            case STREAMING:
+                // Hold the chunk until it is known if it is the last one
+                if (!currentChars.isEmpty()) {
+                    deliverChars(tag, false);
+                }
+                currentChars.append(ch, start, length);
+                break;
+            default: throw new AssertionError("Unknown text mode: " + textMode);
+        }
+    }
+
+    /**
+     * Deliver the text collected, as the text node has ended.
+     */
+    private void flushChars() {
+        if (!currentChars.isEmpty()) {
+            deliverChars(open[depth - 1], true);
+        }
+    }
+
+    private void deliverChars(ProjectedTag tag, boolean last) {
+        try {
+            currentChars.setLast(last);
+            for (int i : dispatch.get(tag.getName())) {
+                if (done[i]) continue;
+
+                visitors[i].chars(tag, currentChars);
+                checkDone(i);
+            }
+        } finally {
+            currentChars.clear();
+        }
+    }
+
+    @Override
+    public void ignorableWhitespace(char[] ch, int start, int length) {
+        flushChars();
+    }
+
+    @Override
+    public void processingInstruction(String target, String data) {
+        flushChars();
+    }
+
+    @Override
+    public void endDocument() {
+        for (UpdatingVisitor visitor : visitors) {
+            visitor.endDocument();
+        }
+    }
+
+    @Override
+    public void close() throws FailedWriting {
+        // Nothing written
+        closeVisitors(visitors);
+    }
+}
@@ -0,0 +1,60 @@
+package com.github.olivergondza.saxeed.internal;
+
+import com.github.olivergondza.saxeed.Subscribed;
+
+/**
+ * Restriction of the records to transform.
+ *
+ * Records are either sampled, keeping a deterministic fraction of them, and/or truncated after the first ones.
+ * Immutable, the counting is done by the handler for every document.
+ */
+public final class RecordLimits {
+
+    public static final RecordLimits NONE = new RecordLimits(null, -1, null, 100);
+
+    /**
+     * Records counted for the head. Null for no head.
+     */
+    /*package*/ final Subscribed headRecords;
+    /*package*/ final long head;
+
+    /**
+     * Records counted for the sample. Null for no sampling.
+     */
+    /*package*/ final Subscribed sampleRecords;
+    /*package*/ final int percent;
+
+    private RecordLimits(Subscribed headRecords, long head, Subscribed sampleRecords, int percent) {
+        this.headRecords = headRecords;
+        this.head = head;
+        this.sampleRecords = sampleRecords;
+        this.percent = percent;
+    }
+
+    public RecordLimits withHead(Subscribed records, long count) {
+        if (count < 0) throw new IllegalArgumentException("Head must not be negative: " + count);
+
+        return new RecordLimits(records, count, sampleRecords, percent);
+    }
+
+    public RecordLimits withSample(Subscribed records, int percent) {
+        if (percent < 0 || percent > 100) throw new IllegalArgumentException("Sample must be 0-100%: " + percent);
+
+        return new RecordLimits(headRecords, head, records, percent);
+    }
+
+    public boolean isLimited() {
+        return headRecords != null || sampleRecords != null;
+    }
+
+    /**
+     * Determine if the record is part of the sample.
+     *
+     * The records kept are spread evenly, starting with the first one.
+     *
+     * @param index Zero-based index of the sampled record in the document.
+     */
+    /*package*/ boolean isSampled(long index) {
+        return (index * percent) % 100 < percent;
+    }
+}
@@ -0,0 +1,305 @@
+package com.github.olivergondza.saxeed.internal;
+
+import com.github.olivergondza.saxeed.Subscribed;
+import com.github.olivergondza.saxeed.TagName;
+import com.github.olivergondza.saxeed.ex.FailedTransforming;
+import com.github.olivergondza.saxeed.ex.FailedWriting;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
+import org.xml.sax.helpers.DefaultHandler;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+/**
+ * SAX Handler cutting the document to records, to be transformed in parallel.
+ *
+ * The content outside the records is transformed by the parser thread. Each record subtree is captured and transformed
+ * in the executor, by the handler of given worker thread. The output of both is written to the target writer in the
+ * document order.
+ */
+public final class RecordSplitter extends DefaultHandler implements AutoCloseable {
+
+    private final Subscribed records;
+    private final XMLStreamWriter target;
+    private final Function<XMLStreamWriter, TransformationHandler> handlers;
+    private final ExecutorService executor;
+    private final int maxInFlight;
+
+    private final RecordingXmlStreamWriter outerWriter = new RecordingXmlStreamWriter();
+    private final TransformationHandler outer;
+
+    private final ThreadLocal<Worker> workers = new ThreadLocal<>();
+    private final List<Worker> allWorkers = Collections.synchronizedList(new ArrayList<>());
+
+    /**
+     * Output segments in document order, record ones possibly still being transformed.
+     */
+    private final ArrayDeque<Future<RecordingXmlStreamWriter.Recording>> inFlight = new ArrayDeque<>();
+
+    /**
+     * Elements outside records currently open.
+     */
+    private final ArrayList<Ancestor> ancestors = new ArrayList<>();
+    private List<Ancestor> ancestorsSnapshot = null;
+    private final LinkedHashMap<String, String> pendingPrefixes = new LinkedHashMap<>();
+
+    private SaxRecording record;
+    private int recordDepth;
+
+    /**
+     * @param records Tags to be transformed as independent records.
+     * @param target Writer to write the resulting document to.
+     * @param handlers Factory for the handlers writing to writer provided.
+     * @param executor Executor to transform records in.
+     * @param maxInFlight Maximal number of records read and not yet written.
+     */
+    public RecordSplitter(
+            Subscribed records,
+            XMLStreamWriter target,
+            Function<XMLStreamWriter, TransformationHandler> handlers,
+            ExecutorService executor,
+            int maxInFlight
+    ) {
+        this.records = records;
+        this.target = target;
+        this.handlers = handlers;
+        this.executor = executor;
+        this.maxInFlight = maxInFlight;
+        this.outer = handlers.apply(outerWriter);
+    }
+
+    /**
+     * Element enclosing the record.
+     */
+    /*package*/ static final class Ancestor {
+        /*package*/ final TagName name;
+        /*package*/ final Attributes attributes;
+        /*package*/ final Map<String, String> namespaces;
+
+        private Ancestor(TagName name, Attributes attributes, Map<String, String> namespaces) {
+            this.name = name;
+            this.attributes = attributes;
+            this.namespaces = namespaces;
+        }
+    }
+
+    @Override
+    public void startDocument() {
+        outer.startDocument();
+    }
+
+    @Override
+    public void endDocument() {
+        outer.endDocument();
+
+        sealOuterSegment();
+        writeCompleted(0);
+
+        synchronized (allWorkers) {
+            for (Worker worker : allWorkers) {
+                worker.handler.endDocument();
+            }
+        }
+    }
+
+    @Override
+    public void startPrefixMapping(String prefix, String uri) {
+        if (record != null) {
+            record.startPrefixMapping(prefix, uri);
+        } else {
+            pendingPrefixes.put(prefix, uri);
+        }
+    }
+
+    @Override
+    public void startElement(String uri, String localName, String qName, Attributes attributes) {
+        if (record != null) {
+            recordDepth++;
+            record.startElement(uri, localName, qName, attributes);
+            return;
+        }
+
+        TagName name = TagName.fromSaxArgs(uri, localName, qName);
+        if (records.isSubscribed(name) && !outer.isContentOmitted()) {
+            record = new SaxRecording();
+            recordDepth = 1;
+            for (Map.Entry<String, String> e : pendingPrefixes.entrySet()) {
+                record.startPrefixMapping(e.getKey(), e.getValue());
+            }
+            pendingPrefixes.clear();
+            record.startElement(uri, localName, qName, attributes);
+            return;
+        }
+
+        for (Map.Entry<String, String> e : pendingPrefixes.entrySet()) {
+            outer.startPrefixMapping(e.getKey(), e.getValue());
+        }
+        ancestors.add(new Ancestor(
+                name, new AttributesImpl(attributes), pendingPrefixes.isEmpty() ? Map.of() : Map.copyOf(pendingPrefixes)
+        ));
+        ancestorsSnapshot = null;
+        pendingPrefixes.clear();
+
+        outer.startElement(uri, localName, qName, attributes);
+    }
+
+    @Override
+    public void endElement(String uri, String localName, String qName) {
+        if (record == null) {
+            outer.endElement(uri, localName, qName);
+            ancestors.remove(ancestors.size() - 1);
+            ancestorsSnapshot = null;
+            return;
+        }
+
+        record.endElement(uri, localName, qName);
+        if (--recordDepth == 0) {
+            submit(record);
+            record = null;
+        }
+    }
+
+    @Override
+    public void characters(char[] ch, int start, int length) {
+        if (record != null) {
+            record.characters(ch, start, length);
+        } else {
+            outer.characters(ch, start, length);
+        }
+    }
+
+    @Override
+    public void ignorableWhitespace(char[] ch, int start, int length) {
+        if (record != null) {
+            record.ignorableWhitespace(ch, start, length);
+        } else {
+            outer.ignorableWhitespace(ch, start, length);
+        }
+    }
+
+    @Override
+    public void processingInstruction(String target, String data) {
+        if (record != null) {
+            record.processingInstruction(target, data);
+        } else {
+            outer.processingInstruction(target, data);
+        }
+    }
+
+    private void submit(SaxRecording record) {
+        // Everything written outside records before this one
+        sealOuterSegment();
+
+        if (ancestorsSnapshot == null) {
+            ancestorsSnapshot = List.copyOf(ancestors);
+        }
+        List<Ancestor> context = ancestorsSnapshot;
+        inFlight.add(executor.submit(() -> transformRecord(record, context)));
+
+        writeCompleted(maxInFlight);
+    }
+
+    private RecordingXmlStreamWriter.Recording transformRecord(SaxRecording record, List<Ancestor> context) throws SAXException {
+        Worker worker = workers.get();
+        if (worker == null) {
+            worker = new Worker();
+            workers.set(worker);
+            allWorkers.add(worker);
+        }
+
+        try {
+            worker.handler.startDetached(context);
+            record.replay(worker.handler);
+            worker.handler.endDetached();
+            return worker.writer.drain();
+        } catch (Throwable ex) {
+            // Handler state is undefined after failure
+            workers.remove();
+            allWorkers.remove(worker);
+            try {
+                worker.handler.closeResources();
+            } catch (FailedWriting closing) {
+                ex.addSuppressed(closing);
+            }
+            throw ex;
+        }
+    }
+
+    private void sealOuterSegment() {
+        RecordingXmlStreamWriter.Recording segment = outerWriter.drain();
+        if (!segment.isEmpty()) {
+            inFlight.add(CompletableFuture.completedFuture(segment));
+        }
+    }
+
+    /**
+     * Write finished segments, waiting for those in progress until there are at most `limit` left.
+     */
+    private void writeCompleted(int limit) {
+        while (!inFlight.isEmpty() && (inFlight.peek().isDone() || inFlight.size() > limit)) {
+            RecordingXmlStreamWriter.Recording recording = await(inFlight.poll());
+            try {
+                recording.replay(target);
+            } catch (XMLStreamException e) {
+                throw new FailedWriting(TransformationHandler.ERROR_WRITING_TO_OUTPUT_FILE, e);
+            }
+        }
+    }
+
+    private static RecordingXmlStreamWriter.Recording await(Future<RecordingXmlStreamWriter.Recording> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new FailedTransforming("Interrupted waiting for record transformation", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new FailedTransforming("Failed transforming record", cause);
+        }
+    }
+
+    @Override
+    public void close() throws FailedWriting {
+        for (Future<?> future : inFlight) {
+            future.cancel(true);
+        }
+        inFlight.clear();
+
+        try {
+            synchronized (allWorkers) {
+                for (Worker worker : allWorkers) {
+                    worker.handler.closeResources();
+                }
+            }
+        } finally {
+            outer.close();
+        }
+    }
+
+    /**
+     * Handler of a particular worker thread, writing into its own recorder.
+     */
+    private final class Worker {
+        private final RecordingXmlStreamWriter writer = new RecordingXmlStreamWriter();
+        private final TransformationHandler handler = handlers.apply(writer);
+
+        private Worker() {
+            handler.startDocument();
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package com.github.olivergondza.saxeed.internal;
+
+import javax.xml.namespace.NamespaceContext;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * XMLStreamWriter capturing the calls, to be replayed on a real writer later, possibly in a different thread.
+ *
+ * Namespace context is not tracked, so the writer cannot be queried for prefixes.
+ */
+public final class RecordingXmlStreamWriter implements XMLStreamWriter {
+
+    private List<Op> ops = new ArrayList<>();
+
+    /**
+     * Take the operations recorded so far, and start recording anew.
+     */
+    public Recording drain() {
+        Recording recording = new Recording(ops);
+        ops = new ArrayList<>();
+        return recording;
+    }
+
+    /**
+     * Captured writer operations.
+     */
+    public static final class Recording {
+        private final List<Op> ops;
+
+        private Recording(List<Op> ops) {
+            this.ops = ops;
+        }
+
+        public boolean isEmpty() {
+            return ops.isEmpty();
+        }
+
+        public void replay(XMLStreamWriter writer) throws XMLStreamException {
+            for (Op op : ops) {
+                op.replay(writer);
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface Op {
+        void replay(XMLStreamWriter writer) throws XMLStreamException;
+    }
+
+    @Override
+    public void writeStartElement(String localName) {
+        ops.add(w -> w.writeStartElement(localName));
+    }
+
+    @Override
+    public void writeStartElement(String namespaceURI, String localName) {
+        ops.add(w -> w.writeStartElement(namespaceURI, localName));
+    }
+
+    @Override
+    public void writeStartElement(String prefix, String localName, String namespaceURI) {
+        ops.add(w -> w.writeStartElement(prefix, localName, namespaceURI));
+    }
+
+    @Override
+    public void writeEmptyElement(String namespaceURI, String localName) {
+        ops.add(w -> w.writeEmptyElement(namespaceURI, localName));
+    }
+
+    @Override
+    public void writeEmptyElement(String prefix, String localName, String namespaceURI) {
+        ops.add(w -> w.writeEmptyElement(prefix, localName, namespaceURI));
+    }
+
+    @Override
+    public void writeEmptyElement(String localName) {
+        ops.add(w -> w.writeEmptyElement(localName));
+    }
+
+    @Override
+    public void writeEndElement() {
+        ops.add(XMLStreamWriter::writeEndElement);
+    }
+
+    @Override
+    public void writeEndDocument() {
+        ops.add(XMLStreamWriter::writeEndDocument);
+    }
+
+    @Override
+    public void close() {
+        // Nothing to release
+    }
+
+    @Override
+    public void flush() {
+        // Nothing to flush, the operations are written on replay
+    }
+
+    @Override
+    public void writeAttribute(String localName, String value) {
+        ops.add(w -> w.writeAttribute(localName, value));
+    }
+
+    @Override
+    public void writeAttribute(String prefix, String namespaceURI, String localName, String value) {
+        ops.add(w -> w.writeAttribute(prefix, namespaceURI, localName, value));
+    }
+
+    @Override
+    public void writeAttribute(String namespaceURI, String localName, String value) {
+        ops.add(w -> w.writeAttribute(namespaceURI, localName, value));
+    }
+
+    @Override
+    public void writeNamespace(String prefix, String namespaceURI) {
+        ops.add(w -> w.writeNamespace(prefix, namespaceURI));
+    }
+
+    @Override
+    public void writeDefaultNamespace(String namespaceURI) {
+        ops.add(w -> w.writeDefaultNamespace(namespaceURI));
+    }
+
+    @Override
+    public void writeComment(String data) {
+        ops.add(w -> w.writeComment(data));
+    }
+
+    @Override
+    public void writeProcessingInstruction(String target) {
+        ops.add(w -> w.writeProcessingInstruction(target));
+    }
+
+    @Override
+    public void writeProcessingInstruction(String target, String data) {
+        ops.add(w -> w.writeProcessingInstruction(target, data));
+    }
+
+    @Override
+    public void writeCData(String data) {
+        ops.add(w -> w.writeCData(data));
+    }
+
+    @Override
+    public void writeDTD(String dtd) {
+        ops.add(w -> w.writeDTD(dtd));
+    }
+
+    @Override
+    public void writeEntityRef(String name) {
+        ops.add(w -> w.writeEntityRef(name));
+    }
+
+    @Override
+    public void writeStartDocument() {
+        ops.add(XMLStreamWriter::writeStartDocument);
+    }
+
+    @Override
+    public void writeStartDocument(String version) {
+        ops.add(w -> w.writeStartDocument(version));
+    }
+
+    @Override
+    public void writeStartDocument(String encoding, String version) {
+        ops.add(w -> w.writeStartDocument(encoding, version));
+    }
+
+    @Override
+    public void writeCharacters(String text) {
+        ops.add(w -> w.writeCharacters(text));
+    }
+
+    @Override
+    public void writeCharacters(char[] text, int start, int len) {
+        // The array is reused by the caller
+        String copy = new String(text, start, len);
+        ops.add(w -> w.writeCharacters(copy));
+    }
+
+    @Override
+    public void setPrefix(String prefix, String uri) {
+        ops.add(w -> w.setPrefix(prefix, uri));
+    }
+
+    @Override
+    public void setDefaultNamespace(String uri) {
+        ops.add(w -> w.setDefaultNamespace(uri));
+    }
+
+    @Override
+    public String getPrefix(String uri) {
+        throw new UnsupportedOperationException("Namespace context is not tracked while recording");
+    }
+
+    @Override
+    public void setNamespaceContext(NamespaceContext context) {
+        throw new UnsupportedOperationException("Namespace context is not tracked while recording");
+    }
+
+    @Override
+    public NamespaceContext getNamespaceContext() {
+        throw new UnsupportedOperationException("Namespace context is not tracked while recording");
+    }
+
+    @Override
+    public Object getProperty(String name) {
+        throw new IllegalArgumentException("Property not supported: " + name);
+    }
+}
@@ -0,0 +1,74 @@
+package com.github.olivergondza.saxeed.internal;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * SAX events captured to be replayed later, possibly in a different thread.
+ */
+/*package*/ final class SaxRecording {
+
+    private final List<Event> events = new ArrayList<>();
+
+    /**
+     * Text content of all the events, to avoid allocating an array for each.
+     */
+    private char[] chars = new char[256];
+    private int charsLength = 0;
+
+    /*package*/ void startPrefixMapping(String prefix, String uri) {
+        events.add(h -> h.startPrefixMapping(prefix, uri));
+    }
+
+    /*package*/ void startElement(String uri, String localName, String qName, Attributes attributes) {
+        // Parser reuses the instance
+        AttributesImpl copy = new AttributesImpl(attributes);
+        events.add(h -> h.startElement(uri, localName, qName, copy));
+    }
+
+    /*package*/ void endElement(String uri, String localName, String qName) {
+        events.add(h -> h.endElement(uri, localName, qName));
+    }
+
+    /*package*/ void characters(char[] ch, int start, int length) {
+        int offset = append(ch, start, length);
+        events.add(h -> h.characters(chars, offset, length));
+    }
+
+    /*package*/ void ignorableWhitespace(char[] ch, int start, int length) {
+        int offset = append(ch, start, length);
+        events.add(h -> h.ignorableWhitespace(chars, offset, length));
+    }
+
+    /*package*/ void processingInstruction(String target, String data) {
+        events.add(h -> h.processingInstruction(target, data));
+    }
+
+    /*package*/ void replay(ContentHandler handler) throws SAXException {
+        for (Event event : events) {
+            event.replay(handler);
+        }
+    }
+
+    private int append(char[] ch, int start, int length) {
+        if (charsLength + length > chars.length) {
+            chars = Arrays.copyOf(chars, Math.max(chars.length * 2, charsLength + length));
+        }
+        System.arraycopy(ch, start, chars, charsLength, length);
+
+        int offset = charsLength;
+        charsLength += length;
+        return offset;
+    }
+
+    @FunctionalInterface
+    private interface Event {
+        void replay(ContentHandler handler) throws SAXException;
+    }
+}
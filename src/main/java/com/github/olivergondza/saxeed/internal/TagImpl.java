@@ -5,6 +5,9 @@ import com.github.olivergondza.saxeed.Tag;
 import com.github.olivergondza.saxeed.TagName;
 import org.xml.sax.Attributes;
 
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.Reader;
 import java.util.*;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
@@ -25,7 +28,6 @@ import java.util.stream.Collectors;
     private /*almost final*/ TagImpl parent;
 
     private final TagName name;
-    private final Attributes attrs;
 
     /**
      * The element is not part of the input stream, but it has been generated by a visitor.
@@ -37,10 +39,10 @@ import java.util.stream.Collectors;
      *
      * Preserve insertion order.
      */
-    private LinkedHashMap<String, String> attributes;
+    private final AttributeMap attributes;
 
     /**
-     * List of namespaces declared on this tag.
+     * Namespaces declared on this tag, prefix to URI. The same URI can be declared for more prefixes.
      */
     private Map<String, String> namespaces;
 
@@ -54,6 +56,11 @@ import java.util.stream.Collectors;
      */
     private final List<Element> childElements = new ArrayList<>();
 
+    /**
+     * Readers of the transformation added as text, and not written yet.
+     */
+    private final Set<Element.TextReader> pendingReaders;
+
     /**
      *  Element that current element should be surrounded with.
      */
@@ -65,12 +72,12 @@ import java.util.stream.Collectors;
     /**
      * Create generated Tag.
      */
-    private TagImpl(TagImpl parent, TagName name) {
+    private TagImpl(TagImpl parent, TagName name, Set<Element.TextReader> pendingReaders) {
         this.parent = parent;
+        this.pendingReaders = pendingReaders;
         this.name = Objects.requireNonNull(name);
         // No SAX attrs, setting attributes right away
-        this.attrs = null;
-        this.attributes = new LinkedHashMap<>();
+        this.attributes = new AttributeMap();
         this.namespaces = null;
         this.generated = true;
         this.bookmark = initBookmark();
@@ -80,10 +87,13 @@ import java.util.stream.Collectors;
     /**
      * Create Tag from input.
      */
-    public TagImpl(TagImpl parent, TagName name, Attributes attrs, Map<String, String> namespaces) {
+    public TagImpl(
+            TagImpl parent, TagName name, Attributes attrs, Map<String, String> namespaces, Set<Element.TextReader> pendingReaders
+    ) {
         this.parent = parent;
+        this.pendingReaders = pendingReaders;
         this.name = Objects.requireNonNull(name);
-        this.attrs = Objects.requireNonNull(attrs);
+        this.attributes = new AttributeMap(attrs);
         // Create defensive copy in either case
         this.namespaces = namespaces.isEmpty() ? null : new LinkedHashMap<>(namespaces);
         this.generated = false;
@@ -113,16 +123,25 @@ import java.util.stream.Collectors;
 
     @Override
     public Map<String, String> getAttributes() {
-        if (attributes == null) {
-            attributes = new LinkedHashMap<>(attrs.getLength());
-            for (int i = 0; i < attrs.getLength(); i++) {
-                attributes.put(attrs.getQName(i), attrs.getValue(i));
-            }
-        }
-
         return attributes;
     }
 
+    @Override
+    public String getAttribute(String name) {
+        return attributes.get(name);
+    }
+
+    /**
+     * Stop reading the attributes from SAX Attributes, that the parser reuses for the next element.
+     */
+    /*package*/ void detachAttributes() {
+        attributes.detach();
+    }
+
+    /*package*/ void writeAttributes(XMLStreamWriter writer) throws XMLStreamException {
+        attributes.write(writer);
+    }
+
     /**
      * Determine if tag have certain local name.
      *
@@ -227,7 +246,7 @@ import java.util.stream.Collectors;
 
     @Override
     public TagImpl addChild(TagName name) {
-        TagImpl child = new TagImpl(this, name);
+        TagImpl child = new TagImpl(this, name, pendingReaders);
         childElements.add(child);
         return child;
     }
@@ -236,6 +255,11 @@ import java.util.stream.Collectors;
         childElements.add(new Element.TextString(text));
     }
 
+    @Override
+    public void addText(Reader text) {
+        childElements.add(new Element.TextReader(text, pendingReaders));
+    }
+
     @Override
     public TagImpl wrapWith(String name) {
         return wrapWith(TagName.noNs(name));
@@ -243,7 +267,7 @@ import java.util.stream.Collectors;
 
     @Override
     public TagImpl wrapWith(TagName name) {
-        this.wrapWith = new TagImpl(parent, name);
+        this.wrapWith = new TagImpl(parent, name, pendingReaders);
         return this.wrapWith;
     }
 
@@ -255,7 +279,7 @@ import java.util.stream.Collectors;
         if (namespaces == null) {
             namespaces = new LinkedHashMap<>();
         }
-        namespaces.put(uri, prefix);
+        namespaces.put(prefix, uri);
     }
 
     /*package*/ Map<String, String> getNamespaces() {
@@ -1,30 +1,37 @@
 package com.github.olivergondza.saxeed.internal;
 
+import com.github.olivergondza.saxeed.FinishPolicy;
+import com.github.olivergondza.saxeed.FlushPolicy;
+import com.github.olivergondza.saxeed.NamespaceDeclarations;
 import com.github.olivergondza.saxeed.Saxeed;
-import com.github.olivergondza.saxeed.Subscribed;
 import com.github.olivergondza.saxeed.TagName;
+import com.github.olivergondza.saxeed.TextMode;
 import com.github.olivergondza.saxeed.Target;
 import com.github.olivergondza.saxeed.UpdatingVisitor;
 import com.github.olivergondza.saxeed.ex.FailedTransforming;
 import com.github.olivergondza.saxeed.ex.FailedWriting;
 import org.xml.sax.Attributes;
-import org.xml.sax.helpers.DefaultHandler;
 
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.stream.Collectors;
 
 /**
  * SAX Handler to apply visitors to elements and generate resulting document.
  */
-public class TransformationHandler extends DefaultHandler implements AutoCloseable {
+public class TransformationHandler extends VisitingHandler {
 
     private static final Logger LOGGER = Logger.getLogger(TransformationHandler.class.getName());
 
@@ -34,8 +41,42 @@ public class TransformationHandler extends DefaultHandler implements AutoCloseab
      * List of visitors to perform operation for every tag.
      * New instances create for every file, so they can be stateful.
      */
-    private final LinkedHashMap<UpdatingVisitor, Subscribed> visitors;
-    private final Map<TagName, List<UpdatingVisitor>> visitorCache = new HashMap<>();
+    private final UpdatingVisitor[] visitors;
+
+    /**
+     * Visitor subscriptions resolved by tag name, possibly shared with other handlers.
+     */
+    private final DispatchTable dispatch;
+
+    /**
+     * Visitors that do not need the rest of the document.
+     */
+    private final boolean[] done;
+    private int doneCount = 0;
+
+    private final FinishPolicy finishPolicy;
+
+    private final RecordLimits limits;
+
+    private final TextMode textMode;
+    private final NamespaceDeclarations namespaceDeclarations;
+    private long headCount = 0;
+    private long sampleCount = 0;
+
+    /**
+     * The head of the records was transformed, and the document is to be closed.
+     */
+    private boolean headReached = false;
+
+    /**
+     * All visitors are done, and the rest of the document is ignored.
+     */
+    private boolean finished = false;
+
+    /**
+     * Processing a subtree, that cannot be finished on its own.
+     */
+    private boolean detached = false;
 
     private final XMLStreamWriter writer;
     private final Target target;
@@ -45,48 +86,227 @@ public class TransformationHandler extends DefaultHandler implements AutoCloseab
 
     private final LinkedHashMap<String, String> currentNsMapping = new LinkedHashMap<>();
 
-    private final Map<String, String> documentNamespaces = new HashMap<>();
+    /**
+     * Readers added as text by the visitors, and not written yet.
+     */
+    private final Set<Element.TextReader> pendingReaders = new LinkedHashSet<>();
+
+    /**
+     * Namespaces in scope of the tags being processed, declared by the input or by the visitors.
+     */
+    private final NamespaceScopes namespaces = new NamespaceScopes();
+
+    /**
+     * Namespaces declared in the output, in scope of the tags written.
+     */
+    private final NamespaceScopes outputNamespaces = new NamespaceScopes();
 
     private final Map<String, AtomicInteger> writtenBookmarks = new HashMap<>();
 
+    /**
+     * Number of elements open inside a tag with its content omitted.
+     *
+     * Such elements are never visited nor written, so they are only counted to find the end of the omitted content.
+     */
+    private int omittedDepth = 0;
+
     public TransformationHandler(
             Saxeed saxeed,
-            Target target, LinkedHashMap<UpdatingVisitor, Subscribed> visitors
+            Target target, List<UpdatingVisitor> visitors, DispatchTable dispatch,
+            FinishPolicy finishPolicy, RecordLimits limits, TextMode textMode,
+            NamespaceDeclarations namespaceDeclarations, FlushPolicy flushPolicy
     ) {
-        this.visitors = visitors;
+        if (visitors.size() != dispatch.size()) throw new IllegalArgumentException(
+                "Visitors do not match the dispatch table: " + visitors.size() + " != " + dispatch.size()
+        );
+        this.visitors = visitors.toArray(new UpdatingVisitor[0]);
+        this.done = new boolean[this.visitors.length];
+        this.dispatch = dispatch;
+        this.finishPolicy = finishPolicy;
+        this.limits = limits;
+        this.textMode = textMode;
+        this.namespaceDeclarations = namespaceDeclarations;
+        this.currentChars.setTextMode(textMode);
         this.target = target;
-        this.writer = target.getWriter(saxeed);
+        XMLStreamWriter writer = target.getWriter(saxeed);
+        this.writer = flushPolicy.isOnClose() ? writer : new FlushingWriter(writer, flushPolicy);
+    }
+
+    /**
+     * Prepare the handler for another document, keeping its target and writer.
+     *
+     * @param visitors Visitor instances for the next document.
+     */
+    public void reset(List<UpdatingVisitor> visitors) {
+        if (visitors.size() != this.visitors.length) throw new IllegalArgumentException(
+                "Visitors do not match the dispatch table: " + visitors.size() + " != " + this.visitors.length
+        );
+        visitors.toArray(this.visitors);
+
+        currentTag = null;
+        currentChars.clear();
+        currentNsMapping.clear();
+        namespaces.clear();
+        outputNamespaces.clear();
+        writtenBookmarks.clear();
+        omittedDepth = 0;
+        Arrays.fill(done, false);
+        doneCount = 0;
+        finished = false;
+        headCount = 0;
+        sampleCount = 0;
+        headReached = false;
+    }
+
+    /**
+     * Start processing a subtree detached from the rest of the document.
+     *
+     * The ancestors are neither visited nor written, but they are available to the visitors as parents.
+     */
+    /*package*/ void startDetached(List<RecordSplitter.Ancestor> ancestors) {
+        detached = true;
+        for (RecordSplitter.Ancestor ancestor : ancestors) {
+            currentTag = new TagImpl(currentTag, ancestor.name, ancestor.attributes, ancestor.namespaces, pendingReaders);
+            enterScope(currentTag);
+        }
+    }
+
+    /**
+     * Finish processing a subtree, forgetting its ancestors.
+     */
+    /*package*/ void endDetached() {
+        detached = false;
+        currentTag = null;
+        currentChars.clear();
+        currentNsMapping.clear();
+        namespaces.clear();
+        outputNamespaces.clear();
+        writtenBookmarks.clear();
+        omittedDepth = 0;
+    }
+
+    /**
+     * Determine if the content of the current tag is going to be omitted.
+     */
+    @Override
+    /*package*/ boolean isContentOmitted() {
+        return finished || omittedDepth > 0 || (currentTag != null && currentTag.isCharactersOmitted());
+    }
+
+    @Override
+    /*package*/ boolean isFinished() {
+        return finished;
+    }
+
+    private void checkDone(int i) {
+        if (!done[i] && visitors[i].isDone()) {
+            done[i] = true;
+            doneCount++;
+        }
+    }
+
+    /**
+     * Stop processing the document once all visitors are done, unless it is to be passed through.
+     *
+     * Called only after a SAX event is fully processed, so the tags and their added content are complete.
+     */
+    private void checkFinished() {
+        if (finished || detached) return;
+        if (!headReached) {
+            // With no visitors, there is nothing to be done with
+            if (visitors.length == 0 || doneCount < visitors.length) return;
+            if (finishPolicy == FinishPolicy.PASSTHROUGH && !target.isDiscarding()) return;
+        }
+
+        finished = true;
+        if (headReached || finishPolicy == FinishPolicy.CLOSE) {
+            try {
+                // Closes all open tags
+                writer.writeEndDocument();
+                writer.flush();
+            } catch (XMLStreamException e) {
+                throw new FailedWriting(ERROR_WRITING_TO_OUTPUT_FILE, e);
+            }
+        }
     }
 
     @Override
     public void startPrefixMapping(String prefix, String uri) {
-        documentNamespaces.put(uri, prefix);
-        currentNsMapping.put(uri, prefix);
+        if (isContentOmitted()) return;
+
+        currentNsMapping.put(prefix, uri);
+    }
+
+    @Override
+    public void endPrefixMapping(String prefix) {
+        // The bindings are left together with the tag that declared them
     }
 
     @Override
     public void startElement(String uri, String localName, String qName, Attributes attributes) {
+        if (finished) return;
+
+        flushChars();
+
+        // Skip the descendants of omitted tags without creating the tags, as there is nothing to visit or write
+        if (isContentOmitted()) {
+            omittedDepth++;
+            return;
+        }
+
         TagName tagName = TagName.fromSaxArgs(uri, localName, qName);
         TagImpl parent = currentTag;
 
-        currentTag = new TagImpl(parent, tagName, attributes, currentNsMapping);
+        currentTag = new TagImpl(parent, tagName, attributes, currentNsMapping, pendingReaders);
         currentNsMapping.clear();
 
+        if (limits.isLimited()) {
+            applyLimits(currentTag);
+        }
+
         _startElement(currentTag);
+        // Written straight from the SAX attributes, but they are needed as long as the tag is open
+        currentTag.detachAttributes();
+        checkFinished();
+    }
+
+    /**
+     * Skip the records outside the sample, or after the head.
+     */
+    private void applyLimits(TagImpl tag) {
+        TagName name = tag.getName();
+        if (limits.sampleRecords != null && limits.sampleRecords.isSubscribed(name)) {
+            if (!limits.isSampled(sampleCount++)) {
+                tag.skip();
+                return;
+            }
+        }
+
+        if (limits.headRecords != null && limits.headRecords.isSubscribed(name)) {
+            if (headCount++ == limits.head) {
+                tag.skip();
+                headReached = true;
+            }
+        }
     }
 
     private void _startElement(TagImpl tag) {
         if (tag.isOmitted()) {
             tag.getBookmark().omit();
+            enterScope(tag);
             return;
         }
 
         TagName name = tag.getName();
-        for (UpdatingVisitor v : getVisitors(name)) {
-            v.startTag(tag);
+        for (int i : dispatch.get(name)) {
+            if (done[i]) continue;
+
+            visitors[i].startTag(tag);
+            checkDone(i);
 
             if (tag.isOmitted()) {
                 tag.getBookmark().omit();
+                enterScope(tag);
                 return;
             }
         }
@@ -101,34 +321,35 @@ public class TransformationHandler extends DefaultHandler implements AutoCloseab
             }
 
             // Wrapping root tag with named namespaces declared. Cary them to the new root tag.
-            Map<String, String> namespaces = tag.getNamespaces();
-            if (wrapper.getParent() == null && !namespaces.isEmpty()) {
-                for (Map.Entry<String, String> e : namespaces.entrySet()) {
-                    wrapper.declareNamespace(e.getKey(), e.getValue());
+            Map<String, String> declared = tag.getNamespaces();
+            if (wrapper.getParent() == null && !declared.isEmpty()) {
+                for (Map.Entry<String, String> e : declared.entrySet()) {
+                    wrapper.declareNamespace(e.getValue(), e.getKey());
                 }
-                namespaces.clear();
+                declared.clear();
             }
 
             _startElement(wrapper);
         }
 
+        // Entered after the wrapper, so it is left before the wrapper is
+        enterScope(tag);
+
         try {
             LOGGER.fine("<" + name);
 
-            // Make sure that eventual Tag.Start#declareNamespace() additions are reflected
-            documentNamespaces.putAll(tag.getNamespaces());
-
             boolean usesNamespace = name.getNsUri().isEmpty();
             if (usesNamespace) {
                 writer.writeStartElement(name.getLocal());
             } else {
-                String declaredPrefix = documentNamespaces.get(name.getNsUri());
-                if (declaredPrefix == null) {
-                    throw new FailedTransforming(
-                            "Unable to write tag (" + tag.getName() + "), no such namespace URI declared. Have: " + documentNamespaces
-                    );
-                }
-                if (!Objects.equals(declaredPrefix, name.getNsPrefix())) {
+                // The URI can be bound to more prefixes, so resolve the prefix of the tag
+                if (!name.getNsUri().equals(namespaces.getUri(name.getNsPrefix()))) {
+                    String declaredPrefix = namespaces.getPrefix(name.getNsUri());
+                    if (declaredPrefix == null) {
+                        throw new FailedTransforming(
+                                "Unable to write tag (" + tag.getName() + "), no such namespace URI declared. Have: " + namespaces
+                        );
+                    }
                     throw new FailedTransforming(
                             "Unable to write tag (" + tag.getName() + "), no such namespace URI+prefix declared. Prefix: " + declaredPrefix
                     );
@@ -138,10 +359,12 @@ public class TransformationHandler extends DefaultHandler implements AutoCloseab
 
             writeNamespaceDeclarations(tag);
 
-            for (Map.Entry<String, String> e : tag.getAttributes().entrySet()) {
-                LOGGER.fine(String.format("%s='%s'", e.getKey(), e.getValue()));
-                writer.writeAttribute(e.getKey(), e.getValue());
+            if (LOGGER.isLoggable(Level.FINE)) {
+                for (Map.Entry<String, String> e : tag.getAttributes().entrySet()) {
+                    LOGGER.fine(String.format("%s='%s'", e.getKey(), e.getValue()));
+                }
             }
+            tag.writeAttributes(writer);
             LOGGER.fine(">");
 
             tag.bookmarkWrittenAs(getWriteBookmarkPath(tag));
@@ -153,12 +376,26 @@ public class TransformationHandler extends DefaultHandler implements AutoCloseab
     }
 
 
+    /**
+     * Bring the namespaces declared on the tag, including the ones added by the visitors, into scope.
+     */
+    private void enterScope(TagImpl tag) {
+        namespaces.enter();
+        namespaces.declareAll(tag.getNamespaces());
+    }
+
     /**
      * Write namespace declarations ("xmlns" pseudo-attributes), existing or added
      */
     private void writeNamespaceDeclarations(TagImpl tag) throws XMLStreamException {
+        outputNamespaces.enter();
         for (Map.Entry<String, String> e : tag.getNamespaces().entrySet()) {
-            writer.writeNamespace(e.getValue(), e.getKey());
+            String prefix = e.getKey();
+            String uri = e.getValue();
+            if (namespaceDeclarations == NamespaceDeclarations.MINIMIZE && uri.equals(outputNamespaces.getUri(prefix))) continue;
+
+            writer.writeNamespace(prefix, uri);
+            outputNamespaces.declare(uri, prefix);
         }
     }
 
@@ -173,26 +410,6 @@ public class TransformationHandler extends DefaultHandler implements AutoCloseab
         return BookmarkImpl.pathFrom(parentBookmark, tag.getName(), counter.getAndIncrement());
     }
 
-    /**
-     * Get visitors subscribed to given tag name.
-     *
-     * The result is cached.
-     */
-    private List<UpdatingVisitor> getVisitors(TagName tagName) {
-        List<UpdatingVisitor> visitors = visitorCache.get(tagName);
-        if (visitors != null) return visitors;
-
-        visitors = this.visitors.entrySet().stream()
-                .filter(e -> e.getValue().isSubscribed(tagName))
-                .map(Map.Entry::getKey)
-                .collect(Collectors.toList())
-        ;
-
-        visitorCache.put(tagName, visitors);
-
-        return visitors;
-    }
-
     /**
      * Write now tags to output stream.
      * <p>
@@ -211,7 +428,7 @@ public class TransformationHandler extends DefaultHandler implements AutoCloseab
 
                 writeChildren(currentTag);
                 TagName tn = currentTag.getName();
-                endElement(tn.getNsUri(), tn.getLocal(), tn.getNsPrefix());
+                _endElement(tn.getNsUri(), tn.getLocal(), tn.getNsPrefix());
             } else if (elements instanceof Element.SelfWriting) {
                 Element.SelfWriting sw = (Element.SelfWriting) elements;
                 try {
@@ -229,6 +446,19 @@ public class TransformationHandler extends DefaultHandler implements AutoCloseab
 
     @Override
     public void endElement(String uri, String localName, String tagname) {
+        if (finished) return;
+
+        if (omittedDepth > 0) {
+            omittedDepth--;
+            return;
+        }
+
+        flushChars();
+        _endElement(uri, localName, tagname);
+        checkFinished();
+    }
+
+    private void _endElement(String uri, String localName, String tagname) {
         if (currentTag == null) throw new AssertionError("Closing tag without currentTag set");
 
         if (!Objects.equals(localName, currentTag.getName().getLocal())) {
@@ -238,10 +468,13 @@ public class TransformationHandler extends DefaultHandler implements AutoCloseab
         TagImpl tag = currentTag;
 
         if (!tag.isOmitted()) {
-            List<UpdatingVisitor> visitors = getVisitors(tag.getName());
+            int[] subscribed = dispatch.get(tag.getName());
             // Iterate reversed for closing tag
-            for (int i = visitors.size() - 1; i >= 0; i--) {
-                visitors.get(i).endTag(tag);
+            for (int i = subscribed.length - 1; i >= 0; i--) {
+                if (done[subscribed[i]]) continue;
+
+                visitors[subscribed[i]].endTag(tag);
+                checkDone(subscribed[i]);
             }
 
             writeChildren(tag);
@@ -252,48 +485,86 @@ public class TransformationHandler extends DefaultHandler implements AutoCloseab
             } catch (XMLStreamException e) {
                 throw new FailedWriting(ERROR_WRITING_TO_OUTPUT_FILE, e);
             }
+            outputNamespaces.leave();
         }
 
+        namespaces.leave();
         currentTag = (TagImpl) currentTag.getParent();
 
         TagImpl ww = tag.endWrapWith();
         if (ww != null) {
             TagName wwName = ww.getName();
-            endElement(wwName.getNsUri(), wwName.getLocal(), wwName.getQualifiedName());
+            _endElement(wwName.getNsUri(), wwName.getLocal(), wwName.getQualifiedName());
         }
     }
 
     @Override
     public void characters(char[] orig, int start, int length) {
-        TagImpl tag = currentTag;
+        if (currentTag == null || isContentOmitted()) return;
 
-        if (tag != null && !tag.isCharactersOmitted()) {
-            try {
+        switch (textMode) {
+            case FRAGMENTS:
                 currentChars.update(orig, start, length);
-                for (UpdatingVisitor visitor : getVisitors(tag.getName())) {
-                    visitor.chars(tag, currentChars);
+                deliverChars(false);
+                break;
+            case COALESCED:
+                currentChars.append(orig, start, length);
+                break;
+            case STREAMING:
+                // Hold the chunk until it is known if it is the last one
+                if (!currentChars.isEmpty()) {
+                    deliverChars(false);
                 }
+                currentChars.append(orig, start, length);
+                break;
+            default: throw new AssertionError("Unknown text mode: " + textMode);
+        }
+        checkFinished();
+    }
 
-                boolean written = writeChildren(tag);
-                if (!currentChars.isEmpty()) {
-                    if (written) {
-                        throw new IllegalStateException(
-                                "Unable to write characters and children at the same time. "
-                                + "Make sure to call CharChunk#clear() when elements added in UpdatingVisitor#chars()"
-                        );
-                    }
-                    currentChars.write(writer);
+    /**
+     * Deliver the text collected, as the text node has ended.
+     */
+    private void flushChars() {
+        if (!currentChars.isEmpty()) {
+            deliverChars(true);
+        }
+    }
+
+    private void deliverChars(boolean last) {
+        TagImpl tag = currentTag;
+        try {
+            currentChars.setLast(last);
+            for (int i : dispatch.get(tag.getName())) {
+                if (done[i]) continue;
+
+                visitors[i].chars(tag, currentChars);
+                checkDone(i);
+            }
+
+            boolean written = writeChildren(tag);
+            if (!currentChars.isEmpty()) {
+                if (written) {
+                    throw new IllegalStateException(
+                            "Unable to write characters and children at the same time. "
+                            + "Make sure to call CharChunk#clear() when elements added in UpdatingVisitor#chars()"
+                    );
                 }
-            } catch (XMLStreamException e) {
-                throw new FailedWriting(ERROR_WRITING_TO_OUTPUT_FILE, e);
-            } finally {
-                currentChars.clear();
+                currentChars.write(writer);
             }
+        } catch (XMLStreamException e) {
+            throw new FailedWriting(ERROR_WRITING_TO_OUTPUT_FILE, e);
+        } finally {
+            currentChars.clear();
         }
     }
 
     @Override
     public void ignorableWhitespace(char[] ch, int start, int length) {
+        if (isContentOmitted()) return;
+
+        flushChars();
+
         try {
             writer.writeCharacters(ch, start, length);
         } catch (XMLStreamException e) {
@@ -303,6 +574,10 @@ public class TransformationHandler extends DefaultHandler implements AutoCloseab
 
     @Override
     public void processingInstruction(String target, String data) {
+        if (isContentOmitted()) return;
+
+        flushChars();
+
         try {
             writer.writeProcessingInstruction(target, data);
         } catch (XMLStreamException e) {
@@ -312,15 +587,17 @@ public class TransformationHandler extends DefaultHandler implements AutoCloseab
 
     @Override
     public void startDocument() {
-        for (UpdatingVisitor visitor: this.visitors.keySet()) {
-            visitor.startDocument();
+        for (int i = 0; i < visitors.length; i++) {
+            visitors[i].startDocument();
+            checkDone(i);
         }
+        checkFinished();
     }
 
     @Override
     public void endDocument() {
 
-        for (UpdatingVisitor visitor: this.visitors.keySet()) {
+        for (UpdatingVisitor visitor: this.visitors) {
             visitor.endDocument();
         }
     }
@@ -328,10 +605,41 @@ public class TransformationHandler extends DefaultHandler implements AutoCloseab
     @Override
     public void close() throws FailedWriting {
         try {
-            writer.flush();
-            target.close();
-        } catch (Exception e) {
-            throw new FailedWriting("Failed closing stream", e);
+            closeResources();
+        } finally {
+            try {
+                writer.flush();
+            } catch (Exception e) {
+                throw new FailedWriting("Failed closing stream", e);
+            } finally {
+                // Release the target even when flushing failed
+                target.close();
+            }
+        }
+    }
+
+    /**
+     * Close the visitors implementing {@link AutoCloseable}, and the readers added as text that were not written.
+     */
+    /*package*/ void closeResources() throws FailedWriting {
+        try {
+            closeVisitors(visitors);
+        } finally {
+            IOException exception = null;
+            for (Element.TextReader reader : new ArrayList<>(pendingReaders)) {
+                try {
+                    reader.close();
+                } catch (IOException ex) {
+                    if (exception == null) {
+                        exception = ex;
+                    } else {
+                        exception.addSuppressed(ex);
+                    }
+                }
+            }
+            pendingReaders.clear();
+
+            if (exception != null) throw new FailedWriting("Failed closing text readers", exception);
         }
     }
 }
@@ -0,0 +1,46 @@
+package com.github.olivergondza.saxeed.internal;
+
+import com.github.olivergondza.saxeed.UpdatingVisitor;
+import com.github.olivergondza.saxeed.ex.FailedWriting;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * SAX Handler applying visitors of a single transformation.
+ */
+public abstract class VisitingHandler extends DefaultHandler implements AutoCloseable {
+
+    /**
+     * Determine if the content of the current tag is going to be ignored.
+     */
+    /*package*/ abstract boolean isContentOmitted();
+
+    /**
+     * Determine if the handler is not interested in the rest of the document.
+     */
+    /*package*/ abstract boolean isFinished();
+
+    @Override
+    public abstract void close() throws FailedWriting;
+
+    /**
+     * Close the visitors implementing {@link AutoCloseable}.
+     */
+    /*package*/ static void closeVisitors(UpdatingVisitor[] visitors) throws FailedWriting {
+        FailedWriting exception = null;
+        for (UpdatingVisitor visitor : visitors) {
+            if (!(visitor instanceof AutoCloseable)) continue;
+
+            try {
+                ((AutoCloseable) visitor).close();
+            } catch (Exception ex) {
+                if (exception == null) {
+                    exception = new FailedWriting("Failed closing visitor " + visitor, ex);
+                } else {
+                    exception.addSuppressed(ex);
+                }
+            }
+        }
+
+        if (exception != null) throw exception;
+    }
+}
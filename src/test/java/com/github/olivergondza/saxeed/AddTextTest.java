@@ -4,7 +4,12 @@ import com.github.olivergondza.saxeed.ex.FailedTransforming;
 import com.github.olivergondza.saxeed.internal.CharChunk;
 import org.junit.jupiter.api.Test;
 
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 class AddTextTest {
     @Test
@@ -73,4 +78,35 @@ class AddTextTest {
                 Util.transform("<r><s/>replace with text and elements<e/></r>", bold, "r")
         );
     }
+
+    @Test
+    void readerClosed() {
+        List<String> closed = new ArrayList<>();
+        UpdatingVisitor readerAdder = new UpdatingVisitor() {
+            @Override
+            public void startTag(Tag.Start tag) throws FailedTransforming {
+                String name = tag.getAttributes().get("name");
+                tag.addText(new StringReader(name) {
+                    @Override
+                    public void close() {
+                        closed.add(name);
+                        super.close();
+                    }
+                });
+                if (tag.getAttributes().containsKey("skip")) {
+                    tag.skip();
+                }
+                if (tag.getAttributes().containsKey("fail")) {
+                    throw new FailedTransforming("Failing on request");
+                }
+            }
+        };
+
+        assertEquals("<r><a name=\"w\">w</a></r>", Util.transform("<r><a name='w'/><a name='s' skip=''/></r>", readerAdder, "a"));
+        assertEquals(List.of("w", "s"), closed);
+
+        closed.clear();
+        assertThrows(FailedTransforming.class, () -> Util.transform("<r><a name='f' fail=''/></r>", readerAdder, "a"));
+        assertEquals(List.of("f"), closed);
+    }
 }
@@ -0,0 +1,132 @@
+package com.github.olivergondza.saxeed;
+
+import com.github.olivergondza.saxeed.ex.FailedWriting;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class AsyncTargetTest {
+
+    private static final String INPUT = "<r>" + "<e a='v'>text</e>".repeat(1000) + "</r>";
+    private static final String OUTPUT = INPUT.replace("'", "\"");
+
+    @Test
+    void write(@TempDir Path dir) throws IOException {
+        Path out = dir.resolve("out.xml");
+        AsyncTarget target = new AsyncTarget(out).setBufferSize(100).setQueueSize(2);
+        new Saxeed().setInputString(INPUT).addTransformation(new TransformationBuilder(), target).transform();
+        assertEquals(OUTPUT, Files.readString(out));
+
+        // Slow output
+        ByteArrayOutputStream baos = new ByteArrayOutputStream() {
+            @Override
+            public synchronized void write(byte[] b, int off, int len) {
+                try {
+                    Thread.sleep(1);
+                } catch (InterruptedException e) {
+                    throw new AssertionError(e);
+                }
+                super.write(b, off, len);
+            }
+
+            @Override
+            public void close() {
+                throw new AssertionError("Must not close this!");
+            }
+        };
+        target = new AsyncTarget(baos).setBufferSize(1000).setQueueSize(1);
+        new Saxeed().setInputString(INPUT).addTransformation(new TransformationBuilder(), target).transform();
+        assertEquals(OUTPUT, baos.toString());
+    }
+
+    @Test
+    void failure() {
+        OutputStream failing = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("Disk full");
+            }
+        };
+
+        // Failing while transforming
+        AsyncTarget target = new AsyncTarget(failing).setBufferSize(10).setQueueSize(1);
+        assertThrows(FailedWriting.class, () -> new Saxeed().setInputString(INPUT).addTransformation(new TransformationBuilder(), target).transform());
+
+        // Failing when completing
+        AsyncTarget small = new AsyncTarget(failing);
+        assertThrows(FailedWriting.class, () -> new Saxeed().setInputString("<r/>").addTransformation(new TransformationBuilder(), small).transform());
+    }
+
+    @Test
+    void error() {
+        OutputStream failing = new OutputStream() {
+            @Override
+            public void write(int b) {
+                throw new StackOverflowError();
+            }
+        };
+
+        // Writing thread does not die leaving the transformation waiting for buffers
+        AsyncTarget target = new AsyncTarget(failing).setBufferSize(10).setQueueSize(1);
+        FailedWriting ex = assertThrows(FailedWriting.class, () -> new Saxeed().setInputString(INPUT).addTransformation(new TransformationBuilder(), target).transform());
+        Throwable cause = ex;
+        while (cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        assertInstanceOf(StackOverflowError.class, cause);
+    }
+
+    @Test
+    void reuse() {
+        Set<Thread> threads = ConcurrentHashMap.newKeySet();
+        ByteArrayOutputStream out = new ByteArrayOutputStream() {
+            @Override
+            public synchronized void write(byte[] b, int off, int len) {
+                threads.add(Thread.currentThread());
+                super.write(b, off, len);
+            }
+        };
+
+        AsyncTarget target = new AsyncTarget(out).setBufferSize(100).setQueueSize(2);
+        for (int i = 0; i < 3; i++) {
+            out.reset();
+            new Saxeed().setInputString(INPUT).addTransformation(new TransformationBuilder(), target).transform();
+            assertEquals(OUTPUT, out.toString());
+        }
+        assertEquals(1, threads.size(), threads::toString);
+    }
+
+    @Test
+    void interrupted() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        AsyncTarget target = new AsyncTarget(out).setBufferSize(100).setQueueSize(2);
+
+        TransformationBuilder interrupting = new TransformationBuilder().add("r", new UpdatingVisitor() {
+            @Override
+            public void endTag(Tag.End tag) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        try {
+            assertThrows(FailedWriting.class, () -> new Saxeed().setInputString(INPUT).addTransformation(interrupting, target).transform());
+        } finally {
+            Thread.interrupted();
+        }
+
+        // The writing thread is not left waiting for the end
+        out.reset();
+        new Saxeed().setInputString(INPUT).addTransformation(new TransformationBuilder(), target).transform();
+        assertEquals(OUTPUT, out.toString());
+    }
+}
@@ -0,0 +1,124 @@
+package com.github.olivergondza.saxeed;
+
+import com.github.olivergondza.saxeed.ex.FailedReading;
+import com.github.olivergondza.saxeed.ex.FailedTransforming;
+import com.github.olivergondza.saxeed.ex.FailedWriting;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class Base64TextTest {
+
+    @Test
+    void decode() {
+        Map<String, ByteArrayOutputStream> files = new HashMap<>();
+        TransformationBuilder tb = new TransformationBuilder().add("file", Base64Text.decodeTo(tag -> {
+            String name = tag.getAttributes().get("name");
+            if (name == null) return null;
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            files.put(name, out);
+            return out;
+        }));
+
+        String output = Util.transform(
+                "<r><file name='a'>SGVs\nbG8=</file><file name='b'>SGk</file><file name='c'/><file>kept</file></r>",
+                tb
+        );
+        assertEquals("<r><file name=\"a\"></file><file name=\"b\"></file><file name=\"c\"></file><file>kept</file></r>", output);
+        assertEquals("Hello", files.get("a").toString(StandardCharsets.US_ASCII));
+        assertEquals("Hi", files.get("b").toString(StandardCharsets.US_ASCII));
+        assertEquals("", files.get("c").toString(StandardCharsets.US_ASCII));
+    }
+
+    @Test
+    void invalid() {
+        for (String text : new String[] { "S", "SGk=A", "=SGk", "SG!k" }) {
+            TransformationBuilder tb = new TransformationBuilder().add("file", Base64Text.decodeTo(tag -> new ByteArrayOutputStream()));
+            assertThrows(FailedTransforming.class, () -> Util.transform("<file>" + text + "</file>", tb), text);
+        }
+    }
+
+    @Test
+    void failedOpening() {
+        TransformationBuilder tb = new TransformationBuilder().add("file", Base64Text.decodeTo(tag -> {
+            throw new IOException("No space left");
+        }));
+        FailedWriting ex = assertThrows(FailedWriting.class, () -> Util.transform("<r><file>SGk=</file></r>", tb));
+        assertEquals("No space left", ex.getCause().getMessage());
+    }
+
+    @Test
+    void closeIncomplete() {
+        List<String> closed = new ArrayList<>();
+        TransformationBuilder tb = new TransformationBuilder().add("file", Base64Text.decodeTo(tag -> new ByteArrayOutputStream() {
+            @Override
+            public void close() {
+                closed.add(tag.getAttributes().get("name"));
+            }
+        }));
+
+        // Document ends in the middle of the tag
+        assertThrows(FailedReading.class, () -> Util.transform("<r><file name='a'>SGk=</file><file name='b'>SG", tb));
+        assertEquals(List.of("a", "b"), closed);
+
+        // Decoding fails
+        closed.clear();
+        assertThrows(FailedTransforming.class, () -> Util.transform("<r><file name='c'>S!</file></r>", tb));
+        assertEquals(List.of("c"), closed);
+    }
+
+    @Test
+    void roundTrip(@TempDir Path dir) throws IOException {
+        byte[] data = new byte[100_001];
+        new Random(42).nextBytes(data);
+        Path in = dir.resolve("in.bin");
+        Files.write(in, data);
+
+        String encoded = Util.transform("<r><file/></r>", tag -> {
+            try {
+                tag.addText(Base64Text.encode(Files.newInputStream(in)));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, "file");
+        assertEquals("<r><file>" + Base64.getEncoder().encodeToString(data) + "</file></r>", encoded);
+
+        Path out = dir.resolve("out.bin");
+        // Text delivered in many chunks, split at arbitrary places
+        TransformationBuilder tb = new TransformationBuilder().add("file", Base64Text.decodeTo(tag -> Files.newOutputStream(out)));
+        assertEquals("<r><file></file></r>", Util.transform(encoded, tb));
+        assertArrayEquals(data, Files.readAllBytes(out));
+
+        for (TextMode mode : TextMode.values()) {
+            ByteArrayOutputStream decoded = new ByteArrayOutputStream();
+            Util.transform(encoded, new TransformationBuilder().add("file", Base64Text.decodeTo(tag -> decoded)).setTextMode(mode));
+            assertArrayEquals(data, decoded.toByteArray(), mode.name());
+        }
+    }
+
+    @Test
+    void encodeEmpty() throws IOException {
+        assertEquals(-1, Base64Text.encode(new ByteArrayInputStream(new byte[0])).read());
+
+        char[] buf = new char[16];
+        assertEquals(4, Base64Text.encode(new ByteArrayInputStream(new byte[] { 1, 2, 3 })).read(buf));
+    }
+}
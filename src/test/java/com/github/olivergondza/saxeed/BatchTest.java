@@ -0,0 +1,170 @@
+package com.github.olivergondza.saxeed;
+
+import com.github.olivergondza.saxeed.ex.FailedReading;
+import com.github.olivergondza.saxeed.ex.FailedWriting;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class BatchTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final CompiledTransformation renameAll = new TransformationBuilder()
+            .add(Subscribed.toAll(), () -> new UpdatingVisitor() {
+                @Override
+                public void startTag(Tag.Start tag) {
+                    tag.getAttributes().put("seen", "true");
+                }
+            })
+            .compile()
+    ;
+
+    @Test
+    void transformFiles() throws IOException {
+        List<Path> inputs = createInputs(20);
+        Path broken = tempDir.resolve("in/broken.xml");
+        Files.writeString(broken, "<r><unclosed></r>");
+        inputs.add(broken);
+
+        Batch.Result result = new Batch(renameAll)
+                .setParallelism(3)
+                .setMemoryBudget(100)
+                .transform(inputs, in -> tempDir.resolve("out/nested").resolve(in.getFileName()))
+        ;
+
+        assertFalse(result.isSuccessful());
+        assertEquals(20, result.getSucceeded().size());
+        assertEquals(Set.of(broken), result.getFailed().keySet());
+        assertInstanceOf(FailedReading.class, result.getFailed().get(broken));
+        assertFalse(Files.exists(tempDir.resolve("out/nested/broken.xml")), "Partial output deleted");
+
+        long bytes = 0;
+        for (Path in : inputs.subList(0, 20)) {
+            bytes += Files.size(in);
+            String expected = Files.readString(in).replace("<r>", "<r seen=\"true\">").replace("<e/>", "<e seen=\"true\"></e>");
+            assertEquals(expected, Files.readString(tempDir.resolve("out/nested").resolve(in.getFileName())));
+        }
+        assertEquals(bytes, result.getBytesRead());
+        assertTrue(result.getFilesPerSecond() > 0);
+        assertTrue(result.getBytesPerSecond() > 0);
+    }
+
+    @Test
+    void largestFirst() throws IOException {
+        List<Path> inputs = createInputs(10);
+
+        Batch.Result result = new Batch(renameAll)
+                .setParallelism(1)
+                .transform(inputs, in -> tempDir.resolve("out").resolve(in.getFileName()))
+        ;
+
+        assertTrue(result.isSuccessful(), result::toString);
+        List<Path> expected = new ArrayList<>(inputs);
+        Collections.reverse(expected);
+        assertEquals(expected, result.getSucceeded());
+    }
+
+    @Test
+    void missingInput() throws IOException {
+        List<Path> inputs = createInputs(2);
+        Path missing = tempDir.resolve("nosuchfile.xml");
+        inputs.add(missing);
+
+        Batch.Result result = new Batch(renameAll).transform(inputs, in -> tempDir.resolve("out").resolve(in.getFileName()));
+
+        assertFalse(result.isSuccessful());
+        assertEquals(2, result.getSucceeded().size());
+        assertEquals(Set.of(missing), result.getFailed().keySet());
+        assertInstanceOf(FailedReading.class, result.getFailed().get(missing));
+    }
+
+    @Test
+    void visitorError() throws IOException {
+        List<Path> inputs = createInputs(3);
+        CompiledTransformation overflowing = new TransformationBuilder()
+                .add("e", () -> new UpdatingVisitor() {
+                    @Override
+                    public void startTag(Tag.Start tag) {
+                        throw new StackOverflowError();
+                    }
+                })
+                .compile()
+        ;
+
+        Batch batch = new Batch(overflowing).setParallelism(1);
+        assertThrows(StackOverflowError.class, () -> batch.transform(inputs, in -> tempDir.resolve("out").resolve(in.getFileName())));
+    }
+
+    @Test
+    void inPlace() throws IOException {
+        List<Path> inputs = createInputs(3);
+        List<String> content = new ArrayList<>();
+        for (Path in : inputs) {
+            content.add(Files.readString(in));
+        }
+
+        Batch.Result result = new Batch(renameAll).transform(inputs, in -> in.getParent().resolve(".").resolve(in.getFileName()));
+
+        assertEquals(Set.copyOf(inputs), result.getFailed().keySet());
+        for (int i = 0; i < inputs.size(); i++) {
+            assertInstanceOf(FailedWriting.class, result.getFailed().get(inputs.get(i)));
+            assertEquals(content.get(i), Files.readString(inputs.get(i)), "Input intact");
+        }
+    }
+
+    @Test
+    void virtualThreads() throws IOException {
+        Batch batch = new Batch(renameAll);
+        assumeTrue(Runtime.version().feature() >= 21, "Virtual threads are not available");
+
+        List<Path> inputs = createInputs(10);
+        Batch.Result result = batch.setVirtualThreads(true)
+                .transform(inputs, in -> tempDir.resolve("out").resolve(in.getFileName()))
+        ;
+        assertTrue(result.isSuccessful(), result::toString);
+        assertEquals(10, result.getSucceeded().size());
+    }
+
+    @Test
+    void virtualThreadsUnavailable() {
+        assumeTrue(Runtime.version().feature() < 21, "Virtual threads are available");
+
+        try {
+            new Batch(renameAll).setVirtualThreads(true);
+            fail();
+        } catch (UnsupportedOperationException ex) {
+            // expected
+        }
+    }
+
+    /**
+     * Create files, each bigger than the previous one.
+     */
+    private List<Path> createInputs(int count) throws IOException {
+        Path dir = Files.createDirectories(tempDir.resolve("in"));
+        List<Path> inputs = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Path in = dir.resolve(i + ".xml");
+            Files.writeString(in, "<r>" + "<e/>".repeat(i) + "</r>");
+            inputs.add(in);
+        }
+        return inputs;
+    }
+}
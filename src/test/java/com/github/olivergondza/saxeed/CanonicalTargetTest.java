@@ -0,0 +1,98 @@
+package com.github.olivergondza.saxeed;
+
+import com.github.olivergondza.saxeed.internal.CharChunk;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CanonicalTargetTest {
+
+    private static final String INPUT = "<?xml version='1.0' encoding='UTF-8'?>\n"
+            + "<doc xmlns='http://e' xmlns:a='http://a' xmlns:unused='http://u'>"
+            + "<e1   b='2'  a:x='1' a='3'/>"
+            + "<e2 xmlns='http://e'><e3 xmlns='' v='&quot;&lt;&gt;&amp;&#9;&#10;&#13;'/></e2>"
+            + "text &amp; &gt; &#13;é<![CDATA[<cdata>]]><?pi data?>"
+            + "</doc>";
+
+    @Test
+    void inclusive() {
+        assertEquals(
+                "<doc xmlns=\"http://e\" xmlns:a=\"http://a\" xmlns:unused=\"http://u\">"
+                        + "<e1 a=\"3\" b=\"2\" a:x=\"1\"></e1>"
+                        + "<e2><e3 xmlns=\"\" v=\"&quot;&lt;>&amp;&#x9;&#xA;&#xD;\"></e3></e2>"
+                        + "text &amp; &gt; &#xD;é&lt;cdata&gt;<?pi data?>"
+                        + "</doc>",
+                canonicalize(INPUT, new TransformationBuilder(), false)
+        );
+    }
+
+    @Test
+    void exclusive() {
+        assertEquals(
+                "<doc xmlns=\"http://e\">"
+                        + "<e1 xmlns:a=\"http://a\" a=\"3\" b=\"2\" a:x=\"1\"></e1>"
+                        + "<e2><e3 xmlns=\"\" v=\"&quot;&lt;>&amp;&#x9;&#xA;&#xD;\"></e3></e2>"
+                        + "text &amp; &gt; &#xD;é&lt;cdata&gt;<?pi data?>"
+                        + "</doc>",
+                canonicalize(INPUT, new TransformationBuilder(), true)
+        );
+    }
+
+    @Test
+    void sameContentSameBytes() {
+        String a = "<r xmlns:p='urn:p'><p:e z='1' p:y='2' a='3'><x/></p:e></r>";
+        String b = "<r xmlns:p='urn:p'>\n<p:e  a='3' p:y='2' z='1' xmlns:p='urn:p'><x></x></p:e></r>";
+        TransformationBuilder dropWhitespace = new TransformationBuilder().add(Subscribed.toAll(), new UpdatingVisitor() {
+            @Override
+            public void chars(Tag.Chars tag, CharChunk chars) {
+                if (chars.get().isBlank()) {
+                    chars.clear();
+                }
+            }
+        });
+
+        String expected = "<r xmlns:p=\"urn:p\"><p:e a=\"3\" z=\"1\" p:y=\"2\"><x></x></p:e></r>";
+        assertEquals(expected, canonicalize(a, dropWhitespace, false));
+        assertEquals(expected, canonicalize(b, dropWhitespace, false));
+    }
+
+    @Test
+    void visitorNamespaces() {
+        TransformationBuilder tb = new TransformationBuilder().add("r", new UpdatingVisitor() {
+            @Override
+            public void startTag(Tag.Start tag) {
+                tag.declareNamespace("urn:added", "ad");
+                tag.addChild(new TagName("urn:added", "ad", "added"));
+            }
+        });
+
+        assertEquals(
+                "<r xmlns:ad=\"urn:added\"><ad:added></ad:added><x></x></r>",
+                canonicalize("<r><x/></r>", tb, false)
+        );
+        assertEquals(
+                "<r><ad:added xmlns:ad=\"urn:added\"></ad:added><x></x></r>",
+                canonicalize("<r><x/></r>", tb, true)
+        );
+    }
+
+    @Test
+    void file(@TempDir Path dir) throws IOException {
+        Path out = dir.resolve("out.xml");
+        new Saxeed().setInputString(INPUT).addTransformation(new TransformationBuilder(), new CanonicalTarget(out).setExclusive(true)).transform();
+        assertEquals(canonicalize(INPUT, new TransformationBuilder(), true), Files.readString(out));
+    }
+
+    private static String canonicalize(String input, TransformationBuilder tb, boolean exclusive) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new Saxeed().setInputString(input).addTransformation(tb, new CanonicalTarget(out).setExclusive(exclusive)).transform();
+        return out.toString(StandardCharsets.UTF_8);
+    }
+}
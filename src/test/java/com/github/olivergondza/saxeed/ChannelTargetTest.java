@@ -0,0 +1,41 @@
+package com.github.olivergondza.saxeed;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ChannelTargetTest {
+
+    @Test
+    void write(@TempDir Path dir) throws IOException {
+        String input = "<r>" + "<e a='v'>text</e>".repeat(1000) + "</r>";
+        String expected = input.replace("'", "\"");
+
+        Path out = dir.resolve("out.xml");
+        // Buffer smaller than the content
+        ChannelTarget target = new ChannelTarget(out).setBufferSize(100).setFsync(ChannelTarget.Fsync.every(1000));
+        new Saxeed().setInputString(input).addTransformation(new TransformationBuilder(), target).transform();
+        assertEquals(expected, Files.readString(out));
+
+        // Rewritten with the buffer reused
+        new Saxeed().setInputString("<r/>").addTransformation(new TransformationBuilder(), target).transform();
+        assertEquals("<r></r>", Files.readString(out));
+
+        target = new ChannelTarget(out).setFsync(ChannelTarget.Fsync.ON_CLOSE);
+        new Saxeed().setInputString(input).addTransformation(new TransformationBuilder(), target).transform();
+        assertEquals(expected, Files.readString(out));
+    }
+
+    @Test
+    void invalid() {
+        ChannelTarget target = new ChannelTarget(Path.of("out.xml"));
+        assertThrows(IllegalArgumentException.class, () -> target.setBufferSize(0));
+        assertThrows(IllegalArgumentException.class, () -> ChannelTarget.Fsync.every(0));
+    }
+}
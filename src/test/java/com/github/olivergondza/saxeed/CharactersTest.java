@@ -9,6 +9,8 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
@@ -90,6 +92,43 @@ class CharactersTest {
         );
     }
 
+    @Test
+    void inPlace() {
+        UpdatingVisitor editor = new UpdatingVisitor() {
+            @Override
+            public void chars(Tag.Chars tag, CharChunk chars) {
+                // Read without creating a String
+                Matcher matcher = Pattern.compile("[0-9]+").matcher(chars);
+                if (matcher.find()) {
+                    chars.replace(matcher.start(), matcher.end(), "#");
+                }
+
+                for (int i = 0; i < chars.length(); i++) {
+                    chars.setCharAt(i, Character.toUpperCase(chars.charAt(i)));
+                }
+                chars.append("!").delete(0, 1);
+                assertEquals(chars.get(), chars.toString());
+            }
+        };
+
+        assertEquals(
+                "<r>D #DE!<n>IRST!</n>RAILER!</r>",
+                Util.transform("<r>id 42de<n>first</n>trailer</r>", editor, "r", "n")
+        );
+
+        // Modify replaced content
+        UpdatingVisitor replacer = new UpdatingVisitor() {
+            @Override
+            public void chars(Tag.Chars tag, CharChunk chars) {
+                chars.update("replaced");
+                chars.replace(0, 2, "un");
+                assertEquals("unplaced", chars.subSequence(0, 8).toString());
+                chars.append(chars);
+            }
+        };
+        assertEquals("<r>unplacedunplaced</r>", Util.transform("<r>orig</r>", replacer, "r"));
+    }
+
     @Test
     void repeatedTransform() {
         class Appender implements UpdatingVisitor {
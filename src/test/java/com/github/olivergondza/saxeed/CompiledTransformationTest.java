@@ -0,0 +1,134 @@
+package com.github.olivergondza.saxeed;
+
+import com.github.olivergondza.saxeed.ex.FailedTransforming;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.fail;
+
+class CompiledTransformationTest {
+
+    /**
+     * Stateful visitor numbering the tags it visits.
+     */
+    private static final class Counter implements UpdatingVisitor {
+        private int count = 0;
+
+        @Override
+        public void startTag(Tag.Start tag) throws FailedTransforming {
+            tag.getAttributes().put("n", String.valueOf(count++));
+        }
+    }
+
+    @Test
+    void freshVisitorsForEveryDocument() {
+        AtomicInteger created = new AtomicInteger();
+        CompiledTransformation ct = new TransformationBuilder()
+                .add("e", () -> {
+                    created.incrementAndGet();
+                    return new Counter();
+                })
+                .compile()
+        ;
+
+        for (int i = 0; i < 3; i++) {
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            new Saxeed().setInputString("<r><e/><e/></r>").addTransformation(ct, baos).transform();
+            assertEquals("<r><e n=\"0\"></e><e n=\"1\"></e></r>", baos.toString());
+        }
+
+        assertEquals(3, created.get());
+    }
+
+    @Test
+    void multipleTargets() {
+        CompiledTransformation ct = new TransformationBuilder().add("e", Counter::new).compile();
+
+        ByteArrayOutputStream first = new ByteArrayOutputStream();
+        ByteArrayOutputStream second = new ByteArrayOutputStream();
+        new Saxeed().setInputString("<r><e/><e/></r>")
+                .addTransformation(ct, first)
+                .addTransformation(ct, second)
+                .transform()
+        ;
+
+        assertEquals("<r><e n=\"0\"></e><e n=\"1\"></e></r>", first.toString());
+        assertEquals("<r><e n=\"0\"></e><e n=\"1\"></e></r>", second.toString());
+    }
+
+    @Test
+    void concurrent() throws Exception {
+        CompiledTransformation ct = new TransformationBuilder()
+                .add("e", Counter::new)
+                .add(Subscribed.to().tagNames("r").build(), () -> new UpdatingVisitor() {
+                    @Override
+                    public void endTag(Tag.End tag) throws FailedTransforming {
+                        tag.addChild("last");
+                    }
+                })
+                .compile()
+        ;
+
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                int children = i % 10;
+                results.add(pool.submit(() -> {
+                    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+                    new Saxeed().setInputString("<r>" + "<e/>".repeat(children) + "</r>")
+                            .addTransformation(ct, baos)
+                            .transform()
+                    ;
+                    return baos.toString();
+                }));
+            }
+
+            for (int i = 0; i < results.size(); i++) {
+                StringBuilder expected = new StringBuilder("<r>");
+                for (int j = 0; j < i % 10; j++) {
+                    expected.append("<e n=\"").append(j).append("\"></e>");
+                }
+                expected.append("<last></last></r>");
+                assertEquals(expected.toString(), results.get(i).get());
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void rejectInstances() {
+        TransformationBuilder tb = new TransformationBuilder()
+                .add("a", Counter::new)
+                .add("b", new Counter())
+        ;
+
+        try {
+            tb.compile();
+            fail();
+        } catch (IllegalStateException ex) {
+            // expected
+        }
+    }
+
+    @Test
+    void rejectNullVisitor() {
+        CompiledTransformation ct = new TransformationBuilder().add("a", () -> null).compile();
+
+        try {
+            new Saxeed().setInputString("<a/>").addTransformation(ct).transform();
+            fail();
+        } catch (IllegalStateException ex) {
+            assertEquals("Visitor factory returned null", ex.getMessage().replaceFirst(":.*", ""));
+        }
+    }
+}
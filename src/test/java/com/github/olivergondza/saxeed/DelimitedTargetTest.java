@@ -0,0 +1,104 @@
+package com.github.olivergondza.saxeed;
+
+import com.github.olivergondza.saxeed.internal.CharChunk;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class DelimitedTargetTest {
+
+    private static final String INPUT = "<feed><meta><name>skipped</name></meta>"
+            + "<item id='1'><name>Plain</name><price cur='EUR'><amount>4.2</amount></price><name>Second name</name></item>"
+            + "<item id='2'><name>With, \"quotes\"\tand\nlines</name><nested><name>not a child</name></nested></item>"
+            + "<item><name>Mixed <b>bold</b> text</name><price><amount>1</amount></price></item>"
+            + "</feed>";
+
+    @Test
+    void csv() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        DelimitedTarget target = new DelimitedTarget(TagName.noNs("item"), out)
+                .setColumns("@id", "name", "price/amount", "price/@cur")
+                .setHeader(true);
+        new Saxeed().setInputString(INPUT).addTransformation(new TransformationBuilder(), target).transform();
+
+        assertEquals(
+                "@id,name,price/amount,price/@cur\r\n"
+                        + "1,Plain,4.2,EUR\r\n"
+                        + "2,\"With, \"\"quotes\"\"\tand\nlines\",,\r\n"
+                        + ",Mixed bold text,1,\r\n",
+                out.toString(StandardCharsets.UTF_8)
+        );
+    }
+
+    @Test
+    void tsv() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        DelimitedTarget target = new DelimitedTarget(TagName.noNs("item"), out)
+                .setColumns("@id", "name")
+                .setFormat(DelimitedTarget.Format.TSV);
+        new Saxeed().setInputString(INPUT).addTransformation(new TransformationBuilder(), target).transform();
+
+        assertEquals(
+                "1\tPlain\n"
+                        + "2\tWith, \"quotes\"\\tand\\nlines\n"
+                        + "\tMixed bold text\n",
+                out.toString(StandardCharsets.UTF_8)
+        );
+    }
+
+    @Test
+    void visitorsApplied() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        TransformationBuilder tb = new TransformationBuilder().add(Subscribed.toAll(), new UpdatingVisitor() {
+            @Override
+            public void chars(Tag.Chars tag, CharChunk chars) {
+                if (!tag.isNamed("name") && !tag.isNamed("b")) return;
+                chars.update(chars.get().toUpperCase());
+            }
+        });
+        DelimitedTarget target = new DelimitedTarget(TagName.noNs("item"), out).setColumns("name");
+        new Saxeed().setInputString(INPUT).addTransformation(tb, target).transform();
+
+        assertEquals("PLAIN\r\n\"WITH, \"\"QUOTES\"\"\tAND\nLINES\"\r\nMIXED BOLD TEXT\r\n", out.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void split(@TempDir Path dir) throws IOException {
+        String input = "<r>" + "<rec n='x'/>".repeat(5) + "</r>";
+        DelimitedTarget target = new DelimitedTarget(TagName.noNs("rec"), i -> dir.resolve(i + ".csv"))
+                .setColumns("@n")
+                .setHeader(true)
+                .setMaxRows(2);
+        new Saxeed().setInputString(input).addTransformation(new TransformationBuilder(), target).transform();
+
+        List<String> parts = new ArrayList<>();
+        for (Path part : target.getParts()) {
+            parts.add(Files.readString(part));
+        }
+        assertEquals(List.of("@n\r\nx\r\nx\r\n", "@n\r\nx\r\nx\r\n", "@n\r\nx\r\n"), parts);
+    }
+
+    @Test
+    void invalid() {
+        DelimitedTarget target = new DelimitedTarget(TagName.noNs("rec"), new ByteArrayOutputStream());
+        assertThrows(IllegalArgumentException.class, () -> target.setColumns("a/"));
+        assertThrows(IllegalArgumentException.class, () -> target.setColumns("@"));
+        assertThrows(IllegalArgumentException.class, () -> target.setColumns("@a/b"));
+        assertThrows(IllegalStateException.class, () -> target.setMaxRows(1));
+        assertThrows(IllegalStateException.class, () -> new Saxeed()
+                .setInputString("<r/>")
+                .addTransformation(new TransformationBuilder(), target)
+                .transform()
+        );
+    }
+}
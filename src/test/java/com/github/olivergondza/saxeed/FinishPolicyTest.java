@@ -0,0 +1,141 @@
+package com.github.olivergondza.saxeed;
+
+import com.github.olivergondza.saxeed.ex.FailedReading;
+import com.github.olivergondza.saxeed.ex.FailedTransforming;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class FinishPolicyTest {
+
+    private static final String INPUT = "<root><item n='1'/><item n='2'><sub/></item>text<item n='3'/></root>";
+
+    @Test
+    void passthrough() {
+        List<String> visited = new ArrayList<>();
+        String actual = transform(INPUT, new TransformationBuilder().add("item", new MarkFirst(2, visited)));
+
+        assertEquals("<root><item n=\"1\" seen=\"\"></item><item n=\"2\" seen=\"\"><sub></sub></item>text<item n=\"3\"></item></root>", actual);
+        assertEquals(List.of("1", "2"), visited);
+    }
+
+    @Test
+    void close() {
+        // Malformed after the point of finishing, so reading it fails
+        String input = INPUT.replace("text", "text<broken>");
+
+        TransformationBuilder tb = new TransformationBuilder()
+                .add("item", new MarkFirst(2, new ArrayList<>()))
+                .setFinishPolicy(FinishPolicy.CLOSE)
+        ;
+        assertEquals("<root><item n=\"1\" seen=\"\"></item><item n=\"2\" seen=\"\"></item></root>", transform(input, tb));
+
+        // Finishing after the end tag keeps its content
+        tb = new TransformationBuilder()
+                .add("item", new UpdatingVisitor() {
+                    private boolean done;
+
+                    @Override
+                    public void endTag(Tag.End tag) throws FailedTransforming {
+                        tag.addChild("added");
+                        done = true;
+                    }
+
+                    @Override
+                    public boolean isDone() {
+                        return done;
+                    }
+                })
+                .setFinishPolicy(FinishPolicy.CLOSE)
+        ;
+        assertEquals("<root><item n=\"1\"><added></added></item></root>", transform(input, tb));
+    }
+
+    @Test
+    void noVisitors() {
+        TransformationBuilder tb = new TransformationBuilder().setFinishPolicy(FinishPolicy.CLOSE);
+        assertEquals("<r><a>x</a></r>", transform("<r><a>x</a></r>", tb));
+
+        // The whole document is read
+        Saxeed saxeed = new Saxeed().setInputString("<r><a>x</a><broken></r>").addTransformation(new TransformationBuilder());
+        assertThrows(FailedReading.class, saxeed::transform);
+    }
+
+    @Test
+    void discarding() {
+        List<String> visited = new ArrayList<>();
+        new Saxeed().setInputString(INPUT.replace("text", "text<broken>"))
+                .addTransformation(new TransformationBuilder().add("item", new MarkFirst(1, visited)))
+                .transform()
+        ;
+        assertEquals(List.of("1"), visited);
+    }
+
+    @Test
+    void onlyFinishedTransformationsStop() {
+        ByteArrayOutputStream closed = new ByteArrayOutputStream();
+        ByteArrayOutputStream complete = new ByteArrayOutputStream();
+        new Saxeed().setInputString(INPUT)
+                .addTransformation(new TransformationBuilder()
+                        .add("item", new MarkFirst(1, new ArrayList<>()))
+                        .setFinishPolicy(FinishPolicy.CLOSE), closed)
+                .addTransformation(new TransformationBuilder(), complete)
+                .transform()
+        ;
+
+        assertEquals("<root><item n=\"1\" seen=\"\"></item></root>", closed.toString());
+        assertEquals("<root><item n=\"1\"></item><item n=\"2\"><sub></sub></item>text<item n=\"3\"></item></root>", complete.toString());
+    }
+
+    @Test
+    void reusedEngine() {
+        TransformationEngine engine = new TransformationEngine(new TransformationBuilder()
+                .add("item", () -> new MarkFirst(1, new ArrayList<>()))
+                .setFinishPolicy(FinishPolicy.CLOSE)
+                .compile()
+        );
+
+        for (int i = 0; i < 3; i++) {
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            engine.transform(new ByteArrayInputStream(INPUT.getBytes(StandardCharsets.UTF_8)), baos);
+            assertEquals("<root><item n=\"1\" seen=\"\"></item></root>", baos.toString(StandardCharsets.UTF_8));
+        }
+    }
+
+    private static String transform(String input, TransformationBuilder tb) {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        new Saxeed().setInputString(input).addTransformation(tb, baos).transform();
+        return baos.toString();
+    }
+
+    /**
+     * Mark first items, and be done.
+     */
+    private static final class MarkFirst implements UpdatingVisitor {
+        private final int count;
+        private final List<String> visited;
+
+        private MarkFirst(int count, List<String> visited) {
+            this.count = count;
+            this.visited = visited;
+        }
+
+        @Override
+        public void startTag(Tag.Start tag) throws FailedTransforming {
+            visited.add(tag.getAttributes().get("n"));
+            tag.getAttributes().put("seen", "");
+        }
+
+        @Override
+        public boolean isDone() {
+            return visited.size() == count;
+        }
+    }
+}
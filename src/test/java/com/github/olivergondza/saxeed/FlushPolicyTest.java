@@ -0,0 +1,134 @@
+package com.github.olivergondza.saxeed;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FlushPolicyTest {
+
+    private static final String INPUT = "<r><rec><a>1</a></rec><rec><a>2</a></rec><other/><rec><a>3</a></rec></r>";
+
+    @Test
+    void onClose() {
+        FlushRecorder out = transform(INPUT, FlushPolicy.ON_CLOSE);
+        assertEquals(List.of(
+                "<r><rec><a>1</a></rec><rec><a>2</a></rec><other></other><rec><a>3</a></rec></r>"
+        ), out.flushed);
+    }
+
+    @Test
+    void afterRecord() {
+        FlushRecorder out = transform(INPUT, FlushPolicy.afterRecord(TagName.noNs("rec")));
+        assertEquals(List.of(
+                "<r><rec><a>1</a></rec>",
+                "<r><rec><a>1</a></rec><rec><a>2</a></rec>",
+                "<r><rec><a>1</a></rec><rec><a>2</a></rec><other></other><rec><a>3</a></rec>",
+                "<r><rec><a>1</a></rec><rec><a>2</a></rec><other></other><rec><a>3</a></rec></r>"
+        ), out.flushed);
+    }
+
+    @Test
+    void everyChars() {
+        String input = "<r>" + "<rec>0123456789</rec>".repeat(100) + "</r>";
+        FlushRecorder out = transform(input, FlushPolicy.everyChars(100));
+        // Some 20 characters per record
+        assertTrue(out.flushed.size() > 15 && out.flushed.size() < 30, out.flushed::toString);
+        assertEquals(input, out.flushed.get(out.flushed.size() - 1));
+
+        // Records are flushed regardless of the size
+        out = transform(input, FlushPolicy.everyChars(100_000).or(FlushPolicy.afterRecord(TagName.noNs("rec"))));
+        assertEquals(101, out.flushed.size());
+    }
+
+    @Test
+    void every() {
+        String input = "<r>" + "<rec>0123456789</rec>".repeat(100) + "</r>";
+        FlushRecorder out = transform(input, FlushPolicy.every(Duration.ofDays(1)));
+        assertEquals(1, out.flushed.size());
+
+        out = transform(input, FlushPolicy.every(Duration.ofNanos(1)));
+        assertTrue(out.flushed.size() > 100, out.flushed::toString);
+    }
+
+    @Test
+    void channelTarget(@TempDir Path dir) {
+        Path out = dir.resolve("out.xml");
+        assertEquals(List.of(
+                "",
+                "<r><rec><a>1</a></rec>",
+                "<r><rec><a>1</a></rec><rec><a>2</a></rec>"
+        ), transformToFile(out, new ChannelTarget(out), FlushPolicy.afterRecord(TagName.noNs("rec"))));
+    }
+
+    @Test
+    void rollingTarget(@TempDir Path dir) {
+        Path out = dir.resolve("part-0.xml");
+        RollingTarget target = new RollingTarget(TagName.noNs("rec"), i -> dir.resolve("part-" + i + ".xml")).setMaxBytes(1024);
+        assertEquals(List.of(
+                "",
+                "<r><rec><a>1</a></rec>",
+                "<r><rec><a>1</a></rec><rec><a>2</a></rec>"
+        ), transformToFile(out, target, FlushPolicy.afterRecord(TagName.noNs("rec"))));
+    }
+
+    @Test
+    void invalid() {
+        assertThrows(IllegalArgumentException.class, () -> FlushPolicy.everyChars(0));
+        assertThrows(IllegalArgumentException.class, () -> FlushPolicy.every(Duration.ZERO));
+        assertThrows(IllegalArgumentException.class, () -> FlushPolicy.afterRecord(TagName.noNs("a")).or(FlushPolicy.afterRecord(TagName.noNs("b"))));
+    }
+
+    private static FlushRecorder transform(String input, FlushPolicy policy) {
+        FlushRecorder out = new FlushRecorder();
+        TransformationBuilder tb = new TransformationBuilder().setFlushPolicy(policy);
+        new Saxeed().setInputString(input).addTransformation(tb, out).transform();
+        return out;
+    }
+
+    /**
+     * Capture the content of the file at the start of every record.
+     */
+    private static List<String> transformToFile(Path file, Target target, FlushPolicy policy) {
+        List<String> seen = new ArrayList<>();
+        TransformationBuilder tb = new TransformationBuilder().setFlushPolicy(policy).add("rec", () -> new UpdatingVisitor() {
+            @Override
+            public void startTag(Tag.Start tag) {
+                try {
+                    seen.add(Files.readString(file));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        });
+        new Saxeed().setInputString(INPUT).addTransformation(tb, target).transform();
+        return seen;
+    }
+
+    /**
+     * Capture the content at every flush, skipping the repeated ones.
+     */
+    private static final class FlushRecorder extends ByteArrayOutputStream {
+        private final List<String> flushed = new ArrayList<>();
+
+        @Override
+        public void flush() {
+            String content = toString(StandardCharsets.UTF_8);
+            if (flushed.isEmpty() || !flushed.get(flushed.size() - 1).equals(content)) {
+                flushed.add(content);
+            }
+        }
+    }
+}
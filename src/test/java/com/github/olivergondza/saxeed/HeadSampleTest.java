@@ -0,0 +1,88 @@
+package com.github.olivergondza.saxeed;
+
+import com.github.olivergondza.saxeed.ex.FailedTransforming;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class HeadSampleTest {
+
+    private static final TagName RECORD = TagName.noNs("r");
+
+    @Test
+    void head() {
+        // Malformed after the head, so reading it fails
+        String input = "<root><meta/><list><r n='0'><v/></r><r n='1'/><r n='2'>text<broken></r></list></root>";
+
+        List<String> visited = new ArrayList<>();
+        assertEquals("<root><meta></meta><list><r n=\"0\"><v></v></r><r n=\"1\"></r></list></root>", transform(
+                input, new TransformationBuilder().add("r", collect(visited)).setHead(RECORD, 2)
+        ));
+        assertEquals(List.of("0", "1"), visited);
+
+        assertEquals("<root><meta></meta><list></list></root>", transform(
+                input, new TransformationBuilder().setHead(RECORD, 0)
+        ));
+
+        String valid = input.replace("<broken>", "");
+        assertEquals(transform(valid, new TransformationBuilder()), transform(
+                valid, new TransformationBuilder().setHead(RECORD, 3)
+        ));
+    }
+
+    @Test
+    void sample() {
+        StringBuilder sb = new StringBuilder("<root>");
+        for (int i = 0; i < 100; i++) {
+            sb.append("<r n='").append(i).append("'><v/></r>");
+        }
+        String input = sb.append("</root>").toString();
+
+        List<String> visited = new ArrayList<>();
+        String actual = transform(input, new TransformationBuilder().add("r", collect(visited)).setSample(RECORD, 25));
+        assertEquals(25, visited.size());
+        assertEquals(List.of("0", "4", "8"), visited.subList(0, 3));
+        assertEquals(25, actual.split("<r ").length - 1);
+
+        // Deterministic
+        assertEquals(actual, transform(input, new TransformationBuilder().setSample(RECORD, 25)));
+
+        visited.clear();
+        actual = transform(input, new TransformationBuilder()
+                .add("r", collect(visited))
+                .setSample(RECORD, 30)
+                .setHead(RECORD, 3)
+        );
+        assertEquals(List.of("0", "4", "7"), visited);
+        assertEquals("<root><r n=\"0\"><v></v></r><r n=\"4\"><v></v></r><r n=\"7\"><v></v></r></root>", actual);
+    }
+
+    @Test
+    void invalid() {
+        assertThrows(IllegalArgumentException.class, () -> new TransformationBuilder().setHead(RECORD, -1));
+        assertThrows(IllegalArgumentException.class, () -> new TransformationBuilder().setSample(RECORD, 101));
+
+        CompiledTransformation ct = new TransformationBuilder().setHead(RECORD, 1).compile();
+        assertThrows(IllegalArgumentException.class, () -> new RecordParallel(ct, RECORD));
+    }
+
+    private static UpdatingVisitor collect(List<String> visited) {
+        return new UpdatingVisitor() {
+            @Override
+            public void startTag(Tag.Start tag) throws FailedTransforming {
+                visited.add(tag.getAttributes().get("n"));
+            }
+        };
+    }
+
+    private static String transform(String input, TransformationBuilder tb) {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        new Saxeed().setInputString(input).addTransformation(tb, baos).transform();
+        return baos.toString();
+    }
+}
@@ -10,6 +10,7 @@ import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
 import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
@@ -242,6 +243,61 @@ class NamespaceTest {
         assertEquals("Unable to write tag (TagName{local='local', uri='uri', ns=''}), no such namespace URI declared. Have: {def=d}", ft.getMessage());
     }
 
+    @Test
+    void scoped() {
+        // The URI is bound to another prefix only inside the sibling
+        String input = "<r xmlns:a=\"u\"><b:x xmlns:b=\"u\"/><y/></r>";
+        Consumer<Tag.Start> addChild = (Tag.Start tag) -> tag.addChild(TagName.withNs("u", "a", "c"));
+        String actual = Util.transform(input, addChild, "y");
+        assertEquals("<r xmlns:a=\"u\"><b:x xmlns:b=\"u\"></b:x><y><a:c></a:c></y></r>", actual);
+
+        // Namespace declared on the sibling is no longer in scope
+        String sibling = "<r><b:x xmlns:b=\"u\"/><y/></r>";
+        Consumer<Tag.Start> addOutOfScope = (Tag.Start tag) -> tag.addChild(TagName.withNs("u", "b", "c"));
+        FailedTransforming ft = assertThrows(FailedTransforming.class, () -> Util.transform(sibling, addOutOfScope, "y"));
+        assertEquals("Unable to write tag (TagName{local='c', uri='u', ns='b'}), no such namespace URI declared. Have: {}", ft.getMessage());
+    }
+
+    @Test
+    void uriBoundToMorePrefixes() {
+        String input = "<r xmlns:a=\"U\" xmlns:b=\"U\"><a:x/><b:y/></r>";
+        assertEquals(
+                "<r xmlns:a=\"U\" xmlns:b=\"U\"><a:x></a:x><b:y></b:y></r>",
+                Util.transform(input, new TransformationBuilder())
+        );
+
+        Consumer<Tag.Start> addChild = (Tag.Start tag) -> tag.addChild(TagName.withNs("U", "a", "c"));
+        assertEquals(
+                "<r xmlns:a=\"U\" xmlns:b=\"U\"><a:x></a:x><b:y><a:c></a:c></b:y></r>",
+                Util.transform(input, addChild, "y")
+        );
+    }
+
+    @Test
+    void minimize() {
+        String input = "<a:r xmlns:a=\"u\"><a:x xmlns:a=\"u\"/><x xmlns=\"d\"><a:y xmlns:a=\"v\"><a:z xmlns:a=\"u\"/></a:y><y xmlns=\"d\"/></x></a:r>";
+        TransformationBuilder tb = new TransformationBuilder()
+                .add("y", (Supplier<UpdatingVisitor>) () -> new UpdatingVisitor() {
+                    @Override
+                    public void startTag(Tag.Start tag) {
+                        tag.addChild(TagName.withNs("u", "a", "added")).declareNamespace("u", "a");
+                    }
+                })
+                .setNamespaceDeclarations(NamespaceDeclarations.MINIMIZE)
+        ;
+
+        // Rebound prefix needs to be declared again
+        assertEquals(
+                "<a:r xmlns:a=\"u\"><a:x></a:x><x xmlns=\"d\"><a:y xmlns:a=\"v\"><a:added xmlns:a=\"u\"></a:added><a:z xmlns:a=\"u\"></a:z></a:y><y><a:added></a:added></y></x></a:r>",
+                Util.transform(input, tb)
+        );
+
+        assertEquals(
+                "<a:r xmlns:a=\"u\"><a:x xmlns:a=\"u\"></a:x><x xmlns=\"d\"><a:y xmlns:a=\"v\"><a:z xmlns:a=\"u\"></a:z></a:y><y xmlns=\"d\"></y></x></a:r>",
+                Util.transform(input, new TransformationBuilder())
+        );
+    }
+
     @Test
     void wrap() {
         String output = Util.transform(
@@ -0,0 +1,81 @@
+package com.github.olivergondza.saxeed;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class NdjsonTargetTest {
+
+    @Test
+    void convert() {
+        String input = "<feed><meta>skipped</meta>"
+                + "<item id='1'><name>First</name><tag>a</tag><tag>b</tag><price cur='EUR'>4.2</price><empty/></item>\n"
+                + "<item id='2'><name>Second</name><tag>c</tag><note>mixed <b>bold</b> text</note></item>"
+                + "</feed>";
+
+        assertEquals(
+                "{\"@id\":\"1\",\"name\":\"First\",\"tag\":[\"a\",\"b\"],\"price\":{\"@cur\":\"EUR\",\"#text\":\"4.2\"},\"empty\":\"\"}\n"
+                        + "{\"@id\":\"2\",\"name\":\"Second\",\"tag\":\"c\",\"note\":{\"b\":\"bold\",\"#text\":\"mixed  text\"}}\n",
+                convert(input, new TransformationBuilder(), o -> new NdjsonTarget(TagName.noNs("item"), o))
+        );
+
+        assertEquals(
+                "{\"_id\":\"1\",\"name\":\"First\",\"tag\":[\"a\",\"b\"],\"price\":{\"_cur\":\"EUR\",\"value\":\"4.2\"},\"empty\":\"\"}\n"
+                        + "{\"_id\":\"2\",\"name\":\"Second\",\"tag\":[\"c\"],\"note\":{\"b\":[\"bold\"],\"value\":\"mixed  text\"}}\n",
+                convert(input, new TransformationBuilder(), o -> new NdjsonTarget(TagName.noNs("item"), o)
+                        .setAttributePrefix("_")
+                        .setTextKey("value")
+                        .setArrays("tag", "b")
+                )
+        );
+    }
+
+    @Test
+    void visitorsApplied() {
+        String input = "<feed><item secret='x'><name>First</name></item><item><name>Second</name></item></feed>";
+        TransformationBuilder tb = new TransformationBuilder().add("item", new UpdatingVisitor() {
+            @Override
+            public void startTag(Tag.Start tag) {
+                tag.removeAttribute("secret");
+                tag.addChild("added").addText("yes");
+            }
+        });
+
+        assertEquals(
+                "{\"added\":\"yes\",\"name\":\"First\"}\n{\"added\":\"yes\",\"name\":\"Second\"}\n",
+                convert(input, tb, o -> new NdjsonTarget(TagName.noNs("item"), o))
+        );
+    }
+
+    @Test
+    void escaping() {
+        String input = "<r><item k='&quot;q&quot;'>a\\b\tc&#13;é€😀</item></r>";
+        assertEquals(
+                "{\"@k\":\"\\\"q\\\"\",\"#text\":\"a\\\\b\\tc\\ré€😀\"}\n",
+                convert(input, new TransformationBuilder(), o -> new NdjsonTarget(TagName.noNs("item"), o))
+        );
+    }
+
+    @Test
+    void file(@TempDir Path dir) throws IOException {
+        Path out = dir.resolve("out.ndjson");
+        new Saxeed().setInputString("<r><a:item xmlns:a='ns'><a:v>1</a:v></a:item><item/></r>")
+                .addTransformation(new TransformationBuilder(), new NdjsonTarget(TagName.withNs("ns", "item"), out))
+                .transform();
+        assertEquals("{\"v\":\"1\"}\n", Files.readString(out));
+    }
+
+    private static String convert(String input, TransformationBuilder tb, Function<ByteArrayOutputStream, Target> target) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new Saxeed().setInputString(input).addTransformation(tb, target.apply(out)).transform();
+        return out.toString(StandardCharsets.UTF_8);
+    }
+}
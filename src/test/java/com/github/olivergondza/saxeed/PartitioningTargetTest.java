@@ -0,0 +1,105 @@
+package com.github.olivergondza.saxeed;
+
+import com.github.olivergondza.saxeed.ex.FailedTransforming;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class PartitioningTargetTest {
+
+    private static final String INPUT = "<r xmlns:n='ns' a='v'>head"
+            + "<g><n:rec c='a' id='1'/><n:rec c='b' id='2'><x/></n:rec><n:rec c='a' id='3'/></g>"
+            + "<g><n:rec c='c' id='4'/><n:rec c='a' id='5'/></g>"
+            + "<n:rec c='b' id='6'/>tail</r>";
+
+    @Test
+    void partitions(@TempDir Path dir) throws IOException {
+        for (int maxOpen : List.of(1, 2, 3)) {
+            PartitioningTarget target = new PartitioningTarget(TagName.withNs("ns", "rec"), key -> dir.resolve(key + ".xml"))
+                    .setMaxOpen(maxOpen);
+            TransformationBuilder tb = new TransformationBuilder()
+                    .add(Subscribed.toAll(), target.keyBy(tag -> tag.getAttribute("c")));
+            new Saxeed().setInputString(INPUT).addTransformation(tb, target).transform();
+
+            Map<String, Path> partitions = target.getPartitions();
+            assertEquals(List.of("a", "b", "c"), List.copyOf(partitions.keySet()));
+            assertEquals(
+                    "<r xmlns:n=\"ns\" a=\"v\"><g><n:rec c=\"a\" id=\"1\"></n:rec><n:rec c=\"a\" id=\"3\"></n:rec></g>"
+                            + "<g><n:rec c=\"a\" id=\"5\"></n:rec></g></r>",
+                    Files.readString(partitions.get("a")), "max open " + maxOpen
+            );
+            assertEquals(
+                    "<r xmlns:n=\"ns\" a=\"v\"><g><n:rec c=\"b\" id=\"2\"><x></x></n:rec></g><n:rec c=\"b\" id=\"6\"></n:rec></r>",
+                    Files.readString(partitions.get("b")), "max open " + maxOpen
+            );
+            assertEquals(
+                    "<r xmlns:n=\"ns\" a=\"v\"><g><n:rec c=\"c\" id=\"4\"></n:rec></g></r>",
+                    Files.readString(partitions.get("c")), "max open " + maxOpen
+            );
+        }
+    }
+
+    @Test
+    void manyPartitions(@TempDir Path dir) throws IOException {
+        StringBuilder input = new StringBuilder("<r>");
+        for (int i = 0; i < 5000; i++) {
+            input.append("<rec k='").append(i % 1000).append("'>").append(i).append("</rec>");
+        }
+        input.append("</r>");
+
+        PartitioningTarget target = new PartitioningTarget(TagName.noNs("rec"), key -> dir.resolve(key + ".xml"))
+                .setMaxOpen(10);
+        TransformationBuilder tb = new TransformationBuilder()
+                .add("rec", target.keyBy(tag -> tag.getAttribute("k")));
+        new Saxeed().setInputString(input.toString()).addTransformation(tb, target).transform();
+
+        assertEquals(1000, target.getPartitions().size());
+        assertEquals(
+                "<r><rec k=\"42\">42</rec><rec k=\"42\">1042</rec><rec k=\"42\">2042</rec><rec k=\"42\">3042</rec><rec k=\"42\">4042</rec></r>",
+                Files.readString(target.getPartitions().get("42"))
+        );
+    }
+
+    @Test
+    void noKey(@TempDir Path dir) {
+        PartitioningTarget target = new PartitioningTarget(TagName.noNs("rec"), key -> dir.resolve(key + ".xml"));
+        assertThrows(FailedTransforming.class, () -> new Saxeed()
+                .setInputString("<r><rec/></r>")
+                .addTransformation(new TransformationBuilder(), target)
+                .transform()
+        );
+    }
+
+    @Test
+    void removedRecordKey(@TempDir Path dir) {
+        PartitioningTarget target = new PartitioningTarget(TagName.noNs("rec"), key -> dir.resolve(key + ".xml"));
+        TransformationBuilder tb = new TransformationBuilder().add("rec", () -> new UpdatingVisitor() {
+            @Override
+            public void startTag(Tag.Start tag) {
+                String key = tag.getAttribute("k");
+                if (key != null) {
+                    target.route(tag, key);
+                }
+                if (tag.getAttributes().containsKey("skip")) {
+                    tag.skip();
+                }
+            }
+        });
+
+        assertThrows(FailedTransforming.class, () -> new Saxeed()
+                .setInputString("<r><rec k='a' skip=''/><rec/></r>")
+                .addTransformation(tb, target)
+                .transform()
+        );
+        assertEquals(Collections.emptyMap(), target.getPartitions());
+    }
+}
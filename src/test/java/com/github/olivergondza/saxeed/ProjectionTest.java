@@ -0,0 +1,121 @@
+package com.github.olivergondza.saxeed;
+
+import com.github.olivergondza.saxeed.ex.FailedTransforming;
+import com.github.olivergondza.saxeed.internal.CharChunk;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ProjectionTest {
+
+    @Test
+    void collect() {
+        List<String> collected = new ArrayList<>();
+        new Saxeed().setInputString("<root><book id='1'><meta><title>One</title></meta></book><book id='2'><title>Two</title></book></root>")
+                .addProjection(new TransformationBuilder()
+                        .add("book", new UpdatingVisitor() {})
+                        .add("title", new UpdatingVisitor() {
+                            @Override
+                            public void startTag(Tag.Start tag) throws FailedTransforming {
+                                // Parent outside of the projection is not available
+                                assertNull(tag.getParent("meta"));
+                                assertNull(tag.getAncestor("root"));
+
+                                collected.add(tag.getParent().getAttributes().get("id"));
+                                assertThrows(UnsupportedOperationException.class, tag::skip);
+                                assertThrows(UnsupportedOperationException.class, () -> tag.getAttributes().put("a", "b"));
+                            }
+
+                            @Override
+                            public void chars(Tag.Chars tag, CharChunk chars) {
+                                collected.add(chars.get());
+                            }
+                        })
+                )
+                .transform()
+        ;
+
+        assertEquals(List.of("1", "One", "2", "Two"), collected);
+    }
+
+    @Test
+    void stopEarly() {
+        class FirstTitle implements UpdatingVisitor {
+            String title;
+            boolean ended;
+
+            @Override
+            public void chars(Tag.Chars tag, CharChunk chars) {
+                title = chars.get();
+            }
+
+            @Override
+            public boolean isDone() {
+                return title != null;
+            }
+
+            @Override
+            public void endDocument() throws FailedTransforming {
+                ended = true;
+            }
+        }
+
+        // Malformed after the first title, so reading it fails
+        String input = "<root><title>One</title><title>Two</title><broken></root>";
+
+        FirstTitle projection = new FirstTitle();
+        new Saxeed().setInputString(input)
+                .addProjection(new TransformationBuilder().add("title", projection))
+                .transform()
+        ;
+        assertEquals("One", projection.title);
+        assertTrue(projection.ended);
+
+        // Transformations need the whole document
+        FirstTitle visitor = new FirstTitle();
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        new Saxeed().setInputString(input.replace("<broken>", ""))
+                .addProjection(new TransformationBuilder().add("title", visitor))
+                .addTransformation(new TransformationBuilder(), baos)
+                .transform()
+        ;
+        assertEquals("One", visitor.title);
+        assertEquals("<root><title>One</title><title>Two</title></root>", baos.toString());
+    }
+
+    @Test
+    void closeVisitors() {
+        class Closing implements UpdatingVisitor, AutoCloseable {
+            private int closed = 0;
+
+            @Override
+            public void startTag(Tag.Start tag) throws FailedTransforming {
+                if (tag.getAttributes().containsKey("fail")) throw new FailedTransforming("Failing on request");
+            }
+
+            @Override
+            public void close() {
+                closed++;
+            }
+        }
+
+        Closing completed = new Closing();
+        new Saxeed().setInputString("<r><a/></r>").addProjection(new TransformationBuilder().add("a", completed)).transform();
+        assertEquals(1, completed.closed);
+
+        Closing failed = new Closing();
+        assertThrows(FailedTransforming.class, () -> new Saxeed()
+                .setInputString("<r><a fail=''/></r>")
+                .addProjection(new TransformationBuilder().add("a", failed))
+                .transform()
+        );
+        assertEquals(1, failed.closed);
+    }
+}
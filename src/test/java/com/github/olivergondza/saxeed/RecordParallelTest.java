@@ -0,0 +1,133 @@
+package com.github.olivergondza.saxeed;
+
+import com.github.olivergondza.saxeed.ex.FailedTransforming;
+import com.github.olivergondza.saxeed.internal.CharChunk;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.fail;
+
+class RecordParallelTest {
+
+    private final CompiledTransformation transformation = new TransformationBuilder()
+            .add("record", () -> new UpdatingVisitor() {
+                @Override
+                public void startTag(Tag.Start tag) throws FailedTransforming {
+                    assertNotNull(tag.getParent("root"), "Ancestors available");
+
+                    String id = tag.getAttributes().get("id");
+                    if (id.endsWith("3")) {
+                        tag.skip();
+                    } else {
+                        tag.addChild("added").addText(id);
+                    }
+                }
+            })
+            .add("value", () -> new UpdatingVisitor() {
+                @Override
+                public void chars(Tag.Chars tag, CharChunk chars) {
+                    chars.update(chars.get().toUpperCase());
+                }
+            })
+            .add("root", () -> new UpdatingVisitor() {
+                @Override
+                public void endTag(Tag.End tag) throws FailedTransforming {
+                    tag.addChild("trailer");
+                }
+            })
+            .compile()
+    ;
+
+    @Test
+    void sameAsSequential() {
+        StringBuilder sb = new StringBuilder("<root xmlns:x='X'><header>h</header>\n");
+        for (int i = 0; i < 1000; i++) {
+            sb.append("<record id='").append(i).append("'><x:value>v").append(i).append("</x:value><value>w</value></record>\n");
+        }
+        sb.append("<footer/></root>");
+        String input = sb.toString();
+
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        new Saxeed().setInputString(input).addTransformation(transformation, expected).transform();
+
+        assertEquals(expected.toString(StandardCharsets.UTF_8), transform(input, 3, 4));
+        assertEquals(expected.toString(StandardCharsets.UTF_8), transform(input, 1, 1));
+    }
+
+    @Test
+    void recordsInOmittedContent() {
+        CompiledTransformation empty = new TransformationBuilder()
+                .add("skipped", () -> new UpdatingVisitor() {
+                    @Override
+                    public void startTag(Tag.Start tag) throws FailedTransforming {
+                        tag.empty();
+                    }
+                })
+                .compile()
+        ;
+
+        String actual = transform(empty, "<root><skipped><record/></skipped><record><skipped><a/></skipped></record></root>");
+        assertEquals("<root><skipped></skipped><record><skipped></skipped></record></root>", actual);
+    }
+
+    @Test
+    void recordRoot() {
+        CompiledTransformation addChild = new TransformationBuilder()
+                .add("record", () -> new UpdatingVisitor() {
+                    @Override
+                    public void startTag(Tag.Start tag) throws FailedTransforming {
+                        tag.addChild("added");
+                    }
+                })
+                .compile()
+        ;
+
+        assertEquals("<record id=\"1\"><added></added></record>", transform(addChild, "<record id='1'/>"));
+    }
+
+    @Test
+    void failingRecord() {
+        CompiledTransformation failing = new TransformationBuilder()
+                .add("record", () -> new UpdatingVisitor() {
+                    @Override
+                    public void startTag(Tag.Start tag) throws FailedTransforming {
+                        if (tag.getAttributes().containsKey("fail")) {
+                            throw new FailedTransforming("Failing on request");
+                        }
+                    }
+                })
+                .compile()
+        ;
+
+        try {
+            transform(failing, "<root><record/><record fail=''/><record/></root>");
+            fail();
+        } catch (FailedTransforming ex) {
+            assertEquals("Failing on request", ex.getMessage());
+        }
+    }
+
+    private String transform(String input, int parallelism, int maxInFlight) {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        new RecordParallel(transformation, TagName.noNs("record"))
+                .setParallelism(parallelism)
+                .setMaxInFlight(maxInFlight)
+                .transform(new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)), baos)
+        ;
+        return baos.toString(StandardCharsets.UTF_8);
+    }
+
+    private String transform(CompiledTransformation transformation, String input) {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        new RecordParallel(transformation, TagName.noNs("record"))
+                .setParallelism(2)
+                .transform(new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)), baos)
+        ;
+        return baos.toString(StandardCharsets.UTF_8);
+    }
+}
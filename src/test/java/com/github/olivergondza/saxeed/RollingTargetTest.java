@@ -0,0 +1,67 @@
+package com.github.olivergondza.saxeed;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RollingTargetTest {
+
+    private static final String INPUT = "<r xmlns:n='ns' a='v'><g><n:rec id='1'/><n:rec id='2'><x/></n:rec></g><g><n:rec id='3'/></g><n:rec id='4'/>tail</r>";
+
+    @Test
+    void byRecords(@TempDir Path dir) throws IOException {
+        RollingTarget target = new RollingTarget(TagName.withNs("ns", "rec"), i -> dir.resolve(i + ".xml")).setMaxRecords(2);
+        new Saxeed().setInputString(INPUT).addTransformation(new TransformationBuilder(), target).transform();
+
+        assertEquals(List.of(
+                "<r xmlns:n=\"ns\" a=\"v\"><g><n:rec id=\"1\"></n:rec><n:rec id=\"2\"><x></x></n:rec></g></r>",
+                "<r xmlns:n=\"ns\" a=\"v\"><g><n:rec id=\"3\"></n:rec></g><n:rec id=\"4\"></n:rec>tail</r>"
+        ), read(target.getParts()));
+
+        target.setMaxRecords(1);
+        new Saxeed().setInputString(INPUT).addTransformation(new TransformationBuilder(), target).transform();
+        assertEquals(List.of(
+                "<r xmlns:n=\"ns\" a=\"v\"><g><n:rec id=\"1\"></n:rec></g></r>",
+                "<r xmlns:n=\"ns\" a=\"v\"><g><n:rec id=\"2\"><x></x></n:rec></g></r>",
+                "<r xmlns:n=\"ns\" a=\"v\"><g><n:rec id=\"3\"></n:rec></g></r>",
+                "<r xmlns:n=\"ns\" a=\"v\"><n:rec id=\"4\"></n:rec>tail</r>"
+        ), read(target.getParts()));
+    }
+
+    @Test
+    void byBytes(@TempDir Path dir) throws IOException {
+        String input = "<r>" + "<rec>0123456789</rec>".repeat(100) + "</r>";
+        RollingTarget target = new RollingTarget(TagName.noNs("rec"), i -> dir.resolve(i + ".xml")).setMaxBytes(200);
+        new Saxeed().setInputString(input).addTransformation(new TransformationBuilder(), target).transform();
+
+        List<String> parts = read(target.getParts());
+        // 10 records of 21 bytes reach the limit
+        assertEquals(10, parts.size());
+        assertTrue(parts.get(0).startsWith("<r><rec>"));
+        assertTrue(parts.get(0).endsWith("</rec></r>"));
+        assertEquals(input, "<r>" + String.join("", parts).replace("<r>", "").replace("</r>", "") + "</r>");
+    }
+
+    @Test
+    void noLimit(@TempDir Path dir) {
+        RollingTarget target = new RollingTarget(TagName.noNs("rec"), i -> dir.resolve(i + ".xml"));
+        assertThrows(IllegalStateException.class, () -> new Saxeed().setInputString("<r/>").addTransformation(new TransformationBuilder(), target).transform());
+    }
+
+    private static List<String> read(List<Path> parts) throws IOException {
+        List<String> out = new ArrayList<>();
+        for (Path part : parts) {
+            out.add(Files.readString(part));
+        }
+        return out;
+    }
+}
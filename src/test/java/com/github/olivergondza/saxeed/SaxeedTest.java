@@ -140,6 +140,37 @@ class SaxeedTest {
         assertEquals("<a>keep1<empty></empty>keep<s>keep</s></a>", actual);
     }
 
+    @Test
+    void skippedContentNotVisited() {
+        String input = "<a><skip><x:child xmlns:x='X'><?pi data?><deep>text</deep></x:child></skip><x:keep xmlns:x='Y'/></a>";
+
+        List<String> visited = new ArrayList<>();
+        ByteArrayOutputStream skipping = new ByteArrayOutputStream();
+        ByteArrayOutputStream keeping = new ByteArrayOutputStream();
+        new Saxeed().setInputString(input)
+                .addTransformation(new TransformationBuilder().add(Subscribed.toAll(), new UpdatingVisitor() {
+                    @Override
+                    public void startTag(Tag.Start tag) throws FailedTransforming {
+                        visited.add(tag.getName().getLocal());
+                        if (tag.isNamed("skip")) tag.skip();
+                    }
+                }), skipping)
+                .addTransformation(new TransformationBuilder(), keeping)
+                .transform()
+        ;
+
+        assertEquals(List.of("a", "skip", "keep"), visited);
+        assertEquals("<a><x:keep xmlns:x=\"Y\"></x:keep></a>", skipping.toString());
+        assertEquals("<a><skip><x:child xmlns:x=\"X\"><?pi data?><deep>text</deep></x:child></skip><x:keep xmlns:x=\"Y\"></x:keep></a>", keeping.toString());
+
+        // All transformations omitting the content
+        assertEquals("<a><empty></empty><x:keep xmlns:x=\"Y\"></x:keep></a>", Util.transform(
+                input.replace("skip", "empty"),
+                Tag.Start::empty,
+                "empty"
+        ));
+    }
+
     @Test
     void unwrap() {
         String actual = Util.transform(
@@ -179,6 +210,40 @@ class SaxeedTest {
         assertEquals("<root n=\"New!\"><child a=\"v\"></child></root>", actual);
     }
 
+    @Test
+    void attributesOfAncestors() {
+        List<String> seen = new ArrayList<>();
+        UpdatingVisitor visitor = new UpdatingVisitor() {
+            @Override
+            public void startTag(Tag.Start tag) {
+                Tag parent = tag.getParent();
+                if (parent != null) {
+                    seen.add(parent.getAttribute("id") + ">" + tag.getAttribute("id"));
+                }
+
+                if (tag.isNamed("c")) {
+                    tag.getAttributes().entrySet().removeIf(e -> e.getKey().equals("x"));
+                    tag.getAttributes().entrySet().iterator().next().setValue("C");
+                }
+            }
+
+            @Override
+            public void endTag(Tag.End tag) {
+                seen.add("/" + tag.getAttribute("id") + tag.getAttributes());
+            }
+        };
+
+        String actual = Util.transform(
+                "<a id='A'><b id='B'><c id='c' x='y'/><d id='D'/></b></a>",
+                visitor
+        );
+
+        assertEquals("<a id=\"A\"><b id=\"B\"><c id=\"C\"></c><d id=\"D\"></d></b></a>", actual);
+        assertEquals(List.of(
+                "A>B", "B>c", "/C{id=C}", "B>D", "/D{id=D}", "/B{id=B}", "/A{id=A}"
+        ), seen);
+    }
+
     @Test
     void wrap() {
         Consumer<Tag.Start> wrap = ts -> {
@@ -0,0 +1,158 @@
+package com.github.olivergondza.saxeed;
+
+import com.github.olivergondza.saxeed.ex.FailedTransforming;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ShardSplitterTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void splitAndConcatenate() throws IOException {
+        Path input = createInput(2000);
+
+        List<Shard> shards = new ShardSplitter(TagName.noNs("record")).setLookahead(1024).split(input, 7);
+        assertEquals(7, shards.size());
+        assertEquals(0, shards.get(0).getStart());
+        assertEquals(Files.size(input), shards.get(6).getEnd());
+        for (int i = 1; i < shards.size(); i++) {
+            assertEquals(shards.get(i - 1).getEnd(), shards.get(i).getStart());
+            assertEquals(2, shards.get(i).getDepth());
+        }
+
+        List<Path> outputs = new ArrayList<>();
+        for (Shard shard : shards) {
+            Path output = tempDir.resolve("shard-" + shard.getIndex() + ".xml");
+            transformShard(input, Shard.fromProperties(shard.toProperties()), output);
+            outputs.add(output);
+        }
+
+        assertEquals(transformWhole(input), concatenate(outputs, shards.get(0).getDepth()));
+    }
+
+    @Test
+    void separateProcesses() throws Exception {
+        Path input = createInput(300);
+
+        List<Shard> shards = new ShardSplitter(TagName.noNs("record")).setLookahead(1024).split(input, 3);
+        assertEquals(3, shards.size());
+
+        List<Process> processes = new ArrayList<>();
+        List<Path> outputs = new ArrayList<>();
+        for (Shard shard : shards) {
+            Path descriptor = tempDir.resolve("shard-" + shard.getIndex() + ".properties");
+            try (Writer writer = Files.newBufferedWriter(descriptor)) {
+                shard.toProperties().store(writer, null);
+            }
+            Path output = tempDir.resolve("shard-" + shard.getIndex() + ".xml");
+            outputs.add(output);
+
+            processes.add(new ProcessBuilder(
+                    Path.of(System.getProperty("java.home"), "bin", "java").toString(),
+                    "-cp", System.getProperty("java.class.path"),
+                    ShardSplitterTest.class.getName(),
+                    input.toString(), descriptor.toString(), output.toString()
+            ).inheritIO().start());
+        }
+
+        for (Process process : processes) {
+            assertEquals(0, process.waitFor());
+        }
+
+        assertEquals(transformWhole(input), concatenate(outputs, shards.get(0).getDepth()));
+    }
+
+    @Test
+    void fewRecords() throws IOException {
+        Path input = createInput(1);
+
+        List<Shard> shards = new ShardSplitter(TagName.noNs("record")).split(input, 4);
+        assertEquals(1, shards.size());
+        assertEquals("", shards.get(0).getPrefix());
+        assertEquals("", shards.get(0).getSuffix());
+    }
+
+    /**
+     * Transform a shard in a separate process.
+     */
+    public static void main(String[] args) throws IOException {
+        Properties props = new Properties();
+        try (Reader reader = Files.newBufferedReader(Path.of(args[1]))) {
+            props.load(reader);
+        }
+        transformShard(Path.of(args[0]), Shard.fromProperties(props), Path.of(args[2]));
+    }
+
+    private static void transformShard(Path input, Shard shard, Path output) throws IOException {
+        try (InputStream is = shard.openStream(input)) {
+            new Saxeed().setInput(is).addTransformation(transformation(), output).transform();
+        }
+    }
+
+    private String transformWhole(Path input) {
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        new Saxeed().setInput(input).addTransformation(transformation(), expected).transform();
+        return expected.toString(StandardCharsets.UTF_8);
+    }
+
+    private static String concatenate(List<Path> outputs, int depth) {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        ShardSplitter.concatenate(outputs, depth, baos);
+        return baos.toString(StandardCharsets.UTF_8);
+    }
+
+    private static TransformationBuilder transformation() {
+        return new TransformationBuilder().add("record", new UpdatingVisitor() {
+            @Override
+            public void startTag(Tag.Start tag) throws FailedTransforming {
+                tag.getAttributes().put("seen", "true");
+            }
+        });
+    }
+
+    /**
+     * Create document with records, and fake records in comments, CDATA and PIs.
+     */
+    private Path createInput(int records) throws IOException {
+        Path input = tempDir.resolve("input.xml");
+        try (OutputStream os = Files.newOutputStream(input)) {
+            StringBuilder sb = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+            sb.append("<root xmlns:x=\"X\" a=\"1&amp;2\"><!-- <record id=\"fake\"/> -->\n<wrap>\n");
+            for (int i = 0; i < records; i++) {
+                sb.append("<record id=\"").append(i).append("\"><x:v>žluťoučký ").append(i).append("</x:v>");
+                if (i % 7 == 0) {
+                    sb.append("<![CDATA[ <record id=\"fake\"> ").append("-".repeat(300)).append(" ]]>");
+                }
+                if (i % 11 == 0) {
+                    sb.append("<!-- <record id=\"fake\"/> ").append("=".repeat(300)).append(" -->");
+                }
+                if (i % 13 == 0) {
+                    sb.append("<?pi <record id=\"fake\" ?>");
+                }
+                sb.append("</record>\n");
+            }
+            sb.append("</wrap></root>\n");
+            os.write(sb.toString().getBytes(StandardCharsets.UTF_8));
+        }
+        assertTrue(Files.size(input) > 0);
+        return input;
+    }
+}
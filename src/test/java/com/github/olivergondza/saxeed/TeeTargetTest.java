@@ -0,0 +1,96 @@
+package com.github.olivergondza.saxeed;
+
+import com.github.olivergondza.saxeed.ex.FailedWriting;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class TeeTargetTest {
+
+    private static final String INPUT = "<r>" + "<rec a='v'>0123456789</rec>".repeat(1000) + "</r>";
+    private static final String OUTPUT = INPUT.replace("'", "\"");
+
+    @Test
+    void sinks(@TempDir Path dir) throws IOException {
+        for (boolean concurrent : new boolean[]{false, true}) {
+            Path file = dir.resolve("file.xml");
+            Path channelFile = dir.resolve("channel.xml");
+            ByteArrayOutputStream stream = new ByteArrayOutputStream();
+            try (FileChannel channel = FileChannel.open(channelFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                TeeTarget target = new TeeTarget().addSink(file).addSink(stream).addSink(channel)
+                        .setBufferSize(100)
+                        .setConcurrent(concurrent);
+                new Saxeed().setInputString(INPUT).addTransformation(new TransformationBuilder(), target).transform();
+            }
+
+            assertEquals(OUTPUT, Files.readString(file));
+            assertEquals(OUTPUT, Files.readString(channelFile));
+            assertEquals(OUTPUT, stream.toString(StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    void failingSink(@TempDir Path dir) {
+        OutputStream failing = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("Nope");
+            }
+        };
+
+        for (boolean concurrent : new boolean[]{false, true}) {
+            TeeTarget target = new TeeTarget().addSink(dir.resolve("file.xml")).addSink(failing).setConcurrent(concurrent);
+            assertThrows(FailedWriting.class, () -> new Saxeed()
+                    .setInputString(INPUT)
+                    .addTransformation(new TransformationBuilder(), target)
+                    .transform()
+            );
+        }
+    }
+
+    @Test
+    void notRewrittenAfterFailure() {
+        OutputStream failingOnce = new OutputStream() {
+            private boolean failed = false;
+
+            @Override
+            public void write(int b) throws IOException {
+                if (!failed) {
+                    failed = true;
+                    throw new IOException("Nope");
+                }
+            }
+        };
+
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        TeeTarget target = new TeeTarget().addSink(stream).addSink(failingOnce).setBufferSize(100);
+        assertThrows(FailedWriting.class, () -> new Saxeed()
+                .setInputString(INPUT)
+                .addTransformation(new TransformationBuilder(), target)
+                .transform()
+        );
+
+        // The chunk the failing sink refused is written once, and nothing after it
+        assertEquals(OUTPUT.substring(0, 100), stream.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void noSinks() {
+        assertThrows(IllegalStateException.class, () -> new Saxeed()
+                .setInputString(INPUT)
+                .addTransformation(new TransformationBuilder(), new TeeTarget())
+                .transform()
+        );
+    }
+}
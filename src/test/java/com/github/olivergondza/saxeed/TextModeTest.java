@@ -0,0 +1,100 @@
+package com.github.olivergondza.saxeed;
+
+import com.github.olivergondza.saxeed.internal.CharChunk;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TextModeTest {
+
+    // The parser reports the entities separately
+    private static final String INPUT = "<r>a&amp;b<c>d</c>e&lt;<?pi data?>f</r>";
+
+    @Test
+    void fragments() {
+        List<String> chunks = new ArrayList<>();
+        assertEquals("<r>a&amp;b<c>d</c>e&lt;<?pi data?>f</r>", transform(INPUT, TextMode.FRAGMENTS, chunks));
+        assertEquals(List.of("a", "&", "b", "d", "e", "<", "f"), chunks);
+    }
+
+    @Test
+    void coalesced() {
+        List<String> chunks = new ArrayList<>();
+        assertEquals("<r>A&amp;B<c>D</c>E&lt;<?pi data?>F</r>", transform(INPUT, TextMode.COALESCED, chunks));
+        assertEquals(List.of("a&b|", "d|", "e<|", "f|"), chunks);
+    }
+
+    @Test
+    void streaming() {
+        List<String> chunks = new ArrayList<>();
+        assertEquals("<r>a&amp;b<c>d</c>e&lt;<?pi data?>f</r>", transform(INPUT, TextMode.STREAMING, chunks));
+        assertEquals(List.of("a", "&", "b|", "d|", "e", "<|", "f|"), chunks);
+    }
+
+    @Test
+    void streamingHugeText() {
+        String text = "0123456789".repeat(500_000);
+
+        StringBuilder collected = new StringBuilder();
+        int[] maxChunk = {0};
+        boolean[] last = {false};
+        UpdatingVisitor visitor = new UpdatingVisitor() {
+            @Override
+            public void chars(Tag.Chars tag, CharChunk chars) {
+                collected.append(chars.get());
+                maxChunk[0] = Math.max(maxChunk[0], chars.get().length());
+                last[0] = chars.isLast();
+            }
+        };
+        new Saxeed().setInputString("<r>" + text + "</r>")
+                .addProjection(new TransformationBuilder().add("r", visitor).setTextMode(TextMode.STREAMING))
+                .transform()
+        ;
+
+        assertEquals(text, collected.toString());
+        assertTrue(maxChunk[0] < text.length(), "Delivered in chunks");
+        assertTrue(last[0]);
+    }
+
+    @Test
+    void projection() {
+        List<String> chunks = new ArrayList<>();
+        new Saxeed().setInputString(INPUT)
+                .addProjection(new TransformationBuilder().add(Subscribed.toAll(), collect(chunks)).setTextMode(TextMode.COALESCED))
+                .transform()
+        ;
+        assertEquals(List.of("a&b|", "d|", "e<|", "f|"), chunks);
+    }
+
+    private static String transform(String input, TextMode mode, List<String> chunks) {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        TransformationBuilder tb = new TransformationBuilder().add(Subscribed.toAll(), collect(chunks)).setTextMode(mode);
+        if (mode == TextMode.COALESCED) {
+            tb.add(Subscribed.toAll(), new UpdatingVisitor() {
+                @Override
+                public void chars(Tag.Chars tag, CharChunk chars) {
+                    chars.update(chars.get().toUpperCase());
+                }
+            });
+        }
+        new Saxeed().setInputString(input).addTransformation(tb, baos).transform();
+        return baos.toString();
+    }
+
+    /**
+     * Collect the chunks, marking the last ones by '|'.
+     */
+    private static UpdatingVisitor collect(List<String> chunks) {
+        return new UpdatingVisitor() {
+            @Override
+            public void chars(Tag.Chars tag, CharChunk chars) {
+                chunks.add(chars.get() + (chars.isLast() ? "|" : ""));
+            }
+        };
+    }
+}
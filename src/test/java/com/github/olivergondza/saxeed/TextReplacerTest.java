@@ -0,0 +1,90 @@
+package com.github.olivergondza.saxeed;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class TextReplacerTest {
+
+    @Test
+    void replace() {
+        TextReplacer replacer = new TextReplacer(Map.of(
+                "he", "HE",
+                "she", "SHE",
+                "hers", "HERS",
+                "b", "B",
+                "abc", "ABC"
+        ));
+
+        assertEquals("<r>uSHErs HERS aHE</r>", transform(replacer, "<r>ushers hers ahe</r>"));
+        // Leftmost-longest
+        assertEquals("<r>ABC aBd</r>", transform(replacer, "<r>abc abd</r>"));
+        assertEquals("<r>nothing</r>", transform(replacer, "<r>nothing</r>"));
+    }
+
+    @Test
+    void acrossChunks() {
+        TextReplacer replacer = new TextReplacer(Map.of("a&b", "[and]", "<x>", "[x]"));
+
+        // The parser reports entities as separate chunks
+        assertEquals("<r>[and] a&amp;c [x] &lt;x</r>", transform(replacer, "<r>a&amp;b a&amp;c &lt;x&gt; &lt;x</r>"));
+        assertEquals("<r>[and] a&amp;c [x] &lt;x</r>", transform(replacer, "<r>a&amp;b a&amp;c &lt;x&gt; &lt;x</r>", TextMode.COALESCED));
+    }
+
+    @Test
+    void hugeText() {
+        Map<String, String> terms = new HashMap<>();
+        for (int i = 0; i < 1000; i++) {
+            terms.put("term" + i + ";", "#" + i);
+        }
+        TextReplacer replacer = new TextReplacer(terms);
+
+        StringBuilder input = new StringBuilder();
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; input.length() < 1_000_000; i++) {
+            String filler = "x".repeat(i % 13);
+            input.append(filler).append("term").append(i % 1200).append(";");
+            expected.append(filler).append(i % 1200 < 1000 ? "#" + (i % 1200) : "term" + (i % 1200) + ";");
+        }
+
+        assertEquals("<r>" + expected + "</r>", transform(replacer, "<r>" + input + "</r>"));
+    }
+
+    @Test
+    void subscribedOnly() {
+        TextReplacer replacer = new TextReplacer(Map.of("a", "b"));
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        new Saxeed().setInputString("<r>a<n>a</n>a<m>a</m></r>")
+                .addTransformation(new TransformationBuilder().add(Subscribed.to().tagNames("r", "m").build(), replacer).setTextMode(TextMode.STREAMING), baos)
+                .transform()
+        ;
+        assertEquals("<r>b<n>a</n>b<m>b</m></r>", baos.toString());
+    }
+
+    @Test
+    void invalid() {
+        assertThrows(IllegalArgumentException.class, () -> new TextReplacer(Map.of("", "empty")));
+        assertThrows(IllegalStateException.class, () -> new Saxeed().setInputString("<r>a</r>")
+                .addTransformation(new TransformationBuilder().add("r", new TextReplacer(Map.of("a", "b"))))
+                .transform()
+        );
+    }
+
+    private static String transform(TextReplacer replacer, String input) {
+        return transform(replacer, input, TextMode.STREAMING);
+    }
+
+    private static String transform(TextReplacer replacer, String input, TextMode mode) {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        new Saxeed().setInputString(input)
+                .addTransformation(new TransformationBuilder().add("r", replacer).setTextMode(mode), baos)
+                .transform()
+        ;
+        return baos.toString();
+    }
+}
@@ -2,6 +2,8 @@ package com.github.olivergondza.saxeed;
 
 import org.junit.jupiter.api.Test;
 
+import java.io.ByteArrayOutputStream;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 class TransformationBuilderTest {
@@ -17,4 +19,21 @@ class TransformationBuilderTest {
             // expected
         }
     }
+
+    @Test
+    void configuredAfterAdded() {
+        TransformationBuilder tb = new TransformationBuilder();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Saxeed saxeed = new Saxeed().setInputString("<r><a>text</a></r>").addTransformation(tb, out);
+
+        tb.add("a", new UpdatingVisitor() {
+            @Override
+            public void startTag(Tag.Start tag) {
+                tag.skip();
+            }
+        });
+        saxeed.transform();
+
+        assertEquals("<r></r>", out.toString());
+    }
 }
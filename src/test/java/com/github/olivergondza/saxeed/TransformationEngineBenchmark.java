@@ -0,0 +1,123 @@
+package com.github.olivergondza.saxeed;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Compare per-document cost of {@link Saxeed} and {@link TransformationEngine} over the unicode corpus.
+ *
+ * Run by:
+ * <pre>
+ *     mvn test-compile dependency:build-classpath -Dmdep.outputFile=target/test.classpath -Dmdep.includeScope=test
+ *     java -cp target/classes:target/test-classes:$(cat target/test.classpath) com.github.olivergondza.saxeed.TransformationEngineBenchmark
+ * </pre>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TransformationEngineBenchmark {
+
+    private final List<byte[]> corpus = new ArrayList<>();
+    private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+    private CompiledTransformation transformation;
+    private TransformationEngine engine;
+    private int next = 0;
+
+    @Setup
+    public void setUp() throws IOException {
+        try (Stream<Path> files = Files.list(Path.of("src/test/resources/unicode"))) {
+            for (Path file : (Iterable<Path>) files.sorted()::iterator) {
+                corpus.add(Files.readAllBytes(file));
+            }
+        }
+
+        transformation = new TransformationBuilder()
+                .add(Subscribed.toAll(), () -> new UpdatingVisitor() {})
+                .compile()
+        ;
+        engine = new TransformationEngine(transformation);
+    }
+
+    @TearDown
+    public void tearDown() {
+        engine.close();
+    }
+
+    @Benchmark
+    public void saxeed(Blackhole bh) {
+        output.reset();
+        new Saxeed()
+                .setInput(new ByteArrayInputStream(nextDocument()))
+                .addTransformation(transformation, output)
+                .transform()
+        ;
+        bh.consume(output.size());
+    }
+
+    @Benchmark
+    public void engine(Blackhole bh) {
+        output.reset();
+        engine.transform(new ByteArrayInputStream(nextDocument()), output);
+        bh.consume(output.size());
+    }
+
+    /**
+     * Document small enough for the fixed cost to dominate.
+     */
+    private static final byte[] TINY = "<r><e a='v'>text</e></r>".getBytes(StandardCharsets.UTF_8);
+
+    @Benchmark
+    public void saxeedTiny(Blackhole bh) {
+        output.reset();
+        new Saxeed()
+                .setInput(new ByteArrayInputStream(TINY))
+                .addTransformation(transformation, output)
+                .transform()
+        ;
+        bh.consume(output.size());
+    }
+
+    @Benchmark
+    public void engineTiny(Blackhole bh) {
+        output.reset();
+        engine.transform(new ByteArrayInputStream(TINY), output);
+        bh.consume(output.size());
+    }
+
+    private byte[] nextDocument() {
+        byte[] doc = corpus.get(next);
+        next = (next + 1) % corpus.size();
+        return doc;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(TransformationEngineBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,102 @@
+package com.github.olivergondza.saxeed;
+
+import com.github.olivergondza.saxeed.ex.FailedReading;
+import com.github.olivergondza.saxeed.ex.FailedTransforming;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.fail;
+
+class TransformationEngineTest {
+
+    private final TransformationEngine engine = new TransformationEngine(new TransformationBuilder()
+            .add("e", () -> new UpdatingVisitor() {
+                private int count = 0;
+
+                @Override
+                public void startTag(Tag.Start tag) throws FailedTransforming {
+                    tag.getAttributes().put("n", String.valueOf(count++));
+                    if (tag.getAttributes().containsKey("fail")) {
+                        throw new FailedTransforming("Failing on request");
+                    }
+                }
+            })
+            .compile()
+    );
+
+    @Test
+    void repeated() {
+        for (int i = 0; i < 5; i++) {
+            assertEquals(
+                    "<r xmlns:x=\"X\"><e n=\"0\"></e><x:e n=\"1\"></x:e></r>",
+                    transform("<r xmlns:x='X'><e/><x:e/></r>")
+            );
+        }
+    }
+
+    @Test
+    void reuseClosed() {
+        assertEquals("<r><e n=\"0\"></e></r>", transform("<r><e/></r>"));
+        engine.close();
+        engine.close();
+        assertEquals("<r><e n=\"0\"></e></r>", transform("<r><e/></r>"));
+    }
+
+    @Test
+    void recoverFromFailure() {
+        assertEquals("<r><e n=\"0\"></e></r>", transform("<r><e/></r>"));
+
+        try {
+            transform("<r><e/><e fail=''/>");
+            fail();
+        } catch (FailedTransforming ex) {
+            // expected
+        }
+
+        try {
+            transform("<r><e/>");
+            fail();
+        } catch (FailedReading ex) {
+            // expected
+        }
+
+        assertEquals("<r><e n=\"0\"></e></r>", transform("<r><e/></r>"));
+    }
+
+    @Test
+    void concurrent() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                String input = "<r>" + "<e/>".repeat(i % 7) + "</r>";
+                results.add(pool.submit(() -> transform(input)));
+            }
+
+            for (int i = 0; i < results.size(); i++) {
+                StringBuilder expected = new StringBuilder("<r>");
+                for (int j = 0; j < i % 7; j++) {
+                    expected.append("<e n=\"").append(j).append("\"></e>");
+                }
+                assertEquals(expected.append("</r>").toString(), results.get(i).get());
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private String transform(String input) {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        engine.transform(new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)), baos);
+        return baos.toString(StandardCharsets.UTF_8);
+    }
+}